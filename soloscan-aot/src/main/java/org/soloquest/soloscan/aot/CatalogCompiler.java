@@ -0,0 +1,62 @@
+package org.soloquest.soloscan.aot;
+
+import org.soloquest.soloscan.SoloscanExecutor;
+import org.soloquest.soloscan.compiler.ExpressionCatalog;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Compiles an expression catalog into a jar, put the jar on the classpath and the executor loads it on creation.
+ * <p>
+ * The catalog is a properties file of expression id to expression text, in UTF-8:
+ * <pre>
+ * java -jar soloscan-aot.jar metrics.properties metrics-catalog.jar
+ * </pre>
+ * The jar built by the module bundles soloscan and its runtime dependencies.
+ * In a Maven build it runs by the exec-maven-plugin with the main class {@code org.soloquest.soloscan.aot.CatalogCompiler}.
+ * <p>
+ * The classes are generated the same way the runtime defines them, so the jar must be compiled with the same
+ * JDK major version and soloscan options, and with the custom functions registered by {@link #newExecutor}.
+ */
+public class CatalogCompiler {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: CatalogCompiler <catalog.properties> <output.jar>");
+            System.exit(1);
+        }
+        new CatalogCompiler().compile(Paths.get(args[0]), Paths.get(args[1]));
+    }
+
+    public void compile(Path catalogFile, Path outputJar) throws IOException {
+        Properties catalog = new Properties();
+        try (Reader reader = new InputStreamReader(Files.newInputStream(catalogFile), StandardCharsets.UTF_8)) {
+            catalog.load(reader);
+        }
+        Map<String, String> expressions = new LinkedHashMap<>();
+        for (String id : catalog.stringPropertyNames()) {
+            expressions.put(id, catalog.getProperty(id));
+        }
+        if (outputJar.getParent() != null) {
+            Files.createDirectories(outputJar.getParent());
+        }
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(outputJar))) {
+            new ExpressionCatalog(newExecutor()).write(expressions, out);
+        }
+        System.out.println("Compiled " + expressions.size() + " expressions into " + outputJar);
+    }
+
+    /**
+     * Override it to register the custom functions of the runtime.
+     */
+    protected SoloscanExecutor newExecutor() {
+        return new SoloscanExecutor();
+    }
+}
@@ -0,0 +1,62 @@
+package org.soloquest.soloscan.aot;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.soloquest.soloscan.SoloscanExecutor;
+import org.soloquest.soloscan.dataset.ListDataSet;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CatalogCompilerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCatalogRoundTrip() throws Exception {
+        Map<String, String> catalog = new HashMap<>();
+        catalog.put("count", "{count(A),B}");
+        catalog.put("ratio", "{sum(A)}/{count(A)}");
+        Path catalogFile = folder.getRoot().toPath().resolve("metrics.properties");
+        List<String> lines = new ArrayList<>();
+        catalog.forEach((id, expression) -> lines.add(id + "=" + expression));
+        Files.write(catalogFile, lines, StandardCharsets.UTF_8);
+        Path jar = folder.getRoot().toPath().resolve("out/metrics-catalog.jar");
+
+        new CatalogCompiler().compile(catalogFile, jar);
+
+        SoloscanExecutor instance = new SoloscanExecutor();
+        try (URLClassLoader resourceLoader = new URLClassLoader(new URL[]{jar.toUri().toURL()}, null)) {
+            instance.loadCatalog(resourceLoader);
+        }
+        Assert.assertEquals(catalog.keySet(), instance.getCatalogExpressionIds());
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Object[] values : Arrays.asList(new Object[]{1, "x"}, new Object[]{2, "x"}, new Object[]{4, "y"})) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("A", values[0]);
+            row.put("B", values[1]);
+            rows.add(row);
+        }
+        SoloscanExecutor reference = new SoloscanExecutor();
+        for (Map.Entry<String, String> entry : catalog.entrySet()) {
+            // the text of a catalog expression is served by the loaded classes, without a compilation
+            Assert.assertSame(instance.getCatalogExpression(entry.getKey()), instance.compile(entry.getValue()));
+            Assert.assertEquals(reference.execute(Collections.singletonMap("m", entry.getValue()), new ListDataSet<>(rows)),
+                    instance.execute(Collections.singletonMap("m", entry.getValue()), new ListDataSet<>(rows)));
+        }
+        Assert.assertEquals(0, instance.getExpressionCache().getMissCount());
+    }
+}
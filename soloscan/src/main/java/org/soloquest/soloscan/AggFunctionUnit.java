@@ -14,6 +14,8 @@ public class AggFunctionUnit {
     private Function<AggFunctionText, ? extends AggFunction> aggFunctionGenerator;
     private AggFunctionText aggFunctionText;
     private AggInner aggInner = AlwaysTrueAggInner.INSTANCE;
+    // declared when the function is added to the executor
+    private boolean mergeable;
 
     public AggFunction genAggFunction() {
         AggFunction aggFunction = aggFunctionGenerator.apply(aggFunctionText);
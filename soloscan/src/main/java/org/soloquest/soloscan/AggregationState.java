@@ -0,0 +1,78 @@
+package org.soloquest.soloscan;
+
+import org.soloquest.soloscan.runtime.aggfunction.AggFunction;
+import org.soloquest.soloscan.runtime.aggfunction.AggInner;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The aggregate functions of every group of one execution of a metric unit, in the order of its
+ * {@link AggFunctionUnit}s. The generated {@code processRow} fills {@link #key()} with the grouping columns of the row
+ * and accumulates into {@link #functions()}.
+ */
+public final class AggregationState {
+
+    private final List<AggFunctionUnit> aggFunctionUnits;
+    private final AggInner[] aggInners;
+    private final Map<GroupKey, AggFunction[]> groups = new HashMap<>();
+    private final GroupKey key = new GroupKey();
+
+    public AggregationState(List<AggFunctionUnit> aggFunctionUnits) {
+        this.aggFunctionUnits = aggFunctionUnits;
+        this.aggInners = new AggInner[aggFunctionUnits.size()];
+        for (int i = 0; i < aggInners.length; i++) {
+            aggInners[i] = aggFunctionUnits.get(i).getAggInner();
+        }
+    }
+
+    /**
+     * @return the cleared probe key
+     */
+    public GroupKey key() {
+        key.clear();
+        return key;
+    }
+
+    /**
+     * @return the aggregate functions of the group of the probe key, created when the group is met first
+     */
+    public AggFunction[] functions() {
+        AggFunction[] functions = groups.get(key);
+        if (functions == null) {
+            functions = new AggFunction[aggFunctionUnits.size()];
+            for (int i = 0; i < functions.length; i++) {
+                functions[i] = aggFunctionUnits.get(i).genAggFunction();
+            }
+            groups.put(key.copy(), functions);
+        }
+        return functions;
+    }
+
+    /**
+     * @return the filters of the aggregate functions, the same for all groups
+     */
+    public AggInner[] aggInners() {
+        return aggInners;
+    }
+
+    /**
+     * Merges the groups of the partial state of other rows into this one.
+     */
+    public void merge(AggregationState other) {
+        for (Map.Entry<GroupKey, AggFunction[]> entry : other.groups.entrySet()) {
+            AggFunction[] functions = groups.putIfAbsent(entry.getKey(), entry.getValue());
+            if (functions != null) {
+                AggFunction[] partials = entry.getValue();
+                for (int i = 0; i < functions.length; i++) {
+                    functions[i].merge(partials[i]);
+                }
+            }
+        }
+    }
+
+    public Map<GroupKey, AggFunction[]> getGroups() {
+        return groups;
+    }
+}
@@ -0,0 +1,83 @@
+package org.soloquest.soloscan;
+
+import lombok.extern.slf4j.Slf4j;
+import org.soloquest.soloscan.compiler.lexer.SymbolTable;
+import org.soloquest.soloscan.utils.Env;
+import org.soloquest.soloscan.utils.MiscUtils;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Slf4j
+public abstract class BaseMetricUnitExpression implements MetricUnitExpression {
+
+    protected final List<AggFunctionUnit> aggFunctionUnits = new CopyOnWriteArrayList<>();
+
+    private static AtomicInteger INIT_PLACEHOLDER = new AtomicInteger((int) ('A'));
+    private String placeHolder;
+    private final boolean hasGrouping;
+    protected final SymbolTable symbolTable;
+
+    protected final SoloscanExecutor instance;
+
+    protected final String expressionString;
+
+
+    public BaseMetricUnitExpression(final SoloscanExecutor instance,
+                              final SymbolTable symbolTable,
+                              String expressionString) {
+        this.symbolTable = symbolTable;
+        this.instance = instance;
+        this.expressionString = expressionString;
+        this.placeHolder = "PH_MU_" + (char) INIT_PLACEHOLDER.getAndIncrement();
+        this.hasGrouping = MiscUtils.isMethodOverridden(this.getClass(), MetricUnitExpression.class, "grouping", Env.class, GroupKey.class);
+    }
+
+    public String getPlaceHolder(){
+        return placeHolder;
+    }
+
+    /**
+     * The generated code of the enclosing expression refers to the placeholder by name,
+     * so an expression restored from precompiled classes must get its original one back.
+     */
+    public void setPlaceHolder(String placeHolder) {
+        this.placeHolder = placeHolder;
+    }
+
+    @Override
+    public boolean hasGrouping() {
+        return hasGrouping;
+    }
+
+    @Override
+    public String getExpressionString() {
+        return expressionString;
+    }
+
+    public void addAggFunctionUnit(AggFunctionUnit aggFunctionUnit) {
+        aggFunctionUnits.add(aggFunctionUnit);
+    }
+
+    @Override
+    public List<AggFunctionUnit> getAggFunctionUnits() {
+        return Collections.unmodifiableList(aggFunctionUnits);
+    }
+
+    @Override
+    public MetricUnitInstance newInstance() {
+        return new MetricUnitInstance(this);
+    }
+
+    public abstract Object execute0(Env env);
+
+    @Override
+    public String toString() {
+        return "BaseMetricUnitExpression{" +
+                "placeHolder='" + placeHolder + '\'' +
+                ", expressionString='" + expressionString + '\'' +
+                '}';
+    }
+}
@@ -2,12 +2,11 @@ package org.soloquest.soloscan;
 
 import lombok.extern.slf4j.Slf4j;
 import org.soloquest.soloscan.compiler.lexer.SymbolTable;
-import org.soloquest.soloscan.dataset.Row;
 import org.soloquest.soloscan.utils.Env;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 @Slf4j
@@ -18,6 +17,8 @@ public abstract class BaseSoloExpression implements Expression {
 
     protected final String expressionString;
     protected final List<MetricUnitExpression> metricUnitExpressions = new CopyOnWriteArrayList<>();
+    private int generatedClassCount;
+    private long compileTimeNanos;
 
     public void addMetricUnit(MetricUnitExpression metricUnitExpression) {
         metricUnitExpressions.add(metricUnitExpression);
@@ -34,33 +35,54 @@ public abstract class BaseSoloExpression implements Expression {
 
     public abstract Object execute0(Env env);
 
+    public SoloscanExecutor getInstance() {
+        return instance;
+    }
+
     @Override
-    public String toString() {
-        return "BaseSoloExpression{" +
-                "expressionString='" + expressionString + '\'' +
-                '}';
+    public String getExpressionString() {
+        return expressionString;
+    }
+
+    @Override
+    public int getGeneratedClassCount() {
+        return generatedClassCount;
     }
 
-    public Object execute(Map<String, Object> map) {
-        log.info("{} start to execute,map:{}", this, map);
-        if (map == null) {
-            map = new ConcurrentHashMap<>();
-        }else{
-            map = new ConcurrentHashMap<>(map);
-        }
-        Env env = new Env(this.instance, this, map);
-        metricUnitExpressions.stream().forEach(metricUnitExpression -> {
-                    metricUnitExpression.execute(env);
-        });
-        return execute0(env);
+    public void setGeneratedClassCount(int generatedClassCount) {
+        this.generatedClassCount = generatedClassCount;
     }
 
-    public boolean consumeRow(Row row) {
-        for(MetricUnitExpression metricUnitExpression : metricUnitExpressions){
-            metricUnitExpression.consumeRow(row);
-        }
-        return true;
+    @Override
+    public long getCompileTimeNanos() {
+        return compileTimeNanos;
     }
 
-}
+    public void setCompileTimeNanos(long compileTimeNanos) {
+        this.compileTimeNanos = compileTimeNanos;
+    }
+
+    public List<MetricUnitExpression> getMetricUnitExpressions() {
+        return Collections.unmodifiableList(metricUnitExpressions);
+    }
 
+    @Override
+    public SoloExpressionInstance newInstance() {
+        return new SoloExpressionInstance(this);
+    }
+
+    /**
+     * @see SoloExpressionInstance#SoloExpressionInstance(BaseSoloExpression, Map)
+     */
+    public SoloExpressionInstance newInstance(Map<String, MetricUnitInstance> sharedInstances) {
+        return new SoloExpressionInstance(this, sharedInstances);
+    }
+
+    @Override
+    public String toString() {
+        return "BaseSoloExpression{" +
+                "expressionString='" + expressionString + '\'' +
+                '}';
+    }
+
+}
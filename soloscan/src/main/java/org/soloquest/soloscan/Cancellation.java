@@ -0,0 +1,98 @@
+package org.soloquest.soloscan;
+
+import lombok.extern.slf4j.Slf4j;
+import org.soloquest.soloscan.dataset.DataSet;
+import org.soloquest.soloscan.exception.ExpressionExecuteException;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The cancellation flag of one request, checked by the scan loops every {@link #CHECK_INTERVAL} rows. A request is
+ * cancelled by {@link #cancel()} or when its deadline has passed, its data set is closed then so that a scan blocked
+ * in the data set stops too.
+ */
+@Slf4j
+final class Cancellation {
+
+    /**
+     * The count of rows a scan loop handles between two checks, a power of two.
+     */
+    static final int CHECK_INTERVAL = 1024;
+
+    private final DataSet dataSet;
+    // the time in ms the request times out, 0 for none
+    private final long deadline;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private volatile boolean cancelled;
+    private volatile boolean timedOut;
+
+    Cancellation(DataSet dataSet, long deadline) {
+        this.dataSet = dataSet;
+        this.deadline = deadline;
+    }
+
+    /**
+     * A request which is never cancelled unless {@link #cancel()} is called.
+     */
+    static Cancellation of(DataSet dataSet) {
+        return new Cancellation(dataSet, 0);
+    }
+
+    /**
+     * Cancels the request and closes its data set.
+     */
+    void cancel() {
+        cancelled = true;
+        closeDataSet();
+    }
+
+    boolean isCancelled() {
+        if (!cancelled && deadline > 0 && System.currentTimeMillis() >= deadline) {
+            timedOut = true;
+            cancelled = true;
+        }
+        return cancelled;
+    }
+
+    /**
+     * @throws ExpressionExecuteException caused by a {@link TimeoutException} or a {@link CancellationException} if the
+     *                                    request is cancelled, the data set is closed then
+     */
+    void check() {
+        if (isCancelled()) {
+            closeDataSet();
+            throw newException();
+        }
+    }
+
+    /**
+     * @return the exception of the cancellation if the request is cancelled, else the failure itself
+     */
+    RuntimeException translate(RuntimeException failure) {
+        Throwable cause = failure.getCause();
+        if (!isCancelled() || cause instanceof TimeoutException || cause instanceof CancellationException) {
+            return failure;
+        }
+        // the data set may fail once it is closed
+        ExpressionExecuteException exception = newException();
+        exception.addSuppressed(failure);
+        return exception;
+    }
+
+    private ExpressionExecuteException newException() {
+        return new ExpressionExecuteException(timedOut ? new TimeoutException("Execute timeout on scan time")
+                : new CancellationException("the execution is cancelled"));
+    }
+
+    private void closeDataSet() {
+        if (dataSet != null && dataSet != DataSet.EMPTY && closed.compareAndSet(false, true)) {
+            try {
+                dataSet.close();
+            } catch (RuntimeException e) {
+                log.warn("failed to close the data set of a cancelled request", e);
+            }
+        }
+    }
+}
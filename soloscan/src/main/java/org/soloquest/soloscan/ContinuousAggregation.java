@@ -0,0 +1,69 @@
+package org.soloquest.soloscan;
+
+import lombok.extern.slf4j.Slf4j;
+import org.soloquest.soloscan.dataset.DataSet;
+import org.soloquest.soloscan.dataset.Row;
+import org.soloquest.soloscan.dataset.TerminalRow;
+import org.soloquest.soloscan.utils.Preconditions;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The expressions of an append-only source with their aggregate state kept alive. The rows of every appended data set
+ * update the existing per-group aggregates, and {@link #refresh()} evaluates the expressions over all the rows appended
+ * so far without scanning them again, only the arithmetic after the aggregation runs again.
+ * <p>
+ * Created by {@link SoloscanExecutor#openContinuous}, the calls are serialized.
+ */
+@Slf4j
+public class ContinuousAggregation {
+
+    private final Map<String, ExpressionInstance> instances;
+    private final ExpressionInstance[] expressions;
+    private final Map<String, Object> env;
+
+    ContinuousAggregation(Map<String, ExpressionInstance> instances, Map<String, Object> env) {
+        this.instances = instances;
+        this.expressions = instances.values().toArray(new ExpressionInstance[0]);
+        this.env = env;
+        for (ExpressionInstance expression : expressions) {
+            expression.open(env);
+        }
+    }
+
+    /**
+     * Aggregates the rows of the data set, the data set is not closed. With {@link SoloscanOptions#CONCURRENT_PROCESSS}
+     * a large data set is aggregated by the workers of a parallel scan.
+     */
+    public synchronized ContinuousAggregation append(DataSet dataSet) {
+        Preconditions.checkNotNull(dataSet);
+        if (SoloscanOptions.getOption(SoloscanOptions.CONCURRENT_PROCESSS)
+                && MorselScan.scan(dataSet, Cancellation.of(null), expressions)) {
+            return this;
+        }
+        while (dataSet.hasNext()) {
+            Row row = dataSet.next();
+            for (ExpressionInstance expression : expressions) {
+                expression.consumeRow(row);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @return the results of the expressions over all the rows appended so far
+     */
+    public synchronized Map<String, Object> refresh() {
+        long start = System.currentTimeMillis();
+        for (ExpressionInstance expression : expressions) {
+            expression.consumeRow(TerminalRow.INSTANCE);
+        }
+        Map<String, Object> resultMap = new HashMap<>(instances.size());
+        for (Map.Entry<String, ExpressionInstance> entry : instances.entrySet()) {
+            resultMap.put(entry.getKey(), entry.getValue().execute(env));
+        }
+        log.info("continuous aggregation refresh cost :{} ms", System.currentTimeMillis() - start);
+        return resultMap;
+    }
+}
@@ -0,0 +1,288 @@
+package org.soloquest.soloscan;
+
+import lombok.extern.slf4j.Slf4j;
+import org.soloquest.soloscan.dataset.DataSet;
+import org.soloquest.soloscan.dataset.Row;
+import org.soloquest.soloscan.dataset.TerminalRow;
+import org.soloquest.soloscan.exception.ExpressionExecuteException;
+import org.soloquest.soloscan.utils.Preconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Slf4j
+class DataProvider implements Runnable {
+
+    public final DataSet dataSet;
+    public final ExpressionInstance[] expressions;
+    // null for the inline scan
+    private final RowRingBuffer ringBuffer;
+    private final Cancellation cancellation;
+
+    DataProvider(DataSet dataSet, RowRingBuffer ringBuffer, Cancellation cancellation, ExpressionInstance... expressions) {
+        this.dataSet = dataSet;
+        this.expressions = expressions;
+        this.ringBuffer = ringBuffer;
+        this.cancellation = cancellation;
+        Preconditions.checkNotNull(dataSet);
+        Preconditions.checkNotNull(expressions);
+    }
+
+    @Override
+    public void run() {
+        long start = System.currentTimeMillis();
+        int rowNum = 0;
+        try {
+            while (dataSet.hasNext()) {
+                if ((rowNum & (Cancellation.CHECK_INTERVAL - 1)) == 0) {
+                    cancellation.check();
+                }
+                Row row = dataSet.next();
+                rowNum++;
+                if (ringBuffer != null) {
+                    if (!ringBuffer.publish(row)) {
+                        log.warn("all the consumers stopped, the data provider stops after {} records", rowNum);
+                        break;
+                    }
+                } else {
+                    for (ExpressionInstance expression : expressions) {
+                        expression.consumeRow(row);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            ringBuffer.fail(e);
+            throw new ExpressionExecuteException("the data provider is interrupted");
+        } catch (RuntimeException e) {
+            if (ringBuffer != null) {
+                ringBuffer.fail(e);
+            }
+            throw e;
+        }
+        if (ringBuffer != null) {
+            ringBuffer.close();
+        } else {
+            for (ExpressionInstance expression : expressions) {
+                expression.consumeRow(TerminalRow.INSTANCE);
+            }
+        }
+        long cost = System.currentTimeMillis() - start;
+        if(cost > 3000){
+            log.error("Slow feed,data provider feed {} record, cost : {} ms", rowNum, cost);
+        }else if(cost > 1000){
+            log.warn("Slow feed, data provider feed {} record, cost : {} ms", rowNum, cost);
+        }
+    }
+
+    /**
+     * Feeds the rows of the data set to the expressions in the {@link SoloscanOptions#SCAN_MODE}, an inline scan is
+     * finished when it returns.
+     */
+    public static void feed(DataSet dataSet, Map<String, Object> env, ExpressionInstance... expressions) {
+        feed(dataSet, env, Cancellation.of(dataSet), expressions);
+    }
+
+    /**
+     * @param cancellation stops the scan with an {@link ExpressionExecuteException} when the request is cancelled
+     */
+    static void feed(DataSet dataSet, Map<String, Object> env, Cancellation cancellation, ExpressionInstance... expressions) {
+        try {
+            if (SoloscanOptions.getOption(SoloscanOptions.SCAN_MODE) == ScanMode.INLINE) {
+                scan(dataSet, env, cancellation, expressions);
+            } else {
+                work(dataSet, env, cancellation, expressions);
+            }
+        } catch (RuntimeException e) {
+            throw cancellation.translate(e);
+        }
+    }
+
+    /**
+     * Iterates the data set on the calling thread and aggregates every row at once, without handing it over. With
+     * {@link SoloscanOptions#CONCURRENT_PROCESSS} the workers of a {@link MorselScan} help the calling thread.
+     */
+    public static void scan(DataSet dataSet, Map<String, Object> env, ExpressionInstance... expressions) {
+        scan(dataSet, env, Cancellation.of(dataSet), expressions);
+    }
+
+    static void scan(DataSet dataSet, Map<String, Object> env, Cancellation cancellation, ExpressionInstance... expressions) {
+        DataProvider dataProvider = new DataProvider(dataSet, null, cancellation, expressions);
+        for (ExpressionInstance expression : expressions) {
+            expression.open(env);
+        }
+        if (SoloscanOptions.getOption(SoloscanOptions.CONCURRENT_PROCESSS) && MorselScan.scan(dataSet, cancellation, expressions)) {
+            return;
+        }
+        dataProvider.run();
+    }
+
+    public static void work(DataSet dataSet, ExpressionInstance... expressions) {
+        work(dataSet, null, expressions);
+    }
+
+    /**
+     * Iterates the data set on a data provider thread of the shared {@link SoloscanPools#scan()} pool, the rows are
+     * handed over in batches through a bounded {@link RowRingBuffer} to a consumer per expression. The consumers run on
+     * the {@link SoloscanPools#evaluation()} pool, the calling thread drains the first one and every consumer no worker
+     * has started, so the scan goes on when the pool is saturated. The scan is finished when it returns.
+     */
+    public static void work(DataSet dataSet, Map<String, Object> env, ExpressionInstance... expressions) {
+        work(dataSet, env, Cancellation.of(dataSet), expressions);
+    }
+
+    static void work(DataSet dataSet, Map<String, Object> env, Cancellation cancellation, ExpressionInstance... expressions) {
+        log.warn("dataprovider size:{}, expressions:{}", expressions.length, expressions);
+        RowRingBuffer ringBuffer = new RowRingBuffer(
+                SoloscanOptions.getOption(SoloscanOptions.SCAN_RING_BUFFER_BATCHES),
+                SoloscanOptions.getOption(SoloscanOptions.SCAN_BATCH_SIZE),
+                SoloscanOptions.getOption(SoloscanOptions.SCAN_WAIT_STRATEGY),
+                SoloscanOptions.getOption(SoloscanOptions.SCAN_WAIT_TIMEOUT_MS), TimeUnit.MILLISECONDS);
+        for (ExpressionInstance expression : expressions) {
+            expression.open(env);
+        }
+        List<ConsumerTask> tasks = new ArrayList<>(expressions.length);
+        for (ExpressionInstance expression : expressions) {
+            tasks.add(new ConsumerTask(ringBuffer.newConsumer(), cancellation, expression));
+        }
+        DataProvider dataProvider = new DataProvider(dataSet, ringBuffer, cancellation, expressions);
+        try {
+            SoloscanPools.scan().submit(() -> {
+                try {
+                    dataProvider.run();
+                } catch (RuntimeException e) {
+                    if (cancellation.isCancelled()) {
+                        log.info("data provider stops, the execution is cancelled: {}", e.getMessage());
+                    } else {
+                        log.error("data provider occurs error", e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // the provider can not run on the calling thread before the consumers drain the ring, the scan fails
+            ringBuffer.fail(e);
+            throw new ExpressionExecuteException(e);
+        }
+        for (int i = 1; i < tasks.size(); i++) {
+            try {
+                SoloscanPools.evaluation().submit(tasks.get(i));
+            } catch (RejectedExecutionException e) {
+                log.debug("the evaluation pool is saturated, the consumer is drained by the calling thread");
+            }
+        }
+        try {
+            drain(tasks, ringBuffer.getCapacity());
+        } catch (InterruptedException e) {
+            throw new ExpressionExecuteException("the scan is interrupted");
+        }
+        for (ConsumerTask task : tasks) {
+            task.await();
+        }
+    }
+
+    /**
+     * Drains the first consumer on the calling thread, the slowest consumer it has claimed reads first. A consumer
+     * no worker has started yet is taken over once the claimed ones have read a full ring ahead of it, since the
+     * producer is waiting for it then, or once they are finished.
+     */
+    private static void drain(List<ConsumerTask> tasks, int capacity) throws InterruptedException {
+        List<ConsumerTask> claimed = new ArrayList<>(tasks.size());
+        if (!tasks.isEmpty() && tasks.get(0).claim()) {
+            claimed.add(tasks.get(0));
+        }
+        try {
+            while (true) {
+                ConsumerTask slowest = null;
+                for (ConsumerTask task : claimed) {
+                    if (slowest == null || task.consumer.getSequence() < slowest.consumer.getSequence()) {
+                        slowest = task;
+                    }
+                }
+                if (slowest == null || slowest.consumer.getSequence() >= capacity) {
+                    int count = claimed.size();
+                    for (ConsumerTask task : tasks) {
+                        if (task.claim()) {
+                            claimed.add(task);
+                        }
+                    }
+                    if (claimed.isEmpty()) {
+                        return;
+                    }
+                    if (claimed.size() > count) {
+                        continue;
+                    }
+                }
+                if (!slowest.consumer.drainBatch(slowest.cancellation, slowest.expression)) {
+                    claimed.remove(slowest);
+                    slowest.done.countDown();
+                }
+            }
+        } finally {
+            for (ConsumerTask task : claimed) {
+                task.consumer.detach();
+                task.done.countDown();
+            }
+        }
+    }
+
+    /**
+     * The consumer of the rows of one expression, run by the worker or the thread which claims it first.
+     */
+    private static final class ConsumerTask implements Runnable {
+
+        final RowRingBuffer.Consumer consumer;
+        final Cancellation cancellation;
+        final ExpressionInstance expression;
+        final CountDownLatch done = new CountDownLatch(1);
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private volatile Throwable failure;
+
+        ConsumerTask(RowRingBuffer.Consumer consumer, Cancellation cancellation, ExpressionInstance expression) {
+            this.consumer = consumer;
+            this.cancellation = cancellation;
+            this.expression = expression;
+        }
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        @Override
+        public void run() {
+            if (!claim()) {
+                return;
+            }
+            try {
+                consumer.drain(cancellation, expression);
+            } catch (Throwable e) {
+                failure = e;
+            } finally {
+                done.countDown();
+            }
+        }
+
+        /**
+         * Waits for the worker draining the consumer and rethrows its failure.
+         */
+        void await() {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                consumer.detach();
+                throw new ExpressionExecuteException("the scan is interrupted");
+            }
+            Throwable failure = this.failure;
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure instanceof Error) {
+                throw (Error) failure;
+            } else if (failure != null) {
+                throw new ExpressionExecuteException("the scan is interrupted", failure);
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package org.soloquest.soloscan;
+
+/**
+ * A compiled expression. It only holds the generated code and the aggregate descriptors,
+ * so one expression can be shared by many concurrent executions; the per-execution state
+ * lives in the {@link ExpressionInstance} returned by {@link #newInstance()}.
+ */
+public interface Expression {
+
+    ExpressionInstance newInstance();
+
+    String getExpressionString();
+
+    default int getGeneratedClassCount() {
+        return 0;
+    }
+
+    default long getCompileTimeNanos() {
+        return 0;
+    }
+
+}
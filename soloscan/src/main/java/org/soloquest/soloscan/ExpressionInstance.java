@@ -0,0 +1,19 @@
+package org.soloquest.soloscan;
+
+import org.soloquest.soloscan.dataset.Row;
+
+import java.util.Map;
+
+public interface ExpressionInstance {
+
+    Object execute(Map<String, Object> map);
+
+    /**
+     * Prepares the inline scan with the env of the execution, the rows are aggregated as they are consumed.
+     */
+    default void open(Map<String, Object> map) {
+    }
+
+    boolean consumeRow(Row row);
+
+}
@@ -0,0 +1,205 @@
+package org.soloquest.soloscan;
+
+import org.soloquest.soloscan.runtime.lang.RuntimeUtils;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * The composite key of the grouping columns of a row. Integral values are kept as primitive longs, doubles as the
+ * bits of a primitive long and the others as they are, with the hash computed while the key is filled, so a grouped
+ * aggregation reuses one key to probe its groups and copies it only when a new group is met. The values are joined
+ * by {@code "__"} into the external string form only when the results are produced.
+ * <p>
+ * Values are compared by their string form, as the results are keyed by it: the other values are kept as strings,
+ * and a string of the canonical form of a long or a double is kept as that number, so 5, 5L and "5" are one group,
+ * as are 3.5 and "3.5", while 5 and 5.0 are not.
+ */
+public final class GroupKey {
+
+    private static final int DEFAULT_CAPACITY = 4;
+    // marks a value kept as the bits of a double in longs
+    private static final Object DOUBLE = new Object();
+
+    private long[] longs;
+    private Object[] objects;
+    private int size;
+    private int hash = 1;
+
+    public GroupKey() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public GroupKey(int capacity) {
+        this.longs = new long[capacity];
+        this.objects = new Object[capacity];
+    }
+
+    public void clear() {
+        Arrays.fill(objects, 0, size, null);
+        size = 0;
+        hash = 1;
+    }
+
+    /**
+     * Appends the value of the next grouping column, called by the generated {@code grouping} method.
+     */
+    public void add(Object value) {
+        if (size == objects.length) {
+            longs = Arrays.copyOf(longs, size * 2);
+            objects = Arrays.copyOf(objects, size * 2);
+        }
+        int h;
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            h = addLong(((Number) value).longValue());
+        } else if (value instanceof Double) {
+            h = addDouble((Double) value);
+        } else if (value instanceof BigDecimal && ((BigDecimal) value).scale() == 0
+                && ((BigDecimal) value).unscaledValue().bitLength() < 64) {
+            h = addLong(((BigDecimal) value).longValue());
+        } else {
+            String string = RuntimeUtils.covertString(value);
+            if (isCanonicalLong(string)) {
+                h = addLong(Long.parseLong(string));
+            } else if (isCanonicalDouble(string)) {
+                h = addDouble(Double.parseDouble(string));
+            } else {
+                objects[size] = string;
+                h = string.hashCode();
+            }
+        }
+        hash = 31 * hash + h;
+        size++;
+    }
+
+    private int addLong(long l) {
+        longs[size] = l;
+        return Long.hashCode(l);
+    }
+
+    private int addDouble(double d) {
+        // the bits of all the NaNs are one, as their string forms are
+        long bits = Double.doubleToLongBits(d);
+        longs[size] = bits;
+        objects[size] = DOUBLE;
+        return Long.hashCode(bits);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public GroupKey copy() {
+        GroupKey key = new GroupKey(Math.max(size, 1));
+        System.arraycopy(longs, 0, key.longs, 0, size);
+        System.arraycopy(objects, 0, key.objects, 0, size);
+        key.size = size;
+        key.hash = hash;
+        return key;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GroupKey)) {
+            return false;
+        }
+        GroupKey other = (GroupKey) o;
+        if (size != other.size || hash != other.hash) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            Object object = objects[i];
+            if (object == null || object == DOUBLE) {
+                if (other.objects[i] != object || longs[i] != other.longs[i]) {
+                    return false;
+                }
+            } else if (!object.equals(other.objects[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the values joined by {@code "__"}, the form of the group keys in the results
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append("__");
+            }
+            Object object = objects[i];
+            if (object == null) {
+                sb.append(longs[i]);
+            } else if (object == DOUBLE) {
+                sb.append(Double.longBitsToDouble(longs[i]));
+            } else {
+                sb.append(object);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return true if the string is the form of a long given by {@link Long#toString(long)}
+     */
+    private static boolean isCanonicalLong(String string) {
+        int length = string.length();
+        int start = length > 1 && string.charAt(0) == '-' ? 1 : 0;
+        if (length == start || length - start > 19 || (string.charAt(start) == '0' && (length > 1))) {
+            return false;
+        }
+        for (int i = start; i < length; i++) {
+            char c = string.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        if (length - start < 19) {
+            return true;
+        }
+        try {
+            Long.parseLong(string);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return true if the string is the form of a double given by {@link Double#toString(double)}
+     */
+    private static boolean isCanonicalDouble(String string) {
+        int length = string.length();
+        if (length == 0 || length > 32) {
+            return false;
+        }
+        boolean point = false;
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+            if (c == '.') {
+                point = true;
+            } else if ((c < '0' || c > '9') && c != '-' && c != 'E') {
+                return string.equals("NaN") || string.equals("Infinity") || string.equals("-Infinity");
+            }
+        }
+        if (!point) {
+            return false;
+        }
+        try {
+            return Double.toString(Double.parseDouble(string)).equals(string);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.soloquest.soloscan;
+
+import org.soloquest.soloscan.runtime.aggfunction.AggFunction;
+import org.soloquest.soloscan.utils.Env;
+
+import java.util.List;
+
+public interface MetricUnitExpression extends Expression {
+
+    final static String NO_GROUPING = "__NO_GROUPING";
+
+    /**
+     * Fills the key with the values of the grouping columns of the row.
+     */
+    default void grouping(Env rowEnv, GroupKey key) {
+    }
+
+    default String grouping(Env rowEnv) {
+        if (!hasGrouping()) {
+            return NO_GROUPING;
+        }
+        GroupKey key = new GroupKey();
+        grouping(rowEnv, key);
+        return key.toString();
+    }
+
+    default boolean filter(Env rowEnv) {
+        return true;
+    }
+
+    /**
+     * Filters, groups and aggregates one row. The generated metric units override it with one method calling
+     * their own filter and grouping and every aggregate function at a call site of its own.
+     *
+     * @return false if the row is filtered out
+     */
+    default boolean processRow(Env rowEnv, AggregationState state) {
+        if (!filter(rowEnv)) {
+            return false;
+        }
+        grouping(rowEnv, state.key());
+        for (AggFunction aggFunction : state.functions()) {
+            aggFunction.process(rowEnv);
+        }
+        return true;
+    }
+
+    boolean hasGrouping();
+
+    Object execute0(Env env);
+
+    String getPlaceHolder();
+
+    List<AggFunctionUnit> getAggFunctionUnits();
+
+    @Override
+    MetricUnitInstance newInstance();
+}
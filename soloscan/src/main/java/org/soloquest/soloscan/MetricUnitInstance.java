@@ -0,0 +1,251 @@
+package org.soloquest.soloscan;
+
+import lombok.extern.slf4j.Slf4j;
+import org.soloquest.soloscan.dataset.Row;
+import org.soloquest.soloscan.dataset.TerminalRow;
+import org.soloquest.soloscan.exception.ExpressionExecuteException;
+import org.soloquest.soloscan.runtime.aggfunction.AggFunction;
+import org.soloquest.soloscan.utils.Env;
+import org.soloquest.soloscan.utils.Preconditions;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.soloquest.soloscan.MetricUnitExpression.NO_GROUPING;
+
+/**
+ * One execution of a {@link MetricUnitExpression}, it owns the aggregate state. After {@link #open} the rows passed
+ * to {@link #consumeRow} are aggregated at once, by the inline scan or by the thread executing the request, which
+ * drains the {@link RowRingBuffer} of a data provider thread.
+ */
+@Slf4j
+public class MetricUnitInstance implements ExpressionInstance {
+
+    private final MetricUnitExpression expression;
+    private final AtomicInteger consumerCount = new AtomicInteger();
+    private boolean executed;
+    private volatile Aggregation aggregation;
+    private Object result;
+
+    public MetricUnitInstance(MetricUnitExpression expression) {
+        this.expression = expression;
+    }
+
+    public MetricUnitExpression getExpression() {
+        return expression;
+    }
+
+    int addConsumer() {
+        return consumerCount.incrementAndGet();
+    }
+
+    public boolean isShared() {
+        return consumerCount.get() > 1;
+    }
+
+    /**
+     * Executes a metric unit shared by several expressions of one request, the first caller evaluates the rows
+     * aggregated in a private env and the others wait for its result. Each caller gets its own copy of a grouped result,
+     * since the expressions may combine it in place.
+     */
+    public synchronized Object executeShared(Env env) {
+        if (!executed) {
+            result = execute(env);
+            executed = true;
+        }
+        if (result instanceof Map) {
+            return new HashMap<>((Map<?, ?>) result);
+        }
+        return result;
+    }
+
+    /**
+     * Forgets the result of a shared execution, a {@link ContinuousAggregation} finishes the aggregation again after
+     * more rows.
+     */
+    private synchronized void resetResult() {
+        executed = false;
+        result = null;
+    }
+
+    /**
+     * Prepares the scan: the rows passed to {@link #consumeRow} are aggregated at once on the calling thread, and
+     * {@link #execute} only evaluates the result.
+     */
+    @Override
+    public void open(Map<String, Object> map) {
+        Env env = toEnv(map);
+        if (isShared()) {
+            // the first consumer of a shared metric unit aggregates it in a private env
+            env = new Env(env.getInstance(), expression, new HashMap<>(env.getEnvMap()));
+        }
+        this.aggregation = new Aggregation(env);
+    }
+
+    /**
+     * @return true if the partial aggregates of the rows of several workers can be merged
+     */
+    boolean isMergeable() {
+        for (AggFunctionUnit aggFunctionUnit : expression.getAggFunctionUnits()) {
+            if (!aggFunctionUnit.isMergeable()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return an empty partial aggregate of the opened scan, owned by one worker of a parallel scan
+     */
+    Partial newPartial() {
+        return new Partial(aggregation.env);
+    }
+
+    /**
+     * Merges the partial aggregate of a worker into the opened scan.
+     */
+    void merge(Partial partial) {
+        aggregation.merge(partial);
+    }
+
+    /**
+     * The aggregate state of the rows seen by one thread.
+     */
+    class Partial {
+
+        final Env env;
+        final AggregationState state;
+        private Env rowEnv;
+        int rowNum;
+        int filterNum;
+
+        Partial(Env env) {
+            this.env = env;
+            List<AggFunctionUnit> aggFunctionUnits = expression.getAggFunctionUnits();
+            this.state = aggFunctionUnits.size() == 0 ? null : new AggregationState(aggFunctionUnits);
+        }
+
+        void accept(Row row) {
+            if (state == null) {
+                return;
+            }
+            rowNum++;
+            rowEnv = rowEnv == null ? env.newRowEnv(row) : rowEnv.resetRow(row);
+            if (!expression.processRow(rowEnv, state)) {
+                filterNum++;
+            }
+        }
+    }
+
+    /**
+     * The aggregate state of one scan, fed row by row or merged from the partial aggregates of a parallel scan.
+     */
+    private class Aggregation extends Partial {
+
+        private final boolean hasGrouping = expression.hasGrouping();
+        private volatile boolean finished;
+
+        Aggregation(Env env) {
+            super(env);
+            if (state == null) {
+                log.warn("{} hava no aggregation function", expression);
+            }
+        }
+
+        void merge(Partial partial) {
+            if (state != null) {
+                state.merge(partial.state);
+            }
+            rowNum += partial.rowNum;
+            filterNum += partial.filterNum;
+        }
+
+        void finish() {
+            putAggrValues();
+            finished = true;
+        }
+
+        private void putAggrValues() {
+            if (state == null) {
+                return;
+            }
+            log.info("{} has already processed {} records and filter {} records", expression, rowNum, filterNum);
+            List<AggFunctionUnit> aggFunctionUnits = expression.getAggFunctionUnits();
+            Map<String, Map<String, Object>> aggFunctionMapMap = new HashMap<>();//第一个key是占位符，第二个是groupkey
+            for (Map.Entry<GroupKey, AggFunction[]> entry : state.getGroups().entrySet()) {
+                String group = hasGrouping ? entry.getKey().toString() : NO_GROUPING;
+                for (AggFunction aggFunction : entry.getValue()) {
+                    aggFunctionMapMap.compute(aggFunction.getPlaceHolder(), (key, value) -> {
+                        if (value == null) {
+                            value = new HashMap<>();
+                        }
+                        value.put(group, aggFunction.getValue());
+                        return value;
+                    });
+                }
+            }
+            if (aggFunctionMapMap.size() == 0) {
+                log.warn("all data be filter out");
+                for (AggFunctionUnit aggFunctionUnit : aggFunctionUnits) {
+                    if (hasGrouping) {
+                        env.putAggrValue(aggFunctionUnit.getAggFunctionText().getPlaceHolder(), new HashMap<>());
+                    } else {
+                        env.putAggrValue(aggFunctionUnit.getAggFunctionText().getPlaceHolder(), Long.valueOf(0));
+                    }
+                }
+            } else {
+                for (String key : aggFunctionMapMap.keySet()) {
+                    log.info("{} put the agg value,key:{} and value:{}", expression, key, aggFunctionMapMap.get(key));
+                    if (hasGrouping) {
+                        env.putAggrValue(key, aggFunctionMapMap.get(key));
+                    } else {
+                        Map<String, Object> map = aggFunctionMapMap.get(key);
+                        Preconditions.checkArgument(map.size() == 1 &&
+                                        NO_GROUPING.equalsIgnoreCase(map.keySet().iterator().next()),
+                                "the data of no group is invalid");
+                        env.putAggrValue(key, map.values().iterator().next());
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean consumeRow(Row row) {
+        Aggregation aggregation = this.aggregation;
+        if (aggregation != null) {
+            if (row == TerminalRow.INSTANCE) {
+                aggregation.finish();
+                resetResult();
+            } else {
+                aggregation.accept(row);
+            }
+            return true;
+        }
+        throw new ExpressionExecuteException(expression + " is not opened for a scan");
+    }
+
+    @Override
+    public Object execute(Map<String, Object> map) {
+        log.info("{} start to execute,map:{}", expression, map);
+        Aggregation aggregation = this.aggregation;
+        Preconditions.checkNotNull(aggregation, expression + " is not fed by a scan");
+        Preconditions.checkArgument(aggregation.finished, "the scan of " + expression + " is not finished");
+        Env env = aggregation.env;
+        Object object = expression.execute0(env);
+        env.put(expression.getPlaceHolder(), object);
+        return object;
+    }
+
+    private Env toEnv(Map<String, Object> map) {
+        if (map == null) {
+            map = new HashMap<>();
+        }
+        if (map instanceof Env) {
+            return (Env) map;
+        }
+        return new Env(null, expression, map);
+    }
+}
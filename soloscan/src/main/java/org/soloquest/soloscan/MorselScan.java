@@ -0,0 +1,151 @@
+package org.soloquest.soloscan;
+
+import lombok.extern.slf4j.Slf4j;
+import org.soloquest.soloscan.dataset.DataSet;
+import org.soloquest.soloscan.dataset.Row;
+import org.soloquest.soloscan.dataset.TerminalRow;
+import org.soloquest.soloscan.exception.ExpressionExecuteException;
+import org.soloquest.soloscan.exception.ExpressionRuntimeException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * The parallel inline scan of {@link SoloscanOptions#CONCURRENT_PROCESSS}. The workers take morsels of consecutive
+ * rows from the data set in turn, and aggregate them into partial group tables of their own. When the data set is
+ * exhausted the partials are merged into the metric units, before the expressions are evaluated.
+ * <p>
+ * The thread executing the request is a worker too, it scans a data set of one morsel alone. The other workers are
+ * tasks of the shared {@link SoloscanPools#aggregation()} pool, the scan goes on with fewer of them when it is busy.
+ */
+@Slf4j
+final class MorselScan {
+
+    private final DataSet dataSet;
+    private final Cancellation cancellation;
+    private final ExpressionInstance[] expressions;
+    private final List<MetricUnitInstance> metricUnitInstances;
+    private final int morselSize;
+    private volatile boolean stopped;
+
+    private MorselScan(DataSet dataSet, Cancellation cancellation, ExpressionInstance[] expressions,
+                       List<MetricUnitInstance> metricUnitInstances) {
+        this.dataSet = dataSet;
+        this.cancellation = cancellation;
+        this.expressions = expressions;
+        this.metricUnitInstances = metricUnitInstances;
+        this.morselSize = Math.max(1, SoloscanOptions.getOption(SoloscanOptions.SCAN_MORSEL_SIZE));
+    }
+
+    /**
+     * Scans the data set for the opened expressions.
+     *
+     * @return false if a metric unit has an aggregate function which can not merge, the data set is not touched then
+     */
+    static boolean scan(DataSet dataSet, Cancellation cancellation, ExpressionInstance... expressions) {
+        List<MetricUnitInstance> metricUnitInstances = new ArrayList<>();
+        for (ExpressionInstance expression : expressions) {
+            if (expression instanceof SoloExpressionInstance) {
+                metricUnitInstances.addAll(((SoloExpressionInstance) expression).getOwnedMetricUnitInstances());
+            } else if (expression instanceof MetricUnitInstance) {
+                metricUnitInstances.add((MetricUnitInstance) expression);
+            } else {
+                return false;
+            }
+        }
+        for (MetricUnitInstance metricUnitInstance : metricUnitInstances) {
+            if (!metricUnitInstance.isMergeable()) {
+                log.info("{} can not merge partial aggregates, the data set is scanned by one thread", metricUnitInstance.getExpression());
+                return false;
+            }
+        }
+        new MorselScan(dataSet, cancellation, expressions, metricUnitInstances).run();
+        return true;
+    }
+
+    private void run() {
+        long start = System.currentTimeMillis();
+        Row[] morsel = new Row[morselSize];
+        int size = nextMorsel(morsel);
+        List<Future<List<MetricUnitInstance.Partial>>> futures = new ArrayList<>();
+        if (size == morselSize) {
+            int parallelism = Math.max(1, SoloscanOptions.getOption(SoloscanOptions.SCAN_PARALLELISM));
+            try {
+                for (int i = 1; i < parallelism; i++) {
+                    futures.add(SoloscanPools.aggregation().submit(() -> work(null, 0)));
+                }
+            } catch (RejectedExecutionException e) {
+                log.warn("the parallel scan gets {} workers of {}: {}", futures.size() + 1, parallelism, e.getMessage());
+            }
+        }
+        List<List<MetricUnitInstance.Partial>> partials = new ArrayList<>(futures.size() + 1);
+        try {
+            partials.add(work(morsel, size));
+            for (Future<List<MetricUnitInstance.Partial>> future : futures) {
+                partials.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            throw new ExpressionExecuteException("the parallel scan is interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ExpressionRuntimeException) {
+                throw (ExpressionRuntimeException) e.getCause();
+            }
+            throw new ExpressionExecuteException(e.getCause());
+        } finally {
+            stopped = true;
+        }
+        for (List<MetricUnitInstance.Partial> workerPartials : partials) {
+            for (int i = 0; i < workerPartials.size(); i++) {
+                metricUnitInstances.get(i).merge(workerPartials.get(i));
+            }
+        }
+        for (ExpressionInstance expression : expressions) {
+            expression.consumeRow(TerminalRow.INSTANCE);
+        }
+        log.info("parallel scan of {} workers, cost : {} ms", partials.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Aggregates morsels into the partials of one worker until the data set is exhausted.
+     *
+     * @param morsel the first morsel, null if the worker takes it itself
+     */
+    private List<MetricUnitInstance.Partial> work(Row[] morsel, int size) {
+        List<MetricUnitInstance.Partial> partials = new ArrayList<>(metricUnitInstances.size());
+        for (MetricUnitInstance metricUnitInstance : metricUnitInstances) {
+            partials.add(metricUnitInstance.newPartial());
+        }
+        if (morsel == null) {
+            morsel = new Row[morselSize];
+            size = nextMorsel(morsel);
+        }
+        try {
+            while (size > 0 && !stopped) {
+                for (MetricUnitInstance.Partial partial : partials) {
+                    for (int i = 0; i < size; i++) {
+                        partial.accept(morsel[i]);
+                    }
+                }
+                size = size < morselSize ? 0 : nextMorsel(morsel);
+            }
+        } catch (RuntimeException e) {
+            stopped = true;
+            throw e;
+        }
+        return partials;
+    }
+
+    private int nextMorsel(Row[] morsel) {
+        cancellation.check();
+        synchronized (dataSet) {
+            int size = 0;
+            while (size < morsel.length && !stopped && dataSet.hasNext()) {
+                morsel[size++] = dataSet.next();
+            }
+            return size;
+        }
+    }
+}
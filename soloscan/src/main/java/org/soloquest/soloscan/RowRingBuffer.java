@@ -0,0 +1,287 @@
+package org.soloquest.soloscan;
+
+import org.soloquest.soloscan.dataset.Row;
+import org.soloquest.soloscan.dataset.TerminalRow;
+import org.soloquest.soloscan.exception.ExpressionExecuteException;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The bounded handoff of the rows of one scan from the data provider thread to the metric units. The rows are
+ * written into pre-allocated batches, every consumer reads every published batch and tracks its own sequence, and
+ * the producer waits for the slowest consumer before it overwrites a batch. A consumer feeds the rows to one
+ * expression instance of the request, see {@link DataProvider#work}.
+ */
+final class RowRingBuffer {
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final Row[][] batches;
+    private final int[] sizes;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+    private final long timeoutNanos;
+    private final List<Consumer> consumers = new CopyOnWriteArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    // the sequence of the next batch to publish, the batches before it are readable
+    private volatile long cursor;
+    private volatile boolean closed;
+    private volatile Throwable failure;
+    private Row[] current;
+    private int currentSize;
+
+    /**
+     * @param capacity  the count of batches, rounded up to a power of two
+     * @param batchSize the count of rows of a batch
+     * @param timeout   how long the producer waits for a free batch and a consumer for the next batch
+     */
+    RowRingBuffer(int capacity, int batchSize, WaitStrategy waitStrategy, long timeout, TimeUnit unit) {
+        int size = Integer.highestOneBit(Math.max(capacity, 1) * 2 - 1);
+        this.batches = new Row[size][Math.max(batchSize, 1)];
+        this.sizes = new int[size];
+        this.mask = size - 1;
+        this.waitStrategy = waitStrategy;
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+
+    /**
+     * Registers a consumer, all the consumers must be registered before the first batch is published.
+     */
+    Consumer newConsumer() {
+        Consumer consumer = new Consumer();
+        consumers.add(consumer);
+        return consumer;
+    }
+
+    int getCapacity() {
+        return batches.length;
+    }
+
+    int getBatchSize() {
+        return batches[0].length;
+    }
+
+    /**
+     * Appends a row to the current batch, the batch is published when it is full.
+     *
+     * @return false if all the consumers have stopped consuming
+     */
+    boolean publish(Row row) throws InterruptedException {
+        if (current == null) {
+            long sequence = cursor;
+            if (!await(() -> sequence - minSequence() < batches.length)) {
+                throw new ExpressionExecuteException("the consumers have not released a batch for "
+                        + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms");
+            }
+            if (minSequence() == Long.MAX_VALUE) {
+                return false;
+            }
+            current = batches[(int) sequence & mask];
+        }
+        current[currentSize++] = row;
+        if (currentSize == current.length) {
+            flush();
+        }
+        return true;
+    }
+
+    /**
+     * Publishes the last batch and ends the scan.
+     */
+    void close() {
+        if (current != null) {
+            flush();
+        }
+        closed = true;
+        signal();
+    }
+
+    /**
+     * Ends the scan with an error, the consumers throw it when they reach the end.
+     */
+    void fail(Throwable e) {
+        failure = e;
+        closed = true;
+        signal();
+    }
+
+    private void flush() {
+        long sequence = cursor;
+        sizes[(int) sequence & mask] = currentSize;
+        current = null;
+        currentSize = 0;
+        cursor = sequence + 1;
+        signal();
+    }
+
+    private long minSequence() {
+        long min = Long.MAX_VALUE;
+        for (Consumer consumer : consumers) {
+            min = Math.min(min, consumer.sequence);
+        }
+        return min;
+    }
+
+    private void signal() {
+        if (waitStrategy == WaitStrategy.BLOCKING) {
+            lock.lock();
+            try {
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return false if the condition is still false after the timeout
+     */
+    private boolean await(BooleanSupplier condition) throws InterruptedException {
+        if (condition.getAsBoolean()) {
+            return true;
+        }
+        long deadline = System.nanoTime() + timeoutNanos;
+        if (waitStrategy == WaitStrategy.BLOCKING) {
+            lock.lockInterruptibly();
+            try {
+                long nanos = timeoutNanos;
+                while (!condition.getAsBoolean()) {
+                    if (nanos <= 0) {
+                        return false;
+                    }
+                    nanos = changed.awaitNanos(nanos);
+                }
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+        for (int tries = 0; !condition.getAsBoolean(); tries++) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if ((tries & 0xFF) == 0 && System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            if (waitStrategy == WaitStrategy.BUSY_SPIN || tries < SPIN_TRIES) {
+                continue;
+            }
+            if (waitStrategy == WaitStrategy.YIELDING || tries < SPIN_TRIES + YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The reading position of one expression instance.
+     */
+    final class Consumer {
+
+        // the sequence of the next batch to read, the batches before it are released
+        private volatile long sequence;
+        private long consumed;
+
+        /**
+         * Waits for the next batch, it stays valid until {@link #release()}.
+         *
+         * @return the rows of the batch, null at the end of the scan
+         */
+        Row[] take() throws InterruptedException {
+            long next = sequence;
+            if (!await(() -> cursor > next || closed)) {
+                throw new ExpressionExecuteException("has already consumed " + consumed + " records!");
+            }
+            if (cursor > next) {
+                return batches[(int) next & mask];
+            }
+            Throwable failure = RowRingBuffer.this.failure;
+            if (failure != null) {
+                throw new ExpressionExecuteException("the data provider failed after " + consumed + " records", failure);
+            }
+            return null;
+        }
+
+        /**
+         * @return the count of rows of the batch returned by the last {@link #take()}
+         */
+        int size() {
+            return sizes[(int) sequence & mask];
+        }
+
+        void release() {
+            consumed += size();
+            sequence = sequence + 1;
+            signal();
+        }
+
+        /**
+         * Feeds all the rows of the scan to the instances, followed by {@link TerminalRow#INSTANCE}. The cancellation
+         * is checked before every batch.
+         */
+        void drain(Cancellation cancellation, ExpressionInstance... instances) throws InterruptedException {
+            try {
+                while (drainBatch(cancellation, instances)) {
+                }
+            } finally {
+                detach();
+            }
+        }
+
+        /**
+         * Feeds the rows of the next batch to the instances, at the end of the scan {@link TerminalRow#INSTANCE}.
+         *
+         * @return false at the end of the scan
+         */
+        boolean drainBatch(Cancellation cancellation, ExpressionInstance... instances) throws InterruptedException {
+            Row[] rows = take();
+            if (rows == null) {
+                detach();
+                for (ExpressionInstance instance : instances) {
+                    instance.consumeRow(TerminalRow.INSTANCE);
+                }
+                return false;
+            }
+            cancellation.check();
+            int size = size();
+            for (ExpressionInstance instance : instances) {
+                for (int i = 0; i < size; i++) {
+                    instance.consumeRow(rows[i]);
+                }
+            }
+            release();
+            return true;
+        }
+
+        /**
+         * Stops consuming, the producer does not wait for this consumer any more.
+         */
+        void detach() {
+            sequence = Long.MAX_VALUE;
+            signal();
+        }
+
+        /**
+         * @return the sequence of the next batch to read, {@link Long#MAX_VALUE} once detached
+         */
+        long getSequence() {
+            return sequence;
+        }
+
+        long getConsumed() {
+            return consumed;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.soloquest.soloscan;
+
+/**
+ * How the rows of a data set are fed to the metric units of a request.
+ */
+public enum ScanMode {
+
+    /**
+     * The thread executing the request iterates the data set and aggregates every row at once, before the
+     * expressions are evaluated.
+     */
+    INLINE,
+
+    /**
+     * A data provider thread iterates the data set and hands the rows in batches to the thread executing the request,
+     * which aggregates them before the expressions are evaluated.
+     */
+    THREADED
+}
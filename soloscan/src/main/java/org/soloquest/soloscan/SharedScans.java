@@ -0,0 +1,131 @@
+package org.soloquest.soloscan;
+
+import lombok.extern.slf4j.Slf4j;
+import org.soloquest.soloscan.dataset.DataSet;
+import org.soloquest.soloscan.exception.ExpressionExecuteException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces the concurrent requests over the same source into one scan. The first request of a source id opens a
+ * shared scan and waits {@link SoloscanOptions#SCAN_SHARE_WINDOW_MS} for more requests, then a data provider thread of
+ * the {@link SoloscanPools#scan()} pool opens the data set once and hands its rows over through a {@link RowRingBuffer}.
+ * Every request aggregates all the rows on its own thread, through a consumer of its own. A request arriving after the
+ * window starts the next shared scan of the source.
+ */
+@Slf4j
+final class SharedScans {
+
+    // the shared scans waiting for requests, by source id
+    private final Map<String, SharedScan> openScans = new HashMap<>();
+
+    /**
+     * Feeds the rows of the shared scan of the source to the expressions, the scan is finished when it returns.
+     *
+     * @param source opens the data set, called once per shared scan; the data set is closed after the scan
+     */
+    void feed(String sourceId, Supplier<DataSet> source, Map<String, Object> env, Cancellation cancellation,
+              ExpressionInstance... expressions) throws InterruptedException {
+        SharedScan scan;
+        RowRingBuffer.Consumer consumer;
+        boolean leader = false;
+        synchronized (openScans) {
+            scan = openScans.get(sourceId);
+            if (scan == null) {
+                scan = new SharedScan(sourceId, source);
+                openScans.put(sourceId, scan);
+                leader = true;
+            }
+            consumer = scan.join();
+        }
+        try {
+            if (leader) {
+                try {
+                    open(env, expressions);
+                    TimeUnit.MILLISECONDS.sleep(SoloscanOptions.getOption(SoloscanOptions.SCAN_SHARE_WINDOW_MS));
+                } catch (Throwable e) {
+                    // the requests which joined the scan fail instead of waiting for rows which never come
+                    close(sourceId);
+                    scan.ringBuffer.fail(e);
+                    throw e;
+                }
+                close(sourceId);
+                scan.start();
+            } else {
+                open(env, expressions);
+            }
+            consumer.drain(cancellation, expressions);
+        } finally {
+            // the data provider does not wait for a request which failed before it drained the rows
+            consumer.detach();
+        }
+    }
+
+    private static void open(Map<String, Object> env, ExpressionInstance... expressions) {
+        for (ExpressionInstance expression : expressions) {
+            expression.open(env);
+        }
+    }
+
+    /**
+     * Ends the window of the shared scan of the source, the next request starts another scan.
+     */
+    private void close(String sourceId) {
+        synchronized (openScans) {
+            openScans.remove(sourceId);
+        }
+    }
+
+    private static final class SharedScan {
+
+        private final String sourceId;
+        private final Supplier<DataSet> source;
+        private final RowRingBuffer ringBuffer;
+        private int requests;
+
+        private SharedScan(String sourceId, Supplier<DataSet> source) {
+            this.sourceId = sourceId;
+            this.source = source;
+            this.ringBuffer = new RowRingBuffer(
+                    SoloscanOptions.getOption(SoloscanOptions.SCAN_RING_BUFFER_BATCHES),
+                    SoloscanOptions.getOption(SoloscanOptions.SCAN_BATCH_SIZE),
+                    SoloscanOptions.getOption(SoloscanOptions.SCAN_WAIT_STRATEGY),
+                    SoloscanOptions.getOption(SoloscanOptions.SCAN_WAIT_TIMEOUT_MS), TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Called before {@link #start()}, while the scan is open.
+         */
+        private RowRingBuffer.Consumer join() {
+            requests++;
+            return ringBuffer.newConsumer();
+        }
+
+        private void start() {
+            log.info("shared scan of {} requests over {}", requests, sourceId);
+            try {
+                SoloscanPools.scan().submit(() -> {
+                    DataSet dataSet = null;
+                    try {
+                        dataSet = source.get();
+                        new DataProvider(dataSet, ringBuffer, Cancellation.of(dataSet)).run();
+                    } catch (RuntimeException e) {
+                        ringBuffer.fail(e);
+                        log.error("shared scan over {} occurs error", sourceId, e);
+                    } finally {
+                        if (dataSet != null) {
+                            dataSet.close();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                ringBuffer.fail(e);
+                throw new ExpressionExecuteException("can not start the shared scan over " + sourceId, e);
+            }
+        }
+    }
+}
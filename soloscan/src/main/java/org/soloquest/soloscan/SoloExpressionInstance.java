@@ -0,0 +1,117 @@
+package org.soloquest.soloscan;
+
+import lombok.extern.slf4j.Slf4j;
+import org.soloquest.soloscan.dataset.Row;
+import org.soloquest.soloscan.utils.Env;
+import org.soloquest.soloscan.utils.MiscUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One execution of a {@link BaseSoloExpression}, it owns the metric unit instances and the {@link Env}.
+ */
+@Slf4j
+public class SoloExpressionInstance implements ExpressionInstance {
+
+    private final BaseSoloExpression expression;
+    private final List<MetricUnitInstance> metricUnitInstances;
+    // the metric unit instances fed by this one, a shared instance is fed only by the expression creating it
+    private final List<MetricUnitInstance> ownedMetricUnitInstances;
+    private Env env;
+    private boolean opened;
+
+    public SoloExpressionInstance(BaseSoloExpression expression) {
+        this(expression, null);
+    }
+
+    /**
+     * @param sharedInstances the metric unit instances of one request keyed by normalized metric unit text,
+     *                        the identical metric units of the request are evaluated once, null if not shared
+     */
+    public SoloExpressionInstance(BaseSoloExpression expression, Map<String, MetricUnitInstance> sharedInstances) {
+        this.expression = expression;
+        List<MetricUnitExpression> metricUnitExpressions = expression.getMetricUnitExpressions();
+        this.metricUnitInstances = new ArrayList<>(metricUnitExpressions.size());
+        this.ownedMetricUnitInstances = new ArrayList<>(metricUnitExpressions.size());
+        for (MetricUnitExpression metricUnitExpression : metricUnitExpressions) {
+            MetricUnitInstance metricUnitInstance;
+            if (sharedInstances == null) {
+                metricUnitInstance = metricUnitExpression.newInstance();
+            } else {
+                metricUnitInstance = sharedInstances.computeIfAbsent(
+                        MiscUtils.normalizeExpression(metricUnitExpression.getExpressionString()), k -> metricUnitExpression.newInstance());
+            }
+            if (metricUnitInstance.addConsumer() == 1) {
+                this.ownedMetricUnitInstances.add(metricUnitInstance);
+            }
+            this.metricUnitInstances.add(metricUnitInstance);
+        }
+    }
+
+    public BaseSoloExpression getExpression() {
+        return expression;
+    }
+
+    public List<MetricUnitInstance> getMetricUnitInstances() {
+        return metricUnitInstances;
+    }
+
+    /**
+     * @return the metric unit instances fed by the rows consumed by this one
+     */
+    List<MetricUnitInstance> getOwnedMetricUnitInstances() {
+        return ownedMetricUnitInstances;
+    }
+
+    public Env getEnv() {
+        return env;
+    }
+
+    @Override
+    public void open(Map<String, Object> map) {
+        this.env = newEnv(map);
+        this.opened = true;
+        for (MetricUnitInstance metricUnitInstance : ownedMetricUnitInstances) {
+            metricUnitInstance.open(env);
+        }
+    }
+
+    @Override
+    public Object execute(Map<String, Object> map) {
+        log.info("{} start to execute,map:{}", expression, map);
+        if (!opened) {
+            this.env = newEnv(map);
+        }
+        List<MetricUnitExpression> metricUnitExpressions = expression.getMetricUnitExpressions();
+        for (int i = 0; i < metricUnitInstances.size(); i++) {
+            MetricUnitInstance metricUnitInstance = metricUnitInstances.get(i);
+            if (metricUnitInstance.isShared()) {
+                env.put(metricUnitExpressions.get(i).getPlaceHolder(), metricUnitInstance.executeShared(env));
+            } else {
+                metricUnitInstance.execute(env);
+            }
+        }
+        return expression.execute0(env);
+    }
+
+    private Env newEnv(Map<String, Object> map) {
+        if (map == null) {
+            map = new ConcurrentHashMap<>();
+        } else {
+            map = new ConcurrentHashMap<>(map);
+        }
+        return new Env(expression.getInstance(), expression, map);
+    }
+
+    @Override
+    public boolean consumeRow(Row row) {
+        for (MetricUnitInstance metricUnitInstance : ownedMetricUnitInstances) {
+            metricUnitInstance.consumeRow(row);
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,237 @@
+package org.soloquest.soloscan;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+public class SoloscanCache<T, R> {
+
+    private final LinkedHashMap<T, Node<R>> map;
+    private final Function<T, R> function;
+    private final boolean cached;
+    private final int maxSize;
+    private final long maxWeight;
+    private final ToIntFunction<R> weigher;
+    private long totalWeight;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public SoloscanCache(Function<T, R> function) {
+        this(false, function);
+    }
+
+    public SoloscanCache(boolean cached, Function<T, R> function) {
+        this(cached, 0, function);
+    }
+
+    public SoloscanCache(boolean cached, int maxSize, Function<T, R> function) {
+        this(cached, maxSize, 0, null, function);
+    }
+
+    /**
+     * @param maxSize   the least recently used entries are evicted when the size exceeds it, 0 means unbounded
+     * @param maxWeight the least recently used entries are evicted when the total weight exceeds it, 0 means unbounded
+     * @param weigher   weight of a computed value
+     */
+    public SoloscanCache(boolean cached, int maxSize, long maxWeight, ToIntFunction<R> weigher, Function<T, R> function) {
+        this.cached = cached;
+        this.maxSize = maxSize;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.function = function;
+        this.map = new LinkedHashMap<T, Node<R>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<T, Node<R>> eldest) {
+                if (SoloscanCache.this.maxSize > 0 && size() > SoloscanCache.this.maxSize) {
+                    evictionCount.incrementAndGet();
+                    totalWeight -= eldest.getValue().weight;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public R getR(T t) throws ExecutionException, InterruptedException {
+        if (!cached) {
+            return function.apply(t);
+        }
+        Node<R> node;
+        boolean created = false;
+        synchronized (map) {
+            node = map.get(t);
+            if (node == null) {
+                node = new Node<>(new FutureTask<>(() -> function.apply(t)));
+                map.put(t, node);
+                created = true;
+            }
+        }
+        if (created) {
+            missCount.incrementAndGet();
+            node.task.run();
+        } else {
+            hitCount.incrementAndGet();
+        }
+        try {
+            R r = node.task.get();
+            if (created && weigher != null) {
+                weigh(t, node, weigher.applyAsInt(r));
+            }
+            return r;
+        } catch (ExecutionException e) {
+            // failed computations are not cached
+            synchronized (map) {
+                if (map.get(t) == node) {
+                    remove(t);
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Puts a value computed elsewhere, it is ignored if the cache is disabled.
+     */
+    public void put(T t, R r) {
+        if (!cached) {
+            return;
+        }
+        FutureTask<R> task = new FutureTask<>(() -> r);
+        task.run();
+        Node<R> node = new Node<>(task);
+        synchronized (map) {
+            remove(t);
+            map.put(t, node);
+        }
+        if (weigher != null) {
+            weigh(t, node, weigher.applyAsInt(r));
+        }
+    }
+
+    private void weigh(T t, Node<R> node, int weight) {
+        synchronized (map) {
+            if (map.get(t) != node) {
+                return;
+            }
+            node.weight = weight;
+            totalWeight += weight;
+            if (maxWeight <= 0) {
+                return;
+            }
+            Iterator<Map.Entry<T, Node<R>>> iterator = map.entrySet().iterator();
+            while (totalWeight > maxWeight && iterator.hasNext()) {
+                Map.Entry<T, Node<R>> eldest = iterator.next();
+                if (eldest.getValue() == node) {
+                    continue;
+                }
+                iterator.remove();
+                totalWeight -= eldest.getValue().weight;
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    private boolean remove(T t) {
+        Node<R> node = map.remove(t);
+        if (node != null) {
+            totalWeight -= node.weight;
+            return true;
+        }
+        return false;
+    }
+
+    public boolean invalidate(T t) {
+        synchronized (map) {
+            return remove(t);
+        }
+    }
+
+    public int invalidateIf(Predicate<T> predicate) {
+        synchronized (map) {
+            int removed = 0;
+            Iterator<Map.Entry<T, Node<R>>> iterator = map.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<T, Node<R>> entry = iterator.next();
+                if (predicate.test(entry.getKey())) {
+                    iterator.remove();
+                    totalWeight -= entry.getValue().weight;
+                    removed++;
+                }
+            }
+            return removed;
+        }
+    }
+
+    public void clear() {
+        synchronized (map) {
+            this.map.clear();
+            this.totalWeight = 0;
+        }
+    }
+
+    public int size() {
+        synchronized (map) {
+            return map.size();
+        }
+    }
+
+    public long getTotalWeight() {
+        synchronized (map) {
+            return totalWeight;
+        }
+    }
+
+    public boolean isCached() {
+        return cached;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "SoloscanCache{" +
+                "size=" + size() +
+                ", maxSize=" + maxSize +
+                ", totalWeight=" + getTotalWeight() +
+                ", maxWeight=" + maxWeight +
+                ", hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", evictionCount=" + evictionCount +
+                '}';
+    }
+
+    private static class Node<R> {
+        private final FutureTask<R> task;
+        private int weight;
+
+        private Node(FutureTask<R> task) {
+            this.task = task;
+        }
+    }
+}
@@ -0,0 +1,678 @@
+package org.soloquest.soloscan;
+
+import lombok.extern.slf4j.Slf4j;
+import org.soloquest.soloscan.compiler.ExpressionCatalog;
+import org.soloquest.soloscan.compiler.PersistentExpressionCache;
+import org.soloquest.soloscan.compiler.SoloscanCompiler;
+import org.soloquest.soloscan.compiler.codegen.SoloscanClassloader;
+import org.soloquest.soloscan.compiler.lexer.SymbolTable;
+import org.soloquest.soloscan.compiler.parser.AggFunctionText;
+import org.soloquest.soloscan.dataset.DataSet;
+import org.soloquest.soloscan.dataset.Schema;
+import org.soloquest.soloscan.exception.ExpressionCompileException;
+import org.soloquest.soloscan.exception.ExpressionExecuteException;
+import org.soloquest.soloscan.exception.ExpressionRuntimeException;
+import org.soloquest.soloscan.runtime.aggfunction.*;
+import org.soloquest.soloscan.runtime.function.*;
+import org.soloquest.soloscan.runtime.lang.SFunction;
+import org.soloquest.soloscan.utils.MatrixUtils;
+import org.soloquest.soloscan.utils.MiscUtils;
+import org.soloquest.soloscan.utils.Preconditions;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+@Slf4j
+public class SoloscanExecutor {
+
+    public static final SoloscanExecutor INSTANCE = new SoloscanExecutor();
+    private static final char SCHEMA_SEPARATOR = '\u0000';
+    private SoloscanClassloader classLoader = new SoloscanClassloader(SoloscanExecutor.class.getClassLoader());
+    private final Map<String, SFunction> funcMap = new HashMap<>();
+
+    private final ConcurrentHashMap<String, Function<AggFunctionText, ? extends AggFunction>> aggFunctionMap =
+            new ConcurrentHashMap<>();
+    private final Set<String> mergeableAggFunctions = ConcurrentHashMap.newKeySet();
+
+    private final SoloscanCache<String, Expression> expressionCache = new SoloscanCache<>(
+            SoloscanOptions.getOption(SoloscanOptions.EXPRESSION_CACHE),
+            SoloscanOptions.getOption(SoloscanOptions.EXPRESSION_CACHE_MAX_SIZE),
+            SoloscanOptions.getOption(SoloscanOptions.GENERATE_CLASS_BUDGET),
+            Expression::getGeneratedClassCount,
+            this::compileExpression);
+    private volatile PersistentExpressionCache bytecodeCache;
+
+    // the filters of aggregate functions are shared by all the expressions, keyed by normalized inner text
+    private final SoloscanCache<String, AggInner> aggInnerCache = new SoloscanCache<>(
+            SoloscanOptions.getOption(SoloscanOptions.AGG_INNER_CACHE),
+            SoloscanOptions.getOption(SoloscanOptions.AGG_INNER_CACHE_MAX_SIZE),
+            this::compileAggInner);
+    private final Map<Class<?>, SoloscanClassloader.GeneratedClass> aggInnerClasses = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Map<String, String> catalogExpressionStrings = new ConcurrentHashMap<>();
+    private final Map<String, Expression> catalogExpressions = new ConcurrentHashMap<>();
+    private final SharedScans sharedScans = new SharedScans();
+
+    public void aliasFunction(final String name, final String aliasName) {
+        this.addFunction(aliasName, getFunction(name));
+    }
+
+
+    public SoloscanExecutor() {
+        loadSystemFunctions();
+        if (SoloscanOptions.getOption(SoloscanOptions.CATALOG_PRELOAD)) {
+            try {
+                loadCatalog(SoloscanExecutor.class.getClassLoader());
+            } catch (Exception e) {
+                log.warn("Failed to preload expression catalog", e);
+            }
+        }
+    }
+
+    public void loadSystemFunctions() {
+        this.addFunction(new PercentFunction());
+        this.addFunction(new ListFunction());
+        this.addFunction(new RangeFunction());
+        this.addFunction(new SlideFunction());
+
+        this.addAggFunction("count", CountAggFunction::new, true);
+        this.addAggFunction("countblank", CountblankAggFunction::new, true);
+        this.addAggFunction("average", AvgAggFunction::new, true);
+        this.addAggFunction("averagex", AvgxAggFunction::new, true);
+        this.addAggFunction("max", MaxAggFunction::new, true);
+        this.addAggFunction("maxx", MaxxAggFunction::new, true);
+        this.addAggFunction("min", MinAggFunction::new, true);
+        this.addAggFunction("minx", MinxAggFunction::new, true);
+        this.addAggFunction("sum", SumAggFunction::new, true);
+        this.addAggFunction("sumx", SumxAggFunction::new, true);
+    }
+
+    public void addAggFunction(String aggFunctionName, Function<AggFunctionText, ? extends AggFunction> function) {
+        addAggFunction(aggFunctionName, function, false);
+    }
+
+    /**
+     * @param mergeable true if the functions implement {@link AggFunction#merge}, the metric units using them may be
+     *                  aggregated by several threads and their partial aggregates merged
+     */
+    public void addAggFunction(String aggFunctionName, Function<AggFunctionText, ? extends AggFunction> function, boolean mergeable) {
+        String name = formatAggFunctionName(aggFunctionName);
+        aggFunctionMap.put(name, function);
+        if (mergeable) {
+            mergeableAggFunctions.add(name);
+        } else {
+            mergeableAggFunctions.remove(name);
+        }
+    }
+
+    public boolean isMergeableAggFunction(String aggFunctionName) {
+        return mergeableAggFunctions.contains(formatAggFunctionName(aggFunctionName));
+    }
+
+    public Function<AggFunctionText, ? extends AggFunction> getAggFunction(String aggFunctionName) {
+        return aggFunctionMap.get(formatAggFunctionName(aggFunctionName));
+    }
+
+    public boolean isAggFunction(String aggFunctionName) {
+        return aggFunctionMap.containsKey(formatAggFunctionName(aggFunctionName));
+    }
+
+    private String formatAggFunctionName(String aggFunctionName) {
+        return aggFunctionName.toLowerCase();
+    }
+
+    public SoloscanClassloader getSoloscanClassLoader() {
+        return this.classLoader;
+    }
+
+
+    public void addFunction(final SFunction function) {
+        addFunction(function.getName(), function);
+    }
+
+    public void addFunction(final String name, final SFunction function) {
+        Preconditions.checkNotNull(function, "Null function");
+        Preconditions.checkArgument(!SymbolTable.isReservedKeyword(name), "Invalid function name");
+        if (this.funcMap.containsKey(name)) {
+            log.warn("The function '{}' is already exists, but is replaced with new one. ", name);
+        }
+        this.funcMap.put(name, function);
+    }
+
+    public SFunction removeFunction(final String name) {
+        return (SFunction) this.funcMap.remove(name);
+    }
+
+    public SFunction getFunction(final String name) {
+        SFunction function = this.funcMap.get(name);
+        if (function == null) {
+            log.warn("function '{}' does not exist!", name);
+        }
+        return function;
+    }
+
+    public Object execute(final String expression) {
+        return execute(expression, null, DataSet.EMPTY);
+    }
+
+    public Object execute(final String expression, final Map<String, Object> env) {
+        return execute(expression, env, null);
+    }
+
+    public Object execute(final String expression, final DataSet dataSet) {
+        return execute(expression, null, dataSet);
+    }
+
+    Object execute(final String expression, final Map<String, Object> env,
+                   final DataSet dataSet) {
+        try {
+            long start = System.currentTimeMillis();
+            Map<String, String> expressionStringMap = new HashMap();
+            expressionStringMap.put("row1", expression);
+            Map<String, ExpressionInstance> compiledExpressionMap = newInstances(expressionStringMap, schemaOf(dataSet));
+            Preconditions.checkArgument(dataSet != DataSet.EMPTY, "empty dataset");
+            if (dataSet != DataSet.EMPTY)
+                DataProvider.feed(dataSet, env, compiledExpressionMap.values().toArray(new ExpressionInstance[0]));
+            Object object = compiledExpressionMap.values().iterator().next().execute(env);
+            log.info("executeList cost :{} ms", (System.currentTimeMillis() - start));
+            return object;
+        } catch (ExpressionRuntimeException ere) {
+            throw ere;
+        } catch (Exception e) {
+            throw new ExpressionExecuteException(e);
+        }
+    }
+
+    public Object executeList(List<java.lang.String> expressionList, DataSet dataSet) {
+        if (expressionList == null || expressionList.size() == 0) {
+            return null;
+        }
+        final AtomicInteger index = new AtomicInteger();
+        Map<String, String> expressionStringMap = expressionList.stream().collect(Collectors.toMap(e -> {
+            return "item" + index.incrementAndGet();
+        }, e -> e));
+        return execute(expressionStringMap, dataSet);
+    }
+
+    public Map<String, Object> executeWithPlaceHold(final Map<String, String> expressionMap, final Map<String, String> replaceHoldMap, final DataSet dataSet) {
+        MiscUtils.applyPlaceHolder(expressionMap, replaceHoldMap);
+        return execute(expressionMap, null, dataSet);
+    }
+
+    public Map<String, Object> execute(final Map<String, String> expressionMap, final DataSet dataSet) {
+        return execute(expressionMap, null, dataSet);
+    }
+
+    public Map<String, Object> execute(final Map<String, String> expressionStringMap, final Map<String, Object> env, final DataSet dataSet) {
+        int executeTimeoutMs = SoloscanOptions.getOption(SoloscanOptions.EXECUTE_TIMEOUT_MS);
+        long endTime = -1;
+        long timeLeft = -1;
+        List<Future<Object>> futureList = new ArrayList<>();
+        if(executeTimeoutMs > 0){
+            endTime = System.currentTimeMillis() + executeTimeoutMs;
+            timeLeft = executeTimeoutMs;
+        }
+        Cancellation cancellation = new Cancellation(dataSet, Math.max(endTime, 0));
+        try {
+            Map<String, ExpressionInstance> compiledExpressionMap = scan(expressionStringMap, env, dataSet, cancellation);
+            if(executeTimeoutMs > 0){
+                timeLeft = endTime - System.currentTimeMillis();
+                if (timeLeft <= 0) {
+                    throw new TimeoutException("Execute timeout on compile or scan time");
+                }
+            }
+            Map<String, Object> resultMap;
+            if (compiledExpressionMap.size() == 1) {
+                resultMap = new HashMap<>();
+                Object object = null;
+                ExpressionInstance expression = compiledExpressionMap.values().iterator().next();
+                Future<Object> future = null;
+                if(timeLeft > 0){
+                    try {
+                        future = SoloscanPools.evaluation().submit(() -> expression.execute(env));
+                    } catch (RejectedExecutionException e) {
+                        // evaluated by the calling thread below
+                    }
+                }
+                if(future != null){
+                    futureList.add(future);
+                    object = future.get(timeLeft, TimeUnit.MILLISECONDS);
+                }else{
+                    object = expression.execute(env);
+                }
+                resultMap.put(compiledExpressionMap.keySet().iterator().next(), object);
+            } else {
+                resultMap = new ConcurrentHashMap<>(compiledExpressionMap.size());
+                for (Map.Entry<String, ExpressionInstance> entry : compiledExpressionMap.entrySet()) {
+                    try {
+                        futureList.add(SoloscanPools.evaluation().submit(() -> {
+                            resultMap.put(entry.getKey(), entry.getValue().execute(env));
+                            return null;
+                        }));
+                    } catch (RejectedExecutionException e) {
+                        // the pool is saturated, the expression is evaluated by the calling thread
+                        resultMap.put(entry.getKey(), entry.getValue().execute(env));
+                    }
+                }
+
+                if(executeTimeoutMs == 0){
+                    for(Future future:futureList){
+                        future.get();
+                    }
+                }else{
+                    int index = 0;
+                    for(Future future:futureList){
+                        timeLeft = endTime - System.currentTimeMillis();
+                        if (timeLeft <= 0) {
+                            throw new TimeoutException("Execute timeout,size:"+futureList.size()+", and timeout on index:"+index);
+                        }
+                        future.get(timeLeft, TimeUnit.MILLISECONDS);
+                        index ++;
+                    }
+                }
+            }
+            return resultMap;
+        } catch (ExpressionRuntimeException ere) {
+            throw ere;
+        } catch (Exception e) {
+            if (e instanceof ExecutionException) {
+                if (e.getCause() instanceof ExpressionRuntimeException) {
+                    throw (ExpressionRuntimeException) e.getCause();
+                }
+            }
+            if (e instanceof TimeoutException) {
+                cancellation.cancel();
+            }
+            throw new ExpressionExecuteException(e);
+        }finally {
+            // the expressions of a failed or timed out request are not evaluated any more
+            for (Future<Object> future : futureList) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Executes the expressions on a thread of the evaluation pool, the expressions are evaluated one by one after the
+     * scan. Cancelling the future, or reaching {@link SoloscanOptions#EXECUTE_TIMEOUT_MS}, stops the scan within a few
+     * rows and closes the data set; the future of a timed out request fails with an {@link ExpressionExecuteException}
+     * caused by a {@link TimeoutException}.
+     */
+    public CompletableFuture<Map<String, Object>> executeAsync(final Map<String, String> expressionStringMap, final DataSet dataSet) {
+        return executeAsync(expressionStringMap, null, dataSet);
+    }
+
+    public CompletableFuture<Map<String, Object>> executeAsync(final Map<String, String> expressionStringMap, final Map<String, Object> env,
+                                                               final DataSet dataSet) {
+        int executeTimeoutMs = SoloscanOptions.getOption(SoloscanOptions.EXECUTE_TIMEOUT_MS);
+        Cancellation cancellation = new Cancellation(dataSet, executeTimeoutMs > 0 ? System.currentTimeMillis() + executeTimeoutMs : 0);
+        CompletableFuture<Map<String, Object>> result = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = SoloscanPools.evaluation().submit(() -> {
+                try {
+                    result.complete(evaluate(scan(expressionStringMap, env, dataSet, cancellation), env, cancellation));
+                } catch (ExpressionRuntimeException ere) {
+                    result.completeExceptionally(ere);
+                } catch (Exception e) {
+                    result.completeExceptionally(new ExpressionExecuteException(e));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(new ExpressionExecuteException(e));
+            return result;
+        }
+        result.whenComplete((resultMap, e) -> {
+            if (result.isCancelled()) {
+                cancellation.cancel();
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Executes the expressions in a scan shared with the concurrent requests of the same source id: the requests
+     * arriving within {@link SoloscanOptions#SCAN_SHARE_WINDOW_MS} of the first one cost one scan of the source. The
+     * data set is opened by the scan and closed after it, the expressions are compiled without its schema.
+     *
+     * @param source opens the data set of the source, called once per shared scan
+     */
+    public Map<String, Object> executeShared(final String sourceId, final Map<String, String> expressionStringMap,
+                                             final Map<String, Object> env, final Supplier<DataSet> source) {
+        int executeTimeoutMs = SoloscanOptions.getOption(SoloscanOptions.EXECUTE_TIMEOUT_MS);
+        // the data set belongs to all the requests of the scan, it is not closed when one of them times out
+        Cancellation cancellation = new Cancellation(null, executeTimeoutMs > 0 ? System.currentTimeMillis() + executeTimeoutMs : 0);
+        try {
+            Map<String, ExpressionInstance> compiledExpressionMap = newInstances(expressionStringMap, null);
+            checkCompiled(expressionStringMap, compiledExpressionMap);
+            sharedScans.feed(sourceId, source, env, cancellation, compiledExpressionMap.values().toArray(new ExpressionInstance[0]));
+            return evaluate(compiledExpressionMap, env, cancellation);
+        } catch (ExpressionRuntimeException ere) {
+            throw ere;
+        } catch (Exception e) {
+            throw new ExpressionExecuteException(e);
+        }
+    }
+
+    /**
+     * Opens a {@link ContinuousAggregation} of the expressions, the rows of an append-only source are fed to it over
+     * time and aggregated only once.
+     *
+     * @param schema the types of the columns of the appended data sets, null if unknown
+     */
+    public ContinuousAggregation openContinuous(final Map<String, String> expressionStringMap, final Map<String, Object> env,
+                                                final Schema schema) {
+        try {
+            Map<String, ExpressionInstance> compiledExpressionMap = newInstances(expressionStringMap, schema);
+            checkCompiled(expressionStringMap, compiledExpressionMap);
+            return new ContinuousAggregation(compiledExpressionMap, env);
+        } catch (ExpressionRuntimeException ere) {
+            throw ere;
+        } catch (Exception e) {
+            throw new ExpressionExecuteException(e);
+        }
+    }
+
+    public ContinuousAggregation openContinuous(final Map<String, String> expressionStringMap) {
+        return openContinuous(expressionStringMap, null, null);
+    }
+
+    /**
+     * Evaluates the scanned expressions one by one.
+     */
+    private static Map<String, Object> evaluate(final Map<String, ExpressionInstance> compiledExpressionMap, final Map<String, Object> env,
+                                                final Cancellation cancellation) {
+        Map<String, Object> resultMap = new HashMap<>(compiledExpressionMap.size());
+        for (Map.Entry<String, ExpressionInstance> entry : compiledExpressionMap.entrySet()) {
+            cancellation.check();
+            resultMap.put(entry.getKey(), entry.getValue().execute(env));
+        }
+        return resultMap;
+    }
+
+    /**
+     * Compiles the expressions and feeds them the rows of the data set.
+     */
+    private Map<String, ExpressionInstance> scan(final Map<String, String> expressionStringMap, final Map<String, Object> env,
+                                                 final DataSet dataSet, final Cancellation cancellation) throws ExecutionException, InterruptedException {
+        Map<String, ExpressionInstance> compiledExpressionMap = newInstances(expressionStringMap, schemaOf(dataSet));
+        checkCompiled(expressionStringMap, compiledExpressionMap);
+        if (dataSet != DataSet.EMPTY)
+            DataProvider.feed(dataSet, env, cancellation, compiledExpressionMap.values().toArray(new ExpressionInstance[0]));
+        log.info("expressionStringMap:{},compile expression:{},size:{}", expressionStringMap, compiledExpressionMap, compiledExpressionMap.size());
+        return compiledExpressionMap;
+    }
+
+    /**
+     * @throws IllegalArgumentException naming the ids of the expressions which have no compiled instance
+     */
+    private static void checkCompiled(final Map<String, String> expressionStringMap, final Map<String, ExpressionInstance> compiledExpressionMap) {
+        if (expressionStringMap.size() != compiledExpressionMap.size()) {
+            Set<String> failed = expressionStringMap.keySet().stream()
+                    .filter(id -> compiledExpressionMap.get(id) == null)
+                    .collect(Collectors.toCollection(TreeSet::new));
+            throw new IllegalArgumentException("the expressions " + failed + " of " + expressionStringMap.size()
+                    + " are not compiled, compiled:" + compiledExpressionMap.keySet());
+        }
+    }
+
+    private static Schema schemaOf(final DataSet dataSet) {
+        return dataSet == null ? null : dataSet.getSchema();
+    }
+
+    private Map<String, ExpressionInstance> newInstances(final Map<String, String> expressionStringMap, final Schema schema) throws ExecutionException, InterruptedException {
+        Map<String, ExpressionInstance> instanceMap = new HashMap<>(expressionStringMap.size());
+        Map<String, MetricUnitInstance> sharedInstances = expressionStringMap.size() > 1
+                && SoloscanOptions.getOption(SoloscanOptions.METRIC_UNIT_SHARING) ? new HashMap<>() : null;
+        for (Map.Entry<String, Expression> entry : getExpression(expressionStringMap, schema).entrySet()) {
+            Expression expression = entry.getValue();
+            if (sharedInstances != null && expression instanceof BaseSoloExpression) {
+                instanceMap.put(entry.getKey(), ((BaseSoloExpression) expression).newInstance(sharedInstances));
+            } else {
+                instanceMap.put(entry.getKey(), expression.newInstance());
+            }
+        }
+        if (sharedInstances != null) {
+            log.info("metric units of the request:{}, evaluated:{}", instanceMap.values().stream()
+                    .filter(i -> i instanceof SoloExpressionInstance)
+                    .mapToInt(i -> ((SoloExpressionInstance) i).getMetricUnitInstances().size()).sum(), sharedInstances.size());
+        }
+        return instanceMap;
+    }
+
+    private Map<String, Expression> getExpression(final Map<String, String> expressionStringMap, final Schema schema) throws ExecutionException, InterruptedException {
+        long start = System.currentTimeMillis();
+        Map<String, Expression> compiledExpressionMap = new HashMap<>(expressionStringMap.size());
+        Map<String, Future<Expression>> futureMap = new HashMap<>();
+        int compileParallelism = SoloscanOptions.getOption(SoloscanOptions.COMPILE_PARALLELISM);
+        if (compileParallelism > 1 && expressionStringMap.size() > 1) {
+            // the same expression text is compiled only once, the expression cache dedupes the concurrent compilations
+            for (String expressionString : expressionStringMap.values()) {
+                Preconditions.checkNotNullOrEmpty(expressionString, "Blank expression");
+                futureMap.computeIfAbsent(MiscUtils.normalizeExpression(expressionString), normalized -> {
+                    try {
+                        return SoloscanPools.compile().submit(() -> getNormalizedExpression(normalized, schema));
+                    } catch (RejectedExecutionException e) {
+                        // compiled by the calling thread below
+                        return null;
+                    }
+                });
+            }
+        }
+        for (Map.Entry<String, String> entry : expressionStringMap.entrySet()) {
+            Future<Expression> future = futureMap.isEmpty() ? null : futureMap.get(MiscUtils.normalizeExpression(entry.getValue()));
+            compiledExpressionMap.put(entry.getKey(), future == null ? getExpression(entry.getValue(), schema) : unwrap(future));
+        }
+        if (log.isInfoEnabled()) {
+            Map<String, Long> compileTimes = new TreeMap<>();
+            compiledExpressionMap.forEach((key, expression) -> compileTimes.put(key, TimeUnit.NANOSECONDS.toMicros(expression.getCompileTimeNanos())));
+            log.info("compile expression, expression:{},cost: {}.ms, compile time(us):{}, cache:{}", compiledExpressionMap, (System.currentTimeMillis() - start), compileTimes, expressionCache);
+        }
+        return compiledExpressionMap;
+    }
+
+    private Expression unwrap(Future<Expression> future) throws ExecutionException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ExpressionRuntimeException) {
+                throw (ExpressionRuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    public Expression compile(final String expressionString) {
+        return compile(expressionString, null);
+    }
+
+    /**
+     * Compiles the expression for the data sets of the schema, the arithmetic and comparisons on its typed columns
+     * are evaluated on primitive values.
+     */
+    public Expression compile(final String expressionString, final Schema schema) {
+        try {
+            return getExpression(expressionString, schema);
+        } catch (ExpressionRuntimeException ere) {
+            throw ere;
+        } catch (Exception e) {
+            throw new ExpressionCompileException(e);
+        }
+    }
+
+    private Expression getExpression(final String expressionString, final Schema schema) throws ExecutionException, InterruptedException {
+        Preconditions.checkNotNullOrEmpty(expressionString, "Blank expression");
+        return getNormalizedExpression(MiscUtils.normalizeExpression(expressionString), schema);
+    }
+
+    private Expression getNormalizedExpression(final String expressionString, final Schema schema) throws ExecutionException, InterruptedException {
+        try {
+            return expressionCache.getR(withSchema(expressionString, schema));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ExpressionRuntimeException) {
+                throw (ExpressionRuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * The expressions and filters compiled with a schema are cached by the expression text followed by the
+     * schema signature.
+     */
+    private static String withSchema(final String expressionString, final Schema schema) {
+        if (schema == null || schema.isEmpty()) {
+            return expressionString;
+        }
+        return expressionString + SCHEMA_SEPARATOR + schema.getSignature();
+    }
+
+    private static Schema schemaOfKey(final String key) {
+        int index = key.indexOf(SCHEMA_SEPARATOR);
+        return index < 0 ? null : Schema.fromSignature(key.substring(index + 1));
+    }
+
+    private static String expressionOfKey(final String key) {
+        int index = key.indexOf(SCHEMA_SEPARATOR);
+        return index < 0 ? key : key.substring(0, index);
+    }
+
+    private Expression compileExpression(final String key) {
+        String expressionString = expressionOfKey(key);
+        Schema schema = schemaOfKey(key);
+        // a new generation of class loader per compilation, it is dropped together with the compiled expression
+        SoloscanClassloader generation = this.classLoader.newGeneration();
+        PersistentExpressionCache bytecodeCache = getBytecodeCache();
+        if (bytecodeCache == null) {
+            return new SoloscanCompiler(SoloscanExecutor.this, generation, Collections.emptyMap(), schema).compile(expressionString);
+        }
+        Expression expression = bytecodeCache.load(key, generation);
+        if (expression != null) {
+            return expression;
+        }
+        generation = this.classLoader.newGeneration();
+        generation.recordGeneratedClasses();
+        expression = new SoloscanCompiler(SoloscanExecutor.this, generation, Collections.emptyMap(), schema).compile(expressionString);
+        bytecodeCache.store(key, (BaseSoloExpression) expression, generation);
+        return expression;
+    }
+
+    public AggInner getAggInner(final String innerString, final boolean xAggFunction, final Schema schema) throws ExecutionException, InterruptedException {
+        return aggInnerCache.getR(withSchema((xAggFunction ? "x:" : ":") + MiscUtils.normalizeExpression(innerString), schema));
+    }
+
+    private AggInner compileAggInner(final String key) {
+        String innerKey = expressionOfKey(key);
+        // the shared filter gets its own generation of class loader, it does not pin the loader of any expression
+        SoloscanClassloader generation = this.classLoader.newGeneration();
+        generation.recordGeneratedClasses();
+        AggInner aggInner = new SoloscanCompiler(SoloscanExecutor.this, generation, Collections.emptyMap(), schemaOfKey(key))
+                .compileAggInner(innerKey.substring(innerKey.indexOf(':') + 1), innerKey.startsWith("x:"));
+        aggInnerClasses.put(aggInner.getClass(), generation.getGeneratedClass(aggInner.getClass()));
+        return aggInner;
+    }
+
+    /**
+     * @return the generated class of a shared filter, null if it is not shared
+     */
+    public SoloscanClassloader.GeneratedClass getAggInnerClass(final Class<?> aggInnerClass) {
+        return aggInnerClasses.get(aggInnerClass);
+    }
+
+    public SoloscanCache<String, AggInner> getAggInnerCache() {
+        return aggInnerCache;
+    }
+
+    public PersistentExpressionCache getBytecodeCache() {
+        if (!SoloscanOptions.getOption(SoloscanOptions.BYTECODE_CACHE)) {
+            return null;
+        }
+        String path = SoloscanOptions.getOption(SoloscanOptions.BYTECODE_CACHE_PATH);
+        PersistentExpressionCache cache = this.bytecodeCache;
+        if (cache == null || !cache.getDirectory().equals(Paths.get(path))) {
+            synchronized (this) {
+                cache = this.bytecodeCache;
+                if (cache == null || !cache.getDirectory().equals(Paths.get(path))) {
+                    cache = new PersistentExpressionCache(this, path);
+                    this.bytecodeCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * The persisted classes refer to the functions by name, they are only valid for the same registry.
+     */
+    public String getFunctionRegistrySignature() {
+        return new TreeMap<>(funcMap).entrySet().stream()
+                .map(e -> e.getKey() + "=" + e.getValue().getClass().getName())
+                .collect(Collectors.joining(",")) + ";" + new TreeSet<>(aggFunctionMap.keySet());
+    }
+
+    /**
+     * Loads the expression catalogs precompiled by the catalog compiler, the expressions are looked up
+     * by id with {@link #getCatalogExpression} and by text through the compiled expression cache.
+     */
+    public void loadCatalog(ClassLoader resourceLoader) throws IOException {
+        Map<String, Expression> expressions = new HashMap<>();
+        Map<String, String> expressionStrings = new ExpressionCatalog(this).load(resourceLoader, expressions);
+        for (Map.Entry<String, Expression> entry : expressions.entrySet()) {
+            expressionCache.put(expressionStrings.get(entry.getKey()), entry.getValue());
+        }
+        catalogExpressions.putAll(expressions);
+        catalogExpressionStrings.putAll(expressionStrings);
+        log.info("load expression catalog, size:{}", expressions.size());
+    }
+
+    public Expression getCatalogExpression(final String id) {
+        Expression expression = catalogExpressions.get(id);
+        if (expression == null) {
+            throw new ExpressionCompileException("Expression id " + id + " not found in catalog");
+        }
+        return expression;
+    }
+
+    public String getCatalogExpressionString(final String id) {
+        return catalogExpressionStrings.get(id);
+    }
+
+    public Set<String> getCatalogExpressionIds() {
+        return Collections.unmodifiableSet(catalogExpressions.keySet());
+    }
+
+    public SoloscanCache<String, Expression> getExpressionCache() {
+        return this.expressionCache;
+    }
+
+    /**
+     * Removes the expression from the cache, together with the plans compiled for it with a schema.
+     */
+    public boolean invalidateExpression(final String expression) {
+        final String normalized = MiscUtils.normalizeExpression(expression);
+        final String typedPrefix = normalized + SCHEMA_SEPARATOR;
+        return expressionCache.invalidateIf(key -> key.equals(normalized) || key.startsWith(typedPrefix)) > 0;
+    }
+
+    public void invalidateAllExpressions() {
+        expressionCache.clear();
+        aggInnerCache.clear();
+    }
+
+
+    public Map<String, Object> executeMatrix(final Map<String, String> expressionMap, int rows, int columns, final DataSet dataSet) {
+        Preconditions.checkNotNull(expressionMap);
+        Preconditions.checkArgument(MatrixUtils.isComplete2DArray(expressionMap, rows, columns), expressionMap + " is not a complete 2d array!");
+        Map<String, Number> result = MiscUtils.forciblyCast(execute(expressionMap, null, dataSet));
+        return MiscUtils.forciblyCast(MatrixUtils.clcalculateMatrix(result, rows, columns));
+    }
+
+
+}
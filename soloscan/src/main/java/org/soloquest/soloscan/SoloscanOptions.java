@@ -0,0 +1,311 @@
+package org.soloquest.soloscan;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import org.slf4j.LoggerFactory;
+import org.soloquest.soloscan.configoption.ConfigOption;
+import org.soloquest.soloscan.configoption.ConfigOptions;
+import org.soloquest.soloscan.configoption.Configuration;
+import org.soloquest.soloscan.utils.MiscUtils;
+
+public class SoloscanOptions {
+
+    public static Level INIT_LEVEL;
+
+    public static final ConfigOption<Boolean> CONCURRENT_PROCESSS =
+            ConfigOptions.key("concurrent.process")
+                    .booleanType()
+                    .defaultValue(false)
+                    .withDescription(
+                            "scan the data set of the INLINE scan mode with a pool of workers, each one aggregates morsels of rows "
+                                    + "into partial group tables which are merged before the expressions are evaluated");
+
+    public static final ConfigOption<Integer> SCAN_PARALLELISM =
+            ConfigOptions.key("scan.parallelism")
+                    .intType()
+                    .defaultValue(Runtime.getRuntime().availableProcessors())
+                    .withDescription(
+                            "max count of workers of a parallel scan, including the thread executing the request");
+
+    public static final ConfigOption<Integer> SCAN_MORSEL_SIZE =
+            ConfigOptions.key("scan.morsel.size")
+                    .intType()
+                    .defaultValue(4096)
+                    .withDescription(
+                            "count of consecutive rows a worker of a parallel scan takes from the data set at once");
+
+    public static final ConfigOption<ScanMode> SCAN_MODE =
+            ConfigOptions.key("scan.mode")
+                    .enumType(ScanMode.class)
+                    .defaultValue(ScanMode.INLINE)
+                    .withDescription(
+                            "INLINE iterates and aggregates the rows on the thread executing the request, THREADED iterates them on a data provider thread");
+
+    public static final ConfigOption<Integer> SCAN_BATCH_SIZE =
+            ConfigOptions.key("scan.batch.size")
+                    .intType()
+                    .defaultValue(1024)
+                    .withDescription(
+                            "count of rows handed from the data provider thread to the metric units at once in the THREADED scan mode");
+
+    public static final ConfigOption<Integer> SCAN_RING_BUFFER_BATCHES =
+            ConfigOptions.key("scan.ring.buffer.batches")
+                    .intType()
+                    .defaultValue(16)
+                    .withDescription(
+                            "count of batches of the ring buffer of the THREADED scan mode, rounded up to a power of two, "
+                                    + "the data provider waits for the slowest metric unit when all of them are unread");
+
+    public static final ConfigOption<WaitStrategy> SCAN_WAIT_STRATEGY =
+            ConfigOptions.key("scan.wait.strategy")
+                    .enumType(WaitStrategy.class)
+                    .defaultValue(WaitStrategy.BLOCKING)
+                    .withDescription(
+                            "how the data provider and the metric units wait for each other in the THREADED scan mode");
+
+    public static final ConfigOption<Integer> SCAN_WAIT_TIMEOUT_MS =
+            ConfigOptions.key("scan.wait.timeout")
+                    .intType()
+                    .defaultValue(3000)
+                    .withDescription(
+                            "max time in ms the data provider waits for a free batch and a metric unit for the next batch in the THREADED scan mode");
+
+    public static final ConfigOption<Integer> SCAN_SHARE_WINDOW_MS =
+            ConfigOptions.key("scan.share.window")
+                    .intType()
+                    .defaultValue(10)
+                    .withDescription(
+                            "time in ms a shared scan waits for more requests over the same source before it starts");
+
+    public static final ConfigOption<Integer> SCAN_POOL_SIZE =
+            ConfigOptions.key("pool.scan.size")
+                    .intType()
+                    .defaultValue(Math.max(2, Runtime.getRuntime().availableProcessors()))
+                    .withDescription(
+                            "max count of data provider threads of the THREADED scan mode shared by all the requests");
+
+    public static final ConfigOption<Integer> AGGREGATION_POOL_SIZE =
+            ConfigOptions.key("pool.aggregation.size")
+                    .intType()
+                    .defaultValue(Runtime.getRuntime().availableProcessors())
+                    .withDescription(
+                            "max count of worker threads of the parallel scans shared by all the requests");
+
+    public static final ConfigOption<Integer> EVALUATION_POOL_SIZE =
+            ConfigOptions.key("pool.evaluation.size")
+                    .intType()
+                    .defaultValue(Math.max(2, Runtime.getRuntime().availableProcessors()))
+                    .withDescription(
+                            "max count of threads evaluating the expressions of requests with several expressions or a timeout");
+
+    public static final ConfigOption<Integer> POOL_QUEUE_CAPACITY =
+            ConfigOptions.key("pool.queue.capacity")
+                    .intType()
+                    .defaultValue(1024)
+                    .withDescription(
+                            "max count of tasks waiting for a thread of a shared pool, a request is rejected beyond it, 0 means unbounded");
+
+    public static final ConfigOption<Boolean> POOL_VIRTUAL_THREADS =
+            ConfigOptions.key("pool.virtual.threads")
+                    .booleanType()
+                    .defaultValue(false)
+                    .withDescription(
+                            "run the data providers and the expression evaluations on virtual threads on java 21+, for data sets blocking in I/O like JDBC");
+
+    public static final ConfigOption<Integer> POOL_VIRTUAL_THREADS_MAX =
+            ConfigOptions.key("pool.virtual.threads.max")
+                    .intType()
+                    .defaultValue(10000)
+                    .withDescription(
+                            "max count of running virtual threads of the scan pool and of the evaluation pool, a request is rejected beyond it");
+
+    public static final ConfigOption<Boolean> GENERATE_CLASS =
+            ConfigOptions.key("generate.class")
+                    .booleanType()
+                    .defaultValue(false)
+                    .withDescription(
+                            "generate.class");
+
+    public static final ConfigOption<Boolean> USE_METHODHANDLE =
+            ConfigOptions.key("use.methodhandle")
+                    .booleanType()
+                    .defaultValue(true)
+                    .withDescription(
+                            "use method handle");
+
+    public static final ConfigOption<Boolean> SILENCE_MODE =
+            ConfigOptions.key("silence.mode")
+                    .booleanType()
+                    .defaultValue(true)
+                    .withDescription(
+                            "suppress log level to error");
+
+    public static final ConfigOption<Integer> EXECUTE_TIMEOUT_MS =
+            ConfigOptions.key("execute.timeout")
+                    .intType()
+                    .defaultValue(0)
+                    .withDescription(
+                            "execute timeout,the unit is ms");
+
+
+    public static final ConfigOption<Boolean> EXPRESSION_CACHE =
+            ConfigOptions.key("expression.cache")
+                    .booleanType()
+                    .defaultValue(true)
+                    .withDescription(
+                            "cache the compiled expression, keyed by normalized expression text");
+
+    public static final ConfigOption<Integer> EXPRESSION_CACHE_MAX_SIZE =
+            ConfigOptions.key("expression.cache.max.size")
+                    .intType()
+                    .defaultValue(1024)
+                    .withDescription(
+                            "max size of the compiled expression cache, the least recently used one is evicted, 0 means unbounded");
+
+    public static final ConfigOption<Integer> GENERATE_CLASS_BUDGET =
+            ConfigOptions.key("generate.class.budget")
+                    .intType()
+                    .defaultValue(0)
+                    .withDescription(
+                            "max count of generated classes held by the compiled expression cache, the least recently used expressions are evicted beyond it, 0 means unbounded");
+
+    public static final ConfigOption<Boolean> AGG_INNER_CACHE =
+            ConfigOptions.key("agg.inner.cache")
+                    .booleanType()
+                    .defaultValue(true)
+                    .withDescription(
+                            "share the compiled filter of aggregate functions among all the expressions, keyed by normalized filter text");
+
+    public static final ConfigOption<Integer> AGG_INNER_CACHE_MAX_SIZE =
+            ConfigOptions.key("agg.inner.cache.max.size")
+                    .intType()
+                    .defaultValue(4096)
+                    .withDescription(
+                            "max size of the shared compiled filter cache, the least recently used one is evicted, 0 means unbounded");
+
+    public static final ConfigOption<Boolean> METRIC_UNIT_SHARING =
+            ConfigOptions.key("metric.unit.sharing")
+                    .booleanType()
+                    .defaultValue(true)
+                    .withDescription(
+                            "evaluate the identical metric units of the expressions in one request only once per scan");
+
+    public static final ConfigOption<Boolean> CONSTANT_FOLDING =
+            ConfigOptions.key("constant.folding")
+                    .booleanType()
+                    .defaultValue(true)
+                    .withDescription(
+                            "build the list and range literals of integers once when the expression is compiled instead of once per row");
+
+    public static final ConfigOption<Boolean> TYPE_SPECIALIZATION =
+            ConfigOptions.key("type.specialization")
+                    .booleanType()
+                    .defaultValue(true)
+                    .withDescription(
+                            "evaluate the arithmetic and comparisons on the typed columns of the data set schema on primitive values");
+
+    public static final ConfigOption<Boolean> FUSED_SCAN =
+            ConfigOptions.key("fused.scan")
+                    .booleanType()
+                    .defaultValue(true)
+                    .withDescription(
+                            "generate one processRow method per metric unit which filters, groups and aggregates a row");
+
+    public static final ConfigOption<Boolean> COLUMN_SLOTS =
+            ConfigOptions.key("column.slots")
+                    .booleanType()
+                    .defaultValue(true)
+                    .withDescription(
+                            "read the columns of rows with a layout by index, resolved once per layout instead of by name on every row");
+
+    public static final ConfigOption<Boolean> INVOKEDYNAMIC_OPERATORS =
+            ConfigOptions.key("invokedynamic.operators")
+                    .booleanType()
+                    .defaultValue(false)
+                    .withDescription(
+                            "generate the arithmetic and comparison operators as invokedynamic call sites which link fast paths for the observed operand types");
+
+    public static final ConfigOption<Integer> METHOD_SPLIT_THRESHOLD =
+            ConfigOptions.key("method.split.threshold")
+                    .intType()
+                    .defaultValue(6000)
+                    .withDescription(
+                            "the bytecode size from which subexpressions of a generated method are outlined into private methods, "
+                                    + "HotSpot does not compile methods larger than 8000 bytes; 0 disables it");
+
+    public static final ConfigOption<Boolean> ADAPTIVE_FILTER =
+            ConfigOptions.key("adaptive.filter")
+                    .booleanType()
+                    .defaultValue(true)
+                    .withDescription(
+                            "evaluate the terms of a top level && or || filter in the order of their sampled cost and selectivity, with short-circuit");
+
+    public static final ConfigOption<Integer> ADAPTIVE_FILTER_SAMPLE_ROWS =
+            ConfigOptions.key("adaptive.filter.sample.rows")
+                    .intType()
+                    .defaultValue(1000)
+                    .withDescription(
+                            "number of rows on which every term of an adaptive filter is evaluated before the order is chosen");
+
+    public static final ConfigOption<Integer> COMPILE_PARALLELISM =
+            ConfigOptions.key("compile.parallelism")
+                    .intType()
+                    .defaultValue(Math.min(4, Runtime.getRuntime().availableProcessors()))
+                    .withDescription(
+                            "max count of threads of the compile pool shared by all the requests, 1 means compiling the expressions of a request one by one");
+
+    public static final ConfigOption<Boolean> BYTECODE_CACHE =
+            ConfigOptions.key("bytecode.cache")
+                    .booleanType()
+                    .defaultValue(false)
+                    .withDescription(
+                            "persist the generated classes of compiled expressions, a restarted process defines them from disk without compiling again");
+
+    public static final ConfigOption<String> BYTECODE_CACHE_PATH =
+            ConfigOptions.key("bytecode.cache.path")
+                    .stringType()
+                    .defaultValue(System.getProperty("java.io.tmpdir") + "/soloscan_bytecode")
+                    .withDescription(
+                            "directory of the persisted generated classes");
+
+    public static final ConfigOption<Boolean> CATALOG_PRELOAD =
+            ConfigOptions.key("catalog.preload")
+                    .booleanType()
+                    .defaultValue(true)
+                    .withDescription(
+                            "load the precompiled expression catalogs on the classpath when the executor is created");
+
+    public static final ConfigOption<String> GENERATE_CLASS_ROOT_PATH =
+            ConfigOptions.key("generate.class.root.path")
+                    .stringType()
+                    .defaultValue(System.getProperty("java.io.tmpdir"));
+
+
+    private final static Configuration configuration = Configuration.fromMap(MiscUtils.forciblyCast(System.getProperties()));
+
+    public static <T> T getOption(ConfigOption<T> configOption) {
+        return configuration.get(configOption);
+    }
+
+    public static void set(String key, Object value) {
+        configuration.set(key, value);
+        if(SILENCE_MODE.key().equals(key)){
+            LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+            ch.qos.logback.classic.Logger logger = loggerContext.getLogger("org.soloquest.soloscan");
+            if(Boolean.parseBoolean(value.toString())){
+                logger.setLevel(ch.qos.logback.classic.Level.ERROR);
+            }else{
+                logger.setLevel(INIT_LEVEL);
+            }
+        }
+    }
+
+    static{
+        LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+        ch.qos.logback.classic.Logger logger = loggerContext.getLogger("org.soloquest.soloscan");
+        INIT_LEVEL = logger.getLevel();
+        if(SILENCE_MODE.defaultValue()){
+            logger.setLevel(Level.ERROR);
+        }
+    }
+}
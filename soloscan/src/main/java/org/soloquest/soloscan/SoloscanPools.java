@@ -0,0 +1,126 @@
+package org.soloquest.soloscan;
+
+import lombok.extern.slf4j.Slf4j;
+import org.soloquest.soloscan.utils.VirtualThreads;
+import org.soloquest.soloscan.utils.WorkerPool;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The pools shared by all the executors of the process, created when they are used first with the sizes of the
+ * {@link SoloscanOptions}:
+ * <ul>
+ * <li>scan: the data provider threads of the THREADED scan mode</li>
+ * <li>aggregation: the workers of the parallel scans</li>
+ * <li>evaluation: the expressions of the requests with several expressions or a timeout</li>
+ * <li>compile: the concurrent compilation of the expressions of a request</li>
+ * </ul>
+ * With {@link SoloscanOptions#POOL_VIRTUAL_THREADS} on java 21+ the scan and evaluation pools run virtual threads,
+ * the aggregation workers stay on platform threads as they never block.
+ */
+@Slf4j
+public final class SoloscanPools {
+
+    private static volatile WorkerPool scanPool;
+    private static volatile WorkerPool aggregationPool;
+    private static volatile WorkerPool evaluationPool;
+    private static volatile WorkerPool compilePool;
+
+    private SoloscanPools() {
+    }
+
+    public static WorkerPool scan() {
+        WorkerPool pool = scanPool;
+        if (pool == null) {
+            synchronized (SoloscanPools.class) {
+                if (scanPool == null) {
+                    scanPool = newBlockingPool("soloscan-scan", SoloscanOptions.getOption(SoloscanOptions.SCAN_POOL_SIZE));
+                }
+                pool = scanPool;
+            }
+        }
+        return pool;
+    }
+
+    public static WorkerPool aggregation() {
+        WorkerPool pool = aggregationPool;
+        if (pool == null) {
+            synchronized (SoloscanPools.class) {
+                if (aggregationPool == null) {
+                    aggregationPool = newPool("soloscan-aggregation", SoloscanOptions.getOption(SoloscanOptions.AGGREGATION_POOL_SIZE));
+                }
+                pool = aggregationPool;
+            }
+        }
+        return pool;
+    }
+
+    public static WorkerPool evaluation() {
+        WorkerPool pool = evaluationPool;
+        if (pool == null) {
+            synchronized (SoloscanPools.class) {
+                if (evaluationPool == null) {
+                    evaluationPool = newBlockingPool("soloscan-evaluation", SoloscanOptions.getOption(SoloscanOptions.EVALUATION_POOL_SIZE));
+                }
+                pool = evaluationPool;
+            }
+        }
+        return pool;
+    }
+
+    public static WorkerPool compile() {
+        WorkerPool pool = compilePool;
+        if (pool == null) {
+            synchronized (SoloscanPools.class) {
+                if (compilePool == null) {
+                    compilePool = newPool("soloscan-compile", SoloscanOptions.getOption(SoloscanOptions.COMPILE_PARALLELISM));
+                }
+                pool = compilePool;
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * @return the pools created so far, for their thread and queue metrics
+     */
+    public static List<WorkerPool> getPools() {
+        List<WorkerPool> pools = new ArrayList<>(4);
+        for (WorkerPool pool : new WorkerPool[]{scanPool, aggregationPool, evaluationPool, compilePool}) {
+            if (pool != null) {
+                pools.add(pool);
+            }
+        }
+        return pools;
+    }
+
+    /**
+     * Shuts the pools down, they are created again with the current options when they are used next.
+     */
+    public static synchronized void shutdown() {
+        getPools().forEach(WorkerPool::shutdown);
+        scanPool = null;
+        aggregationPool = null;
+        evaluationPool = null;
+        compilePool = null;
+    }
+
+    /**
+     * A pool of tasks which may block on the data set.
+     */
+    private static WorkerPool newBlockingPool(String name, int threads) {
+        if (SoloscanOptions.getOption(SoloscanOptions.POOL_VIRTUAL_THREADS)) {
+            if (VirtualThreads.isSupported()) {
+                return WorkerPool.virtual(name, SoloscanOptions.getOption(SoloscanOptions.POOL_VIRTUAL_THREADS_MAX));
+            }
+            log.warn("virtual threads need java 21+, the {} pool runs {} platform threads on java {}", name, threads,
+                    System.getProperty("java.version"));
+        }
+        return newPool(name, threads);
+    }
+
+    private static WorkerPool newPool(String name, int threads) {
+        return new WorkerPool(name, threads, SoloscanOptions.getOption(SoloscanOptions.POOL_QUEUE_CAPACITY));
+    }
+}
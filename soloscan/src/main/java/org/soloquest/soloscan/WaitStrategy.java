@@ -0,0 +1,28 @@
+package org.soloquest.soloscan;
+
+/**
+ * How the data provider waits for a free batch of the {@link RowRingBuffer} and how the metric units wait for the
+ * next published batch.
+ */
+public enum WaitStrategy {
+
+    /**
+     * Parks on a condition signalled when a batch is published or released, the cheapest on cpu.
+     */
+    BLOCKING,
+
+    /**
+     * Spins, then yields, then parks for a short while between the checks.
+     */
+    SLEEPING,
+
+    /**
+     * Spins, then yields between the checks.
+     */
+    YIELDING,
+
+    /**
+     * Spins between the checks, the lowest latency while a core is dedicated to every thread.
+     */
+    BUSY_SPIN
+}
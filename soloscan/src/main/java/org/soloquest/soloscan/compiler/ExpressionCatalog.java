@@ -0,0 +1,109 @@
+package org.soloquest.soloscan.compiler;
+
+import lombok.extern.slf4j.Slf4j;
+import org.soloquest.soloscan.BaseSoloExpression;
+import org.soloquest.soloscan.Expression;
+import org.soloquest.soloscan.SoloscanExecutor;
+import org.soloquest.soloscan.compiler.codegen.SoloscanClassloader;
+import org.soloquest.soloscan.utils.MiscUtils;
+import org.soloquest.soloscan.utils.Preconditions;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * A catalog of expressions compiled ahead of time and packaged into a jar: an index of expression id to
+ * expression text, and one entry per expression holding its generated classes in the format of
+ * {@link PersistentExpressionCache}. The entry name is the cache key of the expression, so an executor with
+ * another soloscan version or function registry does not find it and compiles the expression text instead.
+ */
+@Slf4j
+public class ExpressionCatalog {
+
+    public static final String INDEX_RESOURCE = "META-INF/soloscan/catalog.properties";
+    public static final String BYTECODE_RESOURCE_PREFIX = "META-INF/soloscan/bytecode/";
+    private static final String BYTECODE_RESOURCE_SUFFIX = ".sbc";
+
+    private final SoloscanExecutor instance;
+    private final PersistentExpressionCache codec;
+
+    public ExpressionCatalog(SoloscanExecutor instance) {
+        this.instance = instance;
+        this.codec = new PersistentExpressionCache(instance, null);
+    }
+
+    /**
+     * Compiles every expression of the catalog and writes the jar.
+     *
+     * @param catalog expression id to expression text
+     */
+    public void write(Map<String, String> catalog, OutputStream outputStream) throws IOException {
+        Properties index = new Properties();
+        try (JarOutputStream jar = new JarOutputStream(outputStream)) {
+            for (Map.Entry<String, String> entry : new TreeMap<>(catalog).entrySet()) {
+                Preconditions.checkNotNullOrEmpty(entry.getValue(), "Blank expression of " + entry.getKey());
+                String expressionString = MiscUtils.normalizeExpression(entry.getValue());
+                SoloscanClassloader classLoader = instance.getSoloscanClassLoader().newGeneration();
+                classLoader.recordGeneratedClasses();
+                BaseSoloExpression expression = (BaseSoloExpression) new SoloscanCompiler(instance, classLoader, Collections.emptyMap())
+                        .compile(expressionString);
+
+                jar.putNextEntry(new JarEntry(BYTECODE_RESOURCE_PREFIX + codec.key(expressionString) + BYTECODE_RESOURCE_SUFFIX));
+                DataOutputStream out = new DataOutputStream(jar);
+                codec.write(out, expressionString, expression, classLoader);
+                out.flush();
+                jar.closeEntry();
+                index.setProperty(entry.getKey(), expressionString);
+            }
+            jar.putNextEntry(new JarEntry(INDEX_RESOURCE));
+            index.store(jar, "soloscan " + PersistentExpressionCache.getVersion());
+            jar.closeEntry();
+        }
+    }
+
+    /**
+     * Loads every catalog visible to the class loader. The expressions without usable precompiled classes
+     * are compiled from their text.
+     *
+     * @return expression id to expression text
+     */
+    public Map<String, String> load(ClassLoader resourceLoader, Map<String, Expression> expressions) throws IOException {
+        Map<String, String> expressionStrings = new LinkedHashMap<>();
+        Enumeration<URL> indexes = resourceLoader.getResources(INDEX_RESOURCE);
+        while (indexes.hasMoreElements()) {
+            URL url = indexes.nextElement();
+            Properties index = new Properties();
+            try (InputStream in = url.openStream()) {
+                index.load(in);
+            }
+            for (String id : index.stringPropertyNames()) {
+                String expressionString = index.getProperty(id);
+                if (expressionStrings.put(id, expressionString) != null) {
+                    log.warn("Expression id '{}' of catalog {} is already exists, but is replaced with new one.", id, url);
+                }
+                Expression expression = loadExpression(resourceLoader, expressionString);
+                expressions.put(id, expression != null ? expression : instance.compile(expressionString));
+            }
+        }
+        return expressionStrings;
+    }
+
+    private Expression loadExpression(ClassLoader resourceLoader, String expressionString) {
+        String resource = BYTECODE_RESOURCE_PREFIX + codec.key(expressionString) + BYTECODE_RESOURCE_SUFFIX;
+        try (InputStream in = resourceLoader.getResourceAsStream(resource)) {
+            if (in == null) {
+                log.info("No precompiled classes of expression {}, compile it", expressionString);
+                return null;
+            }
+            return codec.read(new DataInputStream(new BufferedInputStream(in)), expressionString,
+                    instance.getSoloscanClassLoader().newGeneration());
+        } catch (Throwable e) {
+            log.warn("Failed to load precompiled classes of expression {}, compile it", expressionString, e);
+            return null;
+        }
+    }
+}
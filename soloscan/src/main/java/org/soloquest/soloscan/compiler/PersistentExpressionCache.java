@@ -0,0 +1,263 @@
+package org.soloquest.soloscan.compiler;
+
+import lombok.extern.slf4j.Slf4j;
+import org.soloquest.soloscan.*;
+import org.soloquest.soloscan.compiler.codegen.ClassDefiner;
+import org.soloquest.soloscan.compiler.codegen.SoloscanClassloader;
+import org.soloquest.soloscan.compiler.lexer.SymbolTable;
+import org.soloquest.soloscan.compiler.parser.AggFunctionText;
+import org.soloquest.soloscan.exception.ExpressionCompileException;
+import org.soloquest.soloscan.runtime.aggfunction.AggFunction;
+import org.soloquest.soloscan.runtime.aggfunction.AggInner;
+import org.soloquest.soloscan.utils.MiscUtils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Persists the generated classes of compiled expressions, so that a restarted process defines them from disk
+ * instead of lexing, parsing and generating them again.
+ * <p>
+ * An entry is keyed by the hash of the expression text, the soloscan version, the way classes are defined and
+ * the function registry of the executor, and holds the bytecode together with the metadata needed to assemble
+ * the expression: the metric units with their placeholders and the aggregate functions with their filters.
+ */
+@Slf4j
+public class PersistentExpressionCache {
+
+    private static final int MAGIC = 0x534f4c4f;
+    private static final int FORMAT_VERSION = 2;
+    private static final String FILE_SUFFIX = ".sbc";
+    private static final String VERSION = loadVersion();
+
+    private final SoloscanExecutor instance;
+    private final Path directory;
+
+    private final AtomicLong loadCount = new AtomicLong();
+    private final AtomicLong storeCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+
+    /**
+     * @param directory where the entries are stored, null if only {@link #read} and {@link #write} are used
+     */
+    public PersistentExpressionCache(SoloscanExecutor instance, String directory) {
+        this.instance = instance;
+        this.directory = directory == null ? null : Paths.get(directory);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public static String getVersion() {
+        return VERSION;
+    }
+
+    public String key(String expressionString) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(FORMAT_VERSION).append('\n')
+                .append(VERSION).append('\n')
+                .append(ClassDefiner.getDefineMode()).append(':').append(ClassDefiner.getClassNamePrefix()).append('\n')
+                .append(instance.getFunctionRegistrySignature()).append('\n')
+                .append(expressionString);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the expression defined from the persisted classes, or null if there is no usable entry
+     */
+    public Expression load(String expressionString, SoloscanClassloader classLoader) {
+        Path file = directory.resolve(key(expressionString) + FILE_SUFFIX);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            Expression expression = read(in, expressionString, classLoader);
+            loadCount.incrementAndGet();
+            return expression;
+        } catch (Throwable e) {
+            failureCount.incrementAndGet();
+            log.warn("Failed to load bytecode cache file {} of expression {}, compile it again", file, expressionString, e);
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignore) {
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Defines the expression from an entry written by {@link #write}.
+     */
+    public Expression read(DataInputStream in, String expressionString, SoloscanClassloader classLoader) throws Throwable {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !expressionString.equals(in.readUTF())) {
+            throw new IOException("Mismatched bytecode cache entry");
+        }
+        int definedClassCount = classLoader.getDefinedClassCount();
+        BaseSoloExpression soloExpression = (BaseSoloExpression) readExpression(in, Expression.class, classLoader);
+        int metricUnitCount = in.readInt();
+        for (int i = 0; i < metricUnitCount; i++) {
+            BaseMetricUnitExpression metricUnitExpression = (BaseMetricUnitExpression) readExpression(in, Expression.class, classLoader);
+            metricUnitExpression.setPlaceHolder(in.readUTF());
+            int aggFunctionUnitCount = in.readInt();
+            for (int j = 0; j < aggFunctionUnitCount; j++) {
+                metricUnitExpression.addAggFunctionUnit(readAggFunctionUnit(in, classLoader));
+            }
+            soloExpression.addMetricUnit(metricUnitExpression);
+        }
+        soloExpression.setGeneratedClassCount(classLoader.getDefinedClassCount() - definedClassCount);
+        return soloExpression;
+    }
+
+    private AggFunctionUnit readAggFunctionUnit(DataInputStream in, SoloscanClassloader classLoader) throws Throwable {
+        AggFunctionText aggFunctionText = new AggFunctionText(in.readUTF(), in.readUTF());
+        if (in.readBoolean()) {
+            aggFunctionText.setInnerString(in.readUTF());
+        }
+        Function<AggFunctionText, ? extends AggFunction> function = instance.getAggFunction(aggFunctionText.getName());
+        if (function == null) {
+            throw new ExpressionCompileException("AggFunction " + aggFunctionText.getName() + " not found");
+        }
+        AggInner aggInner = in.readBoolean() ? (AggInner) readExpression(in, AggInner.class, classLoader) : null;
+        AggFunctionUnit aggFunctionUnit = AggFunctionUnit.newAggFunctionUnit(aggFunctionText, function, aggInner);
+        aggFunctionUnit.setMergeable(instance.isMergeableAggFunction(aggFunctionText.getName()));
+        return aggFunctionUnit;
+    }
+
+    private Object readExpression(DataInputStream in, Class<?> type, SoloscanClassloader classLoader) throws Throwable {
+        String className = in.readUTF();
+        String expressionString = in.readUTF();
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        Class<?> definedClass = ClassDefiner.defineClass(className, type, bytes, classLoader);
+        return definedClass.getConstructor(SoloscanExecutor.class, SymbolTable.class, String.class)
+                .newInstance(instance, null, expressionString);
+    }
+
+    /**
+     * Stores the classes of an expression compiled by a class loader recording its generated classes.
+     */
+    public void store(String expressionString, BaseSoloExpression soloExpression, SoloscanClassloader classLoader) {
+        Path file = directory.resolve(key(expressionString) + FILE_SUFFIX);
+        Path tmpFile = null;
+        try {
+            Files.createDirectories(directory);
+            tmpFile = Files.createTempFile(directory, "tmp_", FILE_SUFFIX);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+                write(out, expressionString, soloExpression, classLoader);
+            }
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            storeCount.incrementAndGet();
+        } catch (Throwable e) {
+            failureCount.incrementAndGet();
+            log.warn("Failed to store bytecode cache file {} of expression {}", file, expressionString, e);
+            if (tmpFile != null) {
+                try {
+                    Files.deleteIfExists(tmpFile);
+                } catch (IOException ignore) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the classes of an expression compiled by a class loader recording its generated classes.
+     */
+    public void write(DataOutputStream out, String expressionString, BaseSoloExpression soloExpression, SoloscanClassloader classLoader) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(expressionString);
+        writeExpression(out, soloExpression, soloExpression.getExpressionString(), classLoader);
+        out.writeInt(soloExpression.getMetricUnitExpressions().size());
+        for (MetricUnitExpression metricUnitExpression : soloExpression.getMetricUnitExpressions()) {
+            writeExpression(out, metricUnitExpression, metricUnitExpression.getExpressionString(), classLoader);
+            out.writeUTF(metricUnitExpression.getPlaceHolder());
+            out.writeInt(metricUnitExpression.getAggFunctionUnits().size());
+            for (AggFunctionUnit aggFunctionUnit : metricUnitExpression.getAggFunctionUnits()) {
+                writeAggFunctionUnit(out, aggFunctionUnit, classLoader);
+            }
+        }
+    }
+
+    private void writeAggFunctionUnit(DataOutputStream out, AggFunctionUnit aggFunctionUnit, SoloscanClassloader classLoader) throws IOException {
+        AggFunctionText aggFunctionText = aggFunctionUnit.getAggFunctionText();
+        out.writeUTF(aggFunctionText.getName());
+        out.writeUTF(aggFunctionText.getPlaceHolder());
+        out.writeBoolean(aggFunctionText.getInnerString() != null);
+        if (aggFunctionText.getInnerString() != null) {
+            out.writeUTF(aggFunctionText.getInnerString());
+        }
+        boolean generatedInner = !MiscUtils.isBlank(aggFunctionText.getInnerString());
+        out.writeBoolean(generatedInner);
+        if (generatedInner) {
+            writeExpression(out, aggFunctionUnit.getAggInner(), aggFunctionText.getInnerString(), classLoader);
+        }
+    }
+
+    private void writeExpression(DataOutputStream out, Object expression, String expressionString, SoloscanClassloader classLoader) throws IOException {
+        SoloscanClassloader.GeneratedClass generatedClass = classLoader.getGeneratedClass(expression.getClass());
+        if (generatedClass == null) {
+            generatedClass = instance.getAggInnerClass(expression.getClass());
+        }
+        if (generatedClass == null) {
+            throw new IOException("Generated class of " + expression.getClass().getName() + " is not recorded");
+        }
+        out.writeUTF(generatedClass.className);
+        out.writeUTF(expressionString);
+        out.writeInt(generatedClass.bytes.length);
+        out.write(generatedClass.bytes);
+    }
+
+    public long getLoadCount() {
+        return loadCount.get();
+    }
+
+    public long getStoreCount() {
+        return storeCount.get();
+    }
+
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    private static String loadVersion() {
+        try (InputStream in = PersistentExpressionCache.class.getResourceAsStream("/soloscan.properties")) {
+            if (in != null) {
+                Properties properties = new Properties();
+                properties.load(in);
+                return properties.getProperty("version", "unknown");
+            }
+        } catch (IOException e) {
+            log.warn("Failed to load soloscan version", e);
+        }
+        return "unknown";
+    }
+
+    @Override
+    public String toString() {
+        return "PersistentExpressionCache{" +
+                "directory=" + directory +
+                ", loadCount=" + loadCount +
+                ", storeCount=" + storeCount +
+                ", failureCount=" + failureCount +
+                '}';
+    }
+}
@@ -6,6 +6,7 @@ import org.soloquest.soloscan.compiler.codegen.*;
 import org.soloquest.soloscan.compiler.lexer.SoloscanLexer;
 import org.soloquest.soloscan.compiler.parser.AggFunctionText;
 import org.soloquest.soloscan.compiler.parser.SoloscanParser;
+import org.soloquest.soloscan.dataset.Schema;
 import org.soloquest.soloscan.exception.ExpressionCompileException;
 import org.soloquest.soloscan.exception.ExpressionRuntimeException;
 import org.soloquest.soloscan.runtime.aggfunction.AggFunction;
@@ -13,41 +14,79 @@ import org.soloquest.soloscan.runtime.aggfunction.AggInner;
 import org.soloquest.soloscan.utils.MiscUtils;
 import org.soloquest.soloscan.utils.Preconditions;
 
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
+/**
+ * Compiles one expression, the metric units and aggregate functions met by the parser are collected into
+ * the state of this compiler. A batch of expressions is compiled by {@link #compile()}, each one by its own
+ * compiler and class loader generation, on the bounded compile pool of the executor.
+ */
 @Slf4j
 public class SoloscanCompiler {
 
     private final SoloscanExecutor instance;
     private final SoloscanClassloader classLoader;
     private final Map<String, String> expressionStringMap = new HashMap<>();
-    private SoloscanCache<AggFunctionText,AggInner> aggUnitCache = new SoloscanCache<>(false, (text) -> {
-        return genAggInner(text);
-    });
-
+    private final Schema schema;
     private LinkedList<MetricUnitExpression> metricUnitExpressions = new LinkedList<>();
     private LinkedList<AggFunctionUnit> aggFunctionUnits = new LinkedList<>();
 
     public SoloscanCompiler(SoloscanExecutor instance, SoloscanClassloader classLoader, Map<String, String> expressionStringMap) {
+        this(instance, classLoader, expressionStringMap, null);
+    }
+
+    /**
+     * @param schema the column types of the data sets the expressions run on, null if unknown
+     */
+    public SoloscanCompiler(SoloscanExecutor instance, SoloscanClassloader classLoader, Map<String, String> expressionStringMap, Schema schema) {
         this.instance = instance;
         this.classLoader = classLoader;
         this.expressionStringMap.putAll(expressionStringMap);
+        this.schema = schema;
     }
 
     public Map<String, Expression> compile() {
-        return expressionStringMap.entrySet().stream().collect(Collectors.toMap(e -> e.getKey(), e -> {
-            return compile(e.getValue());
-        }));
+        Map<String, Future<Expression>> futureMap = new TreeMap<>();
+        for (Map.Entry<String, String> entry : expressionStringMap.entrySet()) {
+            Callable<Expression> task = () ->
+                    new SoloscanCompiler(instance, classLoader.newGeneration(), Collections.emptyMap(), schema).compile(entry.getValue());
+            try {
+                futureMap.put(entry.getKey(), SoloscanPools.compile().submit(task));
+            } catch (RejectedExecutionException e) {
+                // the shared pool is saturated, the calling thread compiles it
+                FutureTask<Expression> future = new FutureTask<>(task);
+                future.run();
+                futureMap.put(entry.getKey(), future);
+            }
+        }
+        Map<String, Expression> expressionMap = new LinkedHashMap<>();
+        for (Map.Entry<String, Future<Expression>> entry : futureMap.entrySet()) {
+            try {
+                expressionMap.put(entry.getKey(), entry.getValue().get());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof ExpressionRuntimeException) {
+                    throw (ExpressionRuntimeException) e.getCause();
+                }
+                throw new ExpressionCompileException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ExpressionCompileException(e);
+            }
+        }
+        return expressionMap;
     }
 
 
     public Expression compile(String expressionString) {
         Preconditions.checkNotNullOrEmpty(expressionString, "Blank expression");
+        long start = System.nanoTime();
+        int definedClassCount = classLoader.getDefinedClassCount();
         SoloscanLexer lexer = new SoloscanLexer(instance, expressionString);
         SoloExpressionRealCodeGenerator<BaseSoloExpression> realCodeGenerator = new SoloExpressionRealCodeGenerator(instance, classLoader, Expression.class);
         CodeGeneratorProxy codeGenerator = new CodeGeneratorProxy(instance, classLoader, realCodeGenerator);
@@ -62,6 +101,8 @@ public class SoloscanCompiler {
             }
             baseSoloExpression.addMetricUnit(metricUnitExpression);
         }
+        baseSoloExpression.setGeneratedClassCount(classLoader.getDefinedClassCount() - definedClassCount);
+        baseSoloExpression.setCompileTimeNanos(System.nanoTime() - start);
         return baseSoloExpression;
     }
 
@@ -69,6 +110,8 @@ public class SoloscanCompiler {
         Preconditions.checkNotNullOrEmpty(expressionString, "Blank expression");
         SoloscanLexer lexer = new SoloscanLexer(instance, expressionString);
         MetricUnitRealCodeGenerator<BaseMetricUnitExpression> realCodeGenerator = new MetricUnitRealCodeGenerator(instance, classLoader, Expression.class);
+        realCodeGenerator.setSchema(schema);
+        realCodeGenerator.setAggFunctionUnits(aggFunctionUnits);
         CodeGeneratorProxy codeGenerator = new CodeGeneratorProxy(instance, classLoader, realCodeGenerator);
         SoloscanParser<BaseMetricUnitExpression> parser = new SoloscanParser(this,instance, lexer, codeGenerator);
         codeGenerator.setParser(parser);
@@ -93,8 +136,12 @@ public class SoloscanCompiler {
             if (MiscUtils.isBlank(aggFunctionText.getInnerString())) {
                 aggFunctionUnit = AggFunctionUnit.newAggFunctionUnit(aggFunctionText, function, null);
             } else {
-                aggFunctionUnit = AggFunctionUnit.newAggFunctionUnit(aggFunctionText, function, aggUnitCache.getR(aggFunctionText));
+                AggInner aggInner = instance.getAggInnerCache().isCached()
+                        ? instance.getAggInner(aggFunctionText.getInnerString(), isXAggFunction(aggFunctionText), schema)
+                        : compileAggInner(aggFunctionText.getInnerString(), isXAggFunction(aggFunctionText));
+                aggFunctionUnit = AggFunctionUnit.newAggFunctionUnit(aggFunctionText, function, aggInner);
             }
+            aggFunctionUnit.setMergeable(instance.isMergeableAggFunction(aggFunctionText.getName()));
             aggFunctionUnits.add(aggFunctionUnit);
             return aggFunctionUnit;
         }catch (Exception e) {
@@ -107,26 +154,18 @@ public class SoloscanCompiler {
         }
     }
 
-    private AggInner genAggInner(AggFunctionText aggFunctionText) {
-        String innerString = aggFunctionText.getInnerString();
-        if (!MiscUtils.isBlank(innerString)) {
-
-                    SoloscanLexer lexer = new SoloscanLexer(instance, innerString);
-                AggInnerRealCodeGenerator<AggInner> realCodeGenerator = new AggInnerRealCodeGenerator(instance, classLoader, AggInner.class);
+    public AggInner compileAggInner(String innerString, boolean xAggFunction) {
+        Preconditions.checkNotNullOrEmpty(innerString, "Blank agg function inner");
+        SoloscanLexer lexer = new SoloscanLexer(instance, innerString);
+        AggInnerRealCodeGenerator<AggInner> realCodeGenerator = new AggInnerRealCodeGenerator(instance, classLoader, AggInner.class);
+        realCodeGenerator.setSchema(schema);
         CodeGeneratorProxy codeGenerator = new CodeGeneratorProxy(instance, classLoader, realCodeGenerator);
-        SoloscanParser<AggInner> parser = new SoloscanParser(this,instance, lexer, codeGenerator);
+        SoloscanParser<AggInner> parser = new SoloscanParser(this, instance, lexer, codeGenerator);
         codeGenerator.setParser(parser);
-
-
-            AggInner aggInner = null;
-            if (isXAggFunction(aggFunctionText)) {
-                aggInner = parser.parseXAggFunctionInner();
-            } else {
-                aggInner = parser.parseAggFunctionInner();
-            }
-            return aggInner;
+        if (xAggFunction) {
+            return parser.parseXAggFunctionInner();
         }
-        return null;
+        return parser.parseAggFunctionInner();
     }
 
     private boolean isXAggFunction(AggFunctionText aggFunctionText) {
@@ -0,0 +1,1562 @@
+package org.soloquest.soloscan.compiler.codegen;
+
+import lombok.extern.slf4j.Slf4j;
+import org.soloquest.soloscan.SoloscanExecutor;
+import org.soloquest.soloscan.SoloscanOptions;
+import org.soloquest.soloscan.compiler.asm.ClassWriter;
+import org.soloquest.soloscan.compiler.asm.Label;
+import org.soloquest.soloscan.compiler.asm.MethodVisitor;
+import org.soloquest.soloscan.compiler.asm.Type;
+import org.soloquest.soloscan.compiler.asm.commons.CodeSizeEvaluator;
+import org.soloquest.soloscan.compiler.lexer.SymbolTable;
+import org.soloquest.soloscan.compiler.lexer.token.*;
+import org.soloquest.soloscan.compiler.parser.Parser;
+import org.soloquest.soloscan.dataset.Schema;
+import org.soloquest.soloscan.exception.ExpressionCompileException;
+import org.soloquest.soloscan.runtime.function.IntRange;
+import org.soloquest.soloscan.runtime.function.ListFunction;
+import org.soloquest.soloscan.runtime.function.RangeFunction;
+import org.soloquest.soloscan.runtime.lang.AdaptivePredicate;
+import org.soloquest.soloscan.runtime.lang.SFunction;
+import org.soloquest.soloscan.utils.ParserUtils;
+import org.soloquest.soloscan.utils.Preconditions;
+import org.soloquest.soloscan.utils.TypeUtils;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.soloquest.soloscan.compiler.asm.Opcodes.*;
+
+@Slf4j
+public abstract class AbstractRealCodeGenerator<T> implements CodeConstants {
+
+    protected static final AtomicLong CLASS_COUNTER = new AtomicLong();
+    private static final String LIST_FUNCTION = "[]";
+    private static final String RANGE_FUNCTION = "range";
+    protected ClassWriter classWriter;
+    protected MethodVisitor mv;
+    protected int operandsCount = 0;
+    protected Map<String, String> innerVars = Collections.emptyMap();
+
+    protected Map<String, String> innerMetricVars = Collections.emptyMap();
+    protected Map<String, String> innerMethodMap = Collections.emptyMap();
+    protected Map<Token<?>, String> constantPool = Collections.emptyMap();
+
+    protected Set<String> methodTokens = new HashSet<>();
+
+    protected Set<String> variables = new HashSet<>();
+
+    protected Set<String> metricVariables = new HashSet<>();
+
+    protected Set<Token<?>> constants = new HashSet<>();
+
+    protected final Map<ConstantToken, String> foldedConstantPool = new LinkedHashMap<>();
+
+    protected Schema schema;
+
+    private final int methodSplitThreshold = SoloscanOptions.getOption(SoloscanOptions.METHOD_SPLIT_THRESHOLD);
+    private final Map<String, CodeSizeEvaluator> methodSizes = new LinkedHashMap<>();
+    private int outlinedMethodCount;
+    private int bodyDepth;
+
+    protected final boolean invokedynamicOperators = SoloscanOptions.getOption(SoloscanOptions.INVOKEDYNAMIC_OPERATORS);
+
+    protected List<List<Token<?>>> filterTerms;
+    protected boolean filterConjunction;
+    private String adaptivePredicateField;
+
+    protected static final Label START_LABEL = new Label();
+    protected final Map<Label, Map<String, Integer>> labelNameIndexMap = new IdentityHashMap<>();
+
+    protected Label currentLabel = START_LABEL;
+    protected String className;
+    protected int fieldCounter = 0;
+    protected static final String FIELD_PREFIX = "f";
+    protected final ArrayDeque<MetricUnitRealCodeGenerator.MethodMetaData> methodMetaDataStack = new ArrayDeque<>();
+    protected int maxStacks = 0;
+    protected int maxLocals = 2;
+
+    protected List<Token<?>> tokenList;
+
+    protected SoloscanClassloader classLoader;
+    protected SoloscanExecutor instance;
+    protected Parser parser;
+    protected SymbolTable symbolTable;
+    protected TokenContainer tokenContainer;
+    protected TokenContainer merticsTokenContainer;
+    protected TokenContainer groupingTokenContainer;
+    protected TokenContainer filterTokenContainer;
+
+    protected Class<T> type;
+
+    public AbstractRealCodeGenerator(final SoloscanExecutor instance, final SoloscanClassloader classLoader, Class<T> type) {
+        this.instance = instance;
+        this.classLoader = classLoader;
+        this.type = type;
+    }
+
+    protected void setTokens(TokenContainer merticsTokenContainer, TokenContainer groupingTokenContainer, TokenContainer filterTokenContainer, TokenContainer mainContainer) {
+        this.merticsTokenContainer = merticsTokenContainer;
+        this.groupingTokenContainer = groupingTokenContainer;
+        this.filterTokenContainer = filterTokenContainer;
+        this.tokenContainer = mainContainer;
+        this.tokenList = tokenContainer.getTokenList();
+        this.variables = tokenContainer.getVariables();
+        this.metricVariables = tokenContainer.getMetricsVariables();
+        this.methodTokens = tokenContainer.getMethodTokens();
+        this.constants = tokenContainer.getConstants();
+    }
+
+    /**
+     * Declares the variables, functions and constants of another token list of the class as fields too, so its code
+     * reads the variables through their bound {@code SJavaType} instead of creating and resolving one on every row.
+     * It must be invoked before the fields are initialized.
+     */
+    protected void addTokens(TokenContainer container) {
+        this.variables = union(this.variables, container.getVariables());
+        this.metricVariables = union(this.metricVariables, container.getMetricsVariables());
+        this.methodTokens = union(this.methodTokens, container.getMethodTokens());
+        this.constants = union(this.constants, container.getConstants());
+    }
+
+    private static <E> Set<E> union(Set<E> set, Set<E> other) {
+        Set<E> union = new HashSet<>(set);
+        union.addAll(other);
+        return union;
+    }
+
+    public void setSchema(Schema schema) {
+        this.schema = schema;
+    }
+
+    protected void setParser(Parser parser) {
+        this.parser = parser;
+        this.symbolTable = parser.getSymbolTable();
+    }
+
+    protected String getInnerName(final String varName) {
+        return FIELD_PREFIX + this.fieldCounter++;
+    }
+
+
+    protected void initConstants() {
+        if (constants.isEmpty()) {
+            return;
+        }
+        this.constantPool = new HashMap<>(constants.size());
+        for (Token<?> token : constants) {
+            String fieldName = getInnerName(token.getLexeme());
+            this.constantPool.put(token, fieldName);
+            this.classWriter.visitField(ACC_PRIVATE + ACC_FINAL, fieldName, OBJECT_DESC, null, null)
+                    .visitEnd();
+        }
+    }
+
+    /**
+     * Replaces the calls of list and range on integer literals by constants held in fields, so the value is
+     * built once in the constructor instead of once per row. It must be invoked before the constructor is generated.
+     */
+    protected void foldConstants(List<Token<?>> tokenList) {
+        if (!SoloscanOptions.getOption(SoloscanOptions.CONSTANT_FOLDING)) {
+            return;
+        }
+        for (int i = 0; i < tokenList.size(); i++) {
+            Token<?> token = tokenList.get(i);
+            if (token.getType() != Token.TokenType.Delegate
+                    || ((DelegateToken) token).getDelegateTokenType() != DelegateToken.DelegateTokenType.Method_Name) {
+                continue;
+            }
+            String functionName = token.getLexeme();
+            if (!isFoldableFunction(functionName)) {
+                continue;
+            }
+            List<Long> args = new ArrayList<>();
+            int end = i + 1;
+            while (end + 1 < tokenList.size() && tokenList.get(end).getType() == Token.TokenType.Number
+                    && ((NumberToken) tokenList.get(end)).getNumber() instanceof Long
+                    && tokenList.get(end + 1).getType() == Token.TokenType.Delegate
+                    && ((DelegateToken) tokenList.get(end + 1)).getDelegateTokenType() == DelegateToken.DelegateTokenType.Method_Param) {
+                args.add((Long) ((NumberToken) tokenList.get(end)).getNumber());
+                end += 2;
+            }
+            if (end >= tokenList.size() || tokenList.get(end).getType() != Token.TokenType.Operator
+                    || ((OperatorToken) tokenList.get(end)).getOperatorType() != OperatorType.FUNC) {
+                continue;
+            }
+            long[] values = args.stream().mapToLong(Long::longValue).toArray();
+            if (RANGE_FUNCTION.equals(functionName)) {
+                values = foldRange(values);
+                if (values == null) {
+                    continue;
+                }
+            }
+            ConstantToken constantToken = new ConstantToken(functionName, values, token.getLineNo(), token.getStartIndex());
+            tokenList.subList(i, end + 1).clear();
+            tokenList.add(i, constantToken);
+            if (!this.foldedConstantPool.containsKey(constantToken)) {
+                String fieldName = getInnerName(constantToken.getLexeme());
+                this.foldedConstantPool.put(constantToken, fieldName);
+                this.classWriter.visitField(ACC_PRIVATE + ACC_FINAL, fieldName, OBJECT_DESC, null, null)
+                        .visitEnd();
+            }
+        }
+    }
+
+    private boolean isFoldableFunction(String functionName) {
+        if (LIST_FUNCTION.equals(functionName)) {
+            return this.instance.getFunction(functionName) instanceof ListFunction;
+        } else if (RANGE_FUNCTION.equals(functionName)) {
+            return this.instance.getFunction(functionName) instanceof RangeFunction;
+        }
+        return false;
+    }
+
+    /**
+     * @return start, end and step as {@link RangeFunction} would take them, null if it fails at runtime
+     */
+    private long[] foldRange(long[] args) {
+        if (args.length != 2 && args.length != 3) {
+            return null;
+        }
+        int start = (int) args[0];
+        int end = (int) args[1];
+        int step = args.length == 3 ? (int) args[2] : (start <= end ? 1 : -1);
+        try {
+            new IntRange(start, end, step);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return new long[]{start, end, step};
+    }
+
+    /**
+     * Initializes the folded constants, it is invoked in the constructor.
+     */
+    protected void initFoldedConstants() {
+        for (Map.Entry<ConstantToken, String> entry : this.foldedConstantPool.entrySet()) {
+            ConstantToken token = entry.getKey();
+            long[] args = token.getArgs();
+            this.mv.visitVarInsn(ALOAD, 0);
+            if (RANGE_FUNCTION.equals(token.getFunctionName())) {
+                this.mv.visitLdcInsn((int) args[0]);
+                this.mv.visitLdcInsn((int) args[1]);
+                this.mv.visitLdcInsn((int) args[2]);
+                this.mv.visitMethodInsn(INVOKESTATIC, RU_OWNER, "constantRange", "(III)" + OBJECT_DESC);
+            } else {
+                this.mv.visitLdcInsn(Arrays.stream(args).mapToObj(Long::toString).collect(Collectors.joining(",")));
+                this.mv.visitMethodInsn(INVOKESTATIC, RU_OWNER, "constantList", "(Ljava/lang/String;)" + OBJECT_DESC);
+            }
+            this.mv.visitFieldInsn(PUTFIELD, this.className, entry.getValue(), OBJECT_DESC);
+        }
+    }
+
+    /**
+     * Replaces the subexpressions on the typed columns of the schema by {@link TypedToken}, which are evaluated
+     * on primitive values. It must be invoked after the variables and constants of the token list are collected,
+     * the replaced tokens are still generated as the fallback.
+     */
+    protected void specializeTypes(List<Token<?>> tokenList) {
+        if (this.schema == null || this.schema.isEmpty() || !SoloscanOptions.getOption(SoloscanOptions.TYPE_SPECIALIZATION)) {
+            return;
+        }
+        new TypeSpecializer(this.schema).specialize(tokenList);
+    }
+
+    /**
+     * Splits a top level {@code &&} or {@code ||} filter into its terms and specializes each of them, the filter is
+     * then generated by {@link #visitFilterBody}. It must be invoked before the constructor is generated.
+     */
+    protected void splitFilterTerms(List<Token<?>> tokenList) {
+        if (!SoloscanOptions.getOption(SoloscanOptions.ADAPTIVE_FILTER)) {
+            return;
+        }
+        PredicateSplitter splitter = new PredicateSplitter();
+        List<List<Token<?>>> terms = splitter.split(tokenList);
+        if (terms == null) {
+            return;
+        }
+        for (List<Token<?>> term : terms) {
+            specializeTypes(term);
+        }
+        this.filterTerms = terms;
+        this.filterConjunction = splitter.getOperatorType() == OperatorType.AND;
+        this.adaptivePredicateField = getInnerName("adaptivePredicate");
+        this.classWriter.visitField(ACC_PRIVATE + ACC_FINAL, this.adaptivePredicateField, ADAPTIVE_PREDICATE_DESC, null, null)
+                .visitEnd();
+    }
+
+    /**
+     * Initializes the adaptive predicate of the filter, it is invoked in the constructor.
+     */
+    protected void initAdaptivePredicate() {
+        if (this.filterTerms == null) {
+            return;
+        }
+        this.mv.visitVarInsn(ALOAD, 0);
+        this.mv.visitTypeInsn(NEW, ADAPTIVE_PREDICATE_OWNER);
+        this.mv.visitInsn(DUP);
+        this.mv.visitLdcInsn(this.filterTerms.size());
+        this.mv.visitTypeInsn(ANEWARRAY, "java/lang/String");
+        for (int i = 0; i < this.filterTerms.size(); i++) {
+            this.mv.visitInsn(DUP);
+            this.mv.visitLdcInsn(i);
+            this.mv.visitLdcInsn(termText(this.filterTerms.get(i)));
+            this.mv.visitInsn(AASTORE);
+        }
+        this.mv.visitInsn(this.filterConjunction ? ICONST_1 : ICONST_0);
+        this.mv.visitLdcInsn(SoloscanOptions.getOption(SoloscanOptions.ADAPTIVE_FILTER_SAMPLE_ROWS));
+        this.mv.visitMethodInsn(INVOKESPECIAL, ADAPTIVE_PREDICATE_OWNER, CONSTRUCTOR_METHOD_NAME, "([Ljava/lang/String;ZI)V");
+        this.mv.visitFieldInsn(PUTFIELD, this.className, this.adaptivePredicateField, ADAPTIVE_PREDICATE_DESC);
+    }
+
+    /**
+     * @return the source text of a term, for the counters of the adaptive predicate
+     */
+    private String termText(List<Token<?>> term) {
+        String expression = this.parser.getLexer().getExpression();
+        int start = Integer.MAX_VALUE;
+        int end = -1;
+        for (Token<?> token : term) {
+            if (token.getStartIndex() >= 0 && !(token instanceof DelegateToken)) {
+                start = Math.min(start, token.getStartIndex());
+                end = Math.max(end, token.getStartIndex() + token.getLexeme().length());
+            }
+        }
+        if (start > end || end > expression.length()) {
+            return term.stream().map(Token::getLexeme).collect(Collectors.joining(" "));
+        }
+        while (end < expression.length() && (expression.charAt(end) == '\'' || expression.charAt(end) == '"'
+                || expression.charAt(end) == ')' || expression.charAt(end) == ']')) {
+            end++;
+        }
+        return expression.substring(start, end).trim();
+    }
+
+    /**
+     * Generates the filter as a boolean on the operand stack. An adaptive filter samples its terms through
+     * {@link org.soloquest.soloscan.runtime.lang.AdaptivePredicate#sample} and then evaluates them in the order
+     * chosen by the scan of the row env with short-circuit.
+     */
+    protected void visitFilterBody(List<Token<?>> tokenList, boolean isLoad) {
+        if (this.filterTerms == null) {
+            visitBooleanBody(tokenList, isLoad);
+            return;
+        }
+        int orderLocal = getLocalIndex();
+        Label ordered = new Label();
+        Label decided = new Label();
+        Label end = new Label();
+        this.mv.visitVarInsn(ALOAD, 0);
+        this.mv.visitFieldInsn(GETFIELD, this.className, this.adaptivePredicateField, ADAPTIVE_PREDICATE_DESC);
+        this.mv.visitVarInsn(ALOAD, 1);
+        this.mv.visitMethodInsn(INVOKEVIRTUAL, ADAPTIVE_PREDICATE_OWNER, "order", "(" + ENV_DESC + ")[I");
+        this.mv.visitVarInsn(ASTORE, orderLocal);
+        this.mv.visitVarInsn(ALOAD, orderLocal);
+        this.mv.visitJumpInsn(IFNONNULL, ordered);
+        this.mv.visitVarInsn(ALOAD, 0);
+        this.mv.visitFieldInsn(GETFIELD, this.className, this.adaptivePredicateField, ADAPTIVE_PREDICATE_DESC);
+        this.mv.visitVarInsn(ALOAD, 0);
+        this.mv.visitVarInsn(ALOAD, 1);
+        this.mv.visitMethodInsn(INVOKEVIRTUAL, ADAPTIVE_PREDICATE_OWNER, "sample",
+                "(" + Type.getDescriptor(AdaptivePredicate.Terms.class) + ENV_DESC + ")Z");
+        this.mv.visitJumpInsn(GOTO, end);
+        this.mv.visitLabel(ordered);
+        for (int i = 0; i < this.filterTerms.size(); i++) {
+            this.mv.visitVarInsn(ALOAD, 0);
+            this.mv.visitVarInsn(ALOAD, orderLocal);
+            this.mv.visitLdcInsn(i);
+            this.mv.visitInsn(IALOAD);
+            this.mv.visitVarInsn(ALOAD, 1);
+            this.mv.visitMethodInsn(INVOKEVIRTUAL, this.className, FILTER_TERM_METHOD_NAME, FILTER_TERM_METHOD_DESC);
+            this.mv.visitJumpInsn(this.filterConjunction ? IFEQ : IFNE, decided);
+        }
+        this.mv.visitInsn(this.filterConjunction ? ICONST_1 : ICONST_0);
+        this.mv.visitJumpInsn(GOTO, end);
+        this.mv.visitLabel(decided);
+        this.mv.visitInsn(this.filterConjunction ? ICONST_0 : ICONST_1);
+        this.mv.visitLabel(end);
+    }
+
+    /**
+     * Generates a method per term of an adaptive filter, {@code filterTerm(int, Env)} dispatching to them and
+     * {@code getAdaptivePredicate()}. A filter which is not adaptive has no terms, its {@code filterTerm} throws.
+     */
+    protected void visitFilterTermMethods(boolean isLoad) {
+        if (this.filterTerms == null) {
+            this.mv = visitMethod(ACC_PUBLIC + ACC_FINAL, FILTER_TERM_METHOD_NAME,
+                    FILTER_TERM_METHOD_DESC, FILTER_TERM_METHOD_DESC);
+            this.mv.visitCode();
+            throwIndexOutOfBounds();
+            this.mv.visitMaxs(0, 0);
+            this.mv.visitEnd();
+            return;
+        }
+        String termEnvDesc = "(" + ENV_DESC + ")Z";
+        for (int i = 0; i < this.filterTerms.size(); i++) {
+            this.mv = visitMethod(ACC_PUBLIC + ACC_FINAL, FILTER_TERM_METHOD_NAME + i, termEnvDesc, termEnvDesc);
+            this.mv.visitCode();
+            List<Token<?>> term = this.filterTerms.get(i);
+            if (term.size() == 1 && term.get(0) instanceof TypedToken) {
+                visitBooleanBody(term, isLoad);
+            } else {
+                // the same conversion as the boxed && and || operations
+                methodBody(term, isLoad);
+                loadEnv();
+                this.mv.visitMethodInsn(INVOKEVIRTUAL, OBJECT_OWNER, "booleanValue", "(Ljava/util/Map;)Z");
+                this.popOperand(2);
+            }
+            this.mv.visitInsn(IRETURN);
+            this.mv.visitMaxs(0, 0);
+            this.mv.visitEnd();
+        }
+
+        this.mv = visitMethod(ACC_PUBLIC + ACC_FINAL, FILTER_TERM_METHOD_NAME,
+                FILTER_TERM_METHOD_DESC, FILTER_TERM_METHOD_DESC);
+        this.mv.visitCode();
+        Label[] labels = new Label[this.filterTerms.size()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = new Label();
+        }
+        Label outOfRange = new Label();
+        this.mv.visitVarInsn(ILOAD, 1);
+        this.mv.visitTableSwitchInsn(0, labels.length - 1, outOfRange, labels);
+        for (int i = 0; i < labels.length; i++) {
+            this.mv.visitLabel(labels[i]);
+            this.mv.visitVarInsn(ALOAD, 0);
+            this.mv.visitVarInsn(ALOAD, 2);
+            this.mv.visitMethodInsn(INVOKEVIRTUAL, this.className, FILTER_TERM_METHOD_NAME + i, termEnvDesc);
+            this.mv.visitInsn(IRETURN);
+        }
+        this.mv.visitLabel(outOfRange);
+        throwIndexOutOfBounds();
+        this.mv.visitMaxs(0, 0);
+        this.mv.visitEnd();
+
+        String getterDesc = "()" + ADAPTIVE_PREDICATE_DESC;
+        this.mv = visitMethod(ACC_PUBLIC + ACC_FINAL, "getAdaptivePredicate", getterDesc, getterDesc);
+        this.mv.visitCode();
+        this.mv.visitVarInsn(ALOAD, 0);
+        this.mv.visitFieldInsn(GETFIELD, this.className, this.adaptivePredicateField, ADAPTIVE_PREDICATE_DESC);
+        this.mv.visitInsn(ARETURN);
+        this.mv.visitMaxs(0, 0);
+        this.mv.visitEnd();
+    }
+
+    private void throwIndexOutOfBounds() {
+        this.mv.visitTypeInsn(NEW, "java/lang/IndexOutOfBoundsException");
+        this.mv.visitInsn(DUP);
+        this.mv.visitMethodInsn(INVOKESPECIAL, "java/lang/IndexOutOfBoundsException", CONSTRUCTOR_METHOD_NAME, "()V");
+        this.mv.visitInsn(ATHROW);
+    }
+
+    /**
+     * Generates the token list as a boolean on the operand stack, without boxing it if the whole list is typed.
+     */
+    protected void visitBooleanBody(List<Token<?>> tokenList, boolean isLoad) {
+        if (tokenList.size() == 1 && tokenList.get(0) instanceof TypedToken
+                && ((TypedToken) tokenList.get(0)).getJavaType() == boolean.class) {
+            TypedToken typedToken = (TypedToken) tokenList.get(0);
+            Label fallback = new Label();
+            Label end = new Label();
+            visitLineNumber(typedToken);
+            visitTypedValue(typedToken, loadTypedColumns(typedToken, fallback), boolean.class);
+            this.mv.visitJumpInsn(GOTO, end);
+            this.mv.visitLabel(fallback);
+            methodBody(typedToken.getTokens(), isLoad);
+            visitCovertBoolean();
+            this.mv.visitLabel(end);
+        } else {
+            methodBody(tokenList, isLoad);
+            visitCovertBoolean();
+        }
+    }
+
+    private void visitCovertBoolean() {
+        loadEnv();
+        this.mv.visitMethodInsn(INVOKEVIRTUAL, OBJECT_OWNER, "getValue",
+                "(Ljava/util/Map;)Ljava/lang/Object;");
+        this.mv.visitMethodInsn(INVOKESTATIC, RU_OWNER, "covertBoolean",
+                "(Ljava/lang/Object;)Z");
+        this.popOperand(2);
+    }
+
+    private void onTyped(final TypedToken token, final boolean isLoad) {
+        visitLineNumber(token);
+        Label fallback = new Label();
+        Label end = new Label();
+        visitTypedValue(token, loadTypedColumns(token, fallback), token.getJavaType());
+        if (token.getJavaType() == boolean.class) {
+            this.mv.visitMethodInsn(INVOKESTATIC, BOOLEAN_OWNER, "valueOf", BOOLEAN_VALUEOF_DESC);
+        } else if (token.getJavaType() == long.class) {
+            this.mv.visitMethodInsn(INVOKESTATIC, LONG_OWNER, "valueOf", LONG_VALUEOF_DESC);
+        } else {
+            this.mv.visitMethodInsn(INVOKESTATIC, DOUBLE_OWNER, "valueOf", DOUBLE_VALUEOF_DESC);
+        }
+        this.mv.visitTypeInsn(CHECKCAST, OBJECT_OWNER);
+        this.mv.visitJumpInsn(GOTO, end);
+        // a column value of another type than the schema, or null, is evaluated by the generic operations
+        this.mv.visitLabel(fallback);
+        methodBody(token.getTokens(), isLoad);
+        this.mv.visitLabel(end);
+    }
+
+    /**
+     * Reads the typed columns of the row into locals, jumps to the fallback if a value is not of its type.
+     *
+     * @return column name to local index
+     */
+    private Map<String, Integer> loadTypedColumns(final TypedToken token, final Label fallback) {
+        Map<String, Class<?>> columns = new LinkedHashMap<>();
+        collectTypedColumns(token, columns);
+        Map<String, Integer> columnLocals = new HashMap<>(columns.size());
+        int valueLocal = getLocalIndex();
+        for (Map.Entry<String, Class<?>> entry : columns.entrySet()) {
+            Class<?> type = entry.getValue();
+            String innerVarName = this.innerVars.get(entry.getKey());
+            if (innerVarName != null) {
+                this.mv.visitVarInsn(ALOAD, 0);
+                this.mv.visitFieldInsn(GETFIELD, this.className, innerVarName, JAVATYPE_DESC);
+                this.mv.visitVarInsn(ALOAD, 1);
+                this.mv.visitMethodInsn(INVOKEVIRTUAL, JAVATYPE_OWNER, "getValue", "(Ljava/util/Map;)Ljava/lang/Object;");
+            } else {
+                this.mv.visitVarInsn(ALOAD, 1);
+                this.mv.visitLdcInsn(entry.getKey());
+                this.mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Map", "get", "(Ljava/lang/Object;)Ljava/lang/Object;");
+            }
+            this.mv.visitVarInsn(ASTORE, valueLocal);
+            this.mv.visitVarInsn(ALOAD, valueLocal);
+            int local = getLocalIndex();
+            if (type == boolean.class) {
+                this.mv.visitTypeInsn(INSTANCEOF, "java/lang/Boolean");
+                this.mv.visitJumpInsn(IFEQ, fallback);
+                this.mv.visitVarInsn(ALOAD, valueLocal);
+                this.mv.visitTypeInsn(CHECKCAST, "java/lang/Boolean");
+                this.mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Boolean", "booleanValue", "()Z");
+                this.mv.visitVarInsn(ISTORE, local);
+            } else {
+                boolean isLong = type == long.class;
+                this.mv.visitMethodInsn(INVOKESTATIC, TYPE_UTILS_OWNER, isLong ? "isLong" : "isDouble", "(Ljava/lang/Object;)Z");
+                this.mv.visitJumpInsn(IFEQ, fallback);
+                this.mv.visitVarInsn(ALOAD, valueLocal);
+                this.mv.visitTypeInsn(CHECKCAST, "java/lang/Number");
+                this.mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Number", isLong ? "longValue" : "doubleValue",
+                        isLong ? "()J" : "()D");
+                this.mv.visitVarInsn(isLong ? LSTORE : DSTORE, local);
+                // long and double take two slots
+                getLocalIndex();
+            }
+            columnLocals.put(entry.getKey(), local);
+        }
+        return columnLocals;
+    }
+
+    private void collectTypedColumns(final TypedToken token, final Map<String, Class<?>> columns) {
+        if (token.isColumn()) {
+            columns.put(token.getLexeme(), token.getJavaType());
+        }
+        for (TypedToken operand : token.getOperands()) {
+            collectTypedColumns(operand, columns);
+        }
+    }
+
+    /**
+     * Pushes the primitive value of a typed subexpression, converted to the type.
+     */
+    private void visitTypedValue(final TypedToken token, final Map<String, Integer> columnLocals, final Class<?> type) {
+        TypedToken[] operands = token.getOperands();
+        if (operands.length == 0) {
+            if (token.isColumn()) {
+                int local = columnLocals.get(token.getLexeme());
+                this.mv.visitVarInsn(token.getJavaType() == long.class ? LLOAD
+                        : token.getJavaType() == double.class ? DLOAD : ILOAD, local);
+            } else if (token.getJavaType() == boolean.class) {
+                this.mv.visitInsn(VariableToken.TRUE.equals(token.getToken()) ? ICONST_1 : ICONST_0);
+            } else {
+                this.mv.visitLdcInsn(((NumberToken) token.getToken()).getNumber());
+            }
+            visitPrimitiveCast(token.getJavaType(), type);
+            return;
+        }
+        OperatorType operatorType = ((OperatorToken) token.getToken()).getOperatorType();
+        switch (operatorType) {
+            case NOT:
+                visitTypedValue(operands[0], columnLocals, boolean.class);
+                this.mv.visitInsn(ICONST_1);
+                this.mv.visitInsn(IXOR);
+                break;
+            case AND:
+            case OR:
+                // both operands are evaluated like the boxed operation does
+                visitTypedValue(operands[0], columnLocals, boolean.class);
+                visitTypedValue(operands[1], columnLocals, boolean.class);
+                this.mv.visitInsn(operatorType == OperatorType.AND ? IAND : IOR);
+                break;
+            case EQ:
+            case NEQ:
+            case LT:
+            case LE:
+            case GT:
+            case GE:
+                Class<?> operandType = operands[0].getJavaType() == long.class && operands[1].getJavaType() == long.class
+                        ? long.class : double.class;
+                visitTypedValue(operands[0], columnLocals, operandType);
+                visitTypedValue(operands[1], columnLocals, operandType);
+                if (operandType == long.class) {
+                    this.mv.visitInsn(LCMP);
+                } else {
+                    this.mv.visitMethodInsn(INVOKESTATIC, RU_OWNER, "compare", "(DD)I");
+                }
+                visitTypedCompare(operatorType);
+                break;
+            case NEG:
+                visitTypedValue(operands[0], columnLocals, token.getJavaType());
+                if (token.getJavaType() == long.class) {
+                    this.mv.visitMethodInsn(INVOKESTATIC, NUMBERS_OWNER, "minus", "(J)J");
+                } else {
+                    this.mv.visitInsn(DNEG);
+                }
+                break;
+            default:
+                visitTypedValue(operands[0], columnLocals, token.getJavaType());
+                visitTypedValue(operands[1], columnLocals, token.getJavaType());
+                visitTypedArithmetic(operatorType, token.getJavaType() == long.class);
+                break;
+        }
+        visitPrimitiveCast(token.getJavaType(), type);
+    }
+
+    private void visitTypedArithmetic(final OperatorType operatorType, final boolean isLong) {
+        switch (operatorType) {
+            case ADD:
+                if (isLong) {
+                    this.mv.visitMethodInsn(INVOKESTATIC, NUMBERS_OWNER, "add", "(JJ)J");
+                } else {
+                    this.mv.visitInsn(DADD);
+                }
+                break;
+            case SUB:
+                if (isLong) {
+                    this.mv.visitMethodInsn(INVOKESTATIC, NUMBERS_OWNER, "minus", "(JJ)J");
+                } else {
+                    this.mv.visitInsn(DSUB);
+                }
+                break;
+            case MULT:
+                if (isLong) {
+                    this.mv.visitMethodInsn(INVOKESTATIC, NUMBERS_OWNER, "multiply", "(JJ)J");
+                } else {
+                    this.mv.visitInsn(DMUL);
+                }
+                break;
+            case DIV:
+                this.mv.visitMethodInsn(INVOKESTATIC, RU_OWNER, "divide", "(DD)D");
+                break;
+            case MOD:
+                if (isLong) {
+                    this.mv.visitMethodInsn(INVOKESTATIC, RU_OWNER, "remainder", "(JJ)J");
+                } else {
+                    this.mv.visitMethodInsn(INVOKESTATIC, NUMBERS_OWNER, "remainder", "(DD)D");
+                }
+                break;
+            default:
+                throw new ExpressionCompileException("Unsupported typed operator " + operatorType);
+        }
+    }
+
+    /**
+     * Turns the comparison result on the stack into a boolean.
+     */
+    private void visitTypedCompare(final OperatorType operatorType) {
+        int ifFalse;
+        switch (operatorType) {
+            case EQ:
+                ifFalse = IFNE;
+                break;
+            case NEQ:
+                ifFalse = IFEQ;
+                break;
+            case LT:
+                ifFalse = IFGE;
+                break;
+            case LE:
+                ifFalse = IFGT;
+                break;
+            case GT:
+                ifFalse = IFLE;
+                break;
+            default:
+                ifFalse = IFLT;
+                break;
+        }
+        Label falseLabel = new Label();
+        Label end = new Label();
+        this.mv.visitJumpInsn(ifFalse, falseLabel);
+        this.mv.visitInsn(ICONST_1);
+        this.mv.visitJumpInsn(GOTO, end);
+        this.mv.visitLabel(falseLabel);
+        this.mv.visitInsn(ICONST_0);
+        this.mv.visitLabel(end);
+    }
+
+    private void visitPrimitiveCast(final Class<?> from, final Class<?> to) {
+        if (from == long.class && to == double.class) {
+            this.mv.visitInsn(L2D);
+        }
+    }
+
+    public void initVariables() {
+        this.innerVars = new HashMap<>(this.variables.size());
+        for (String outterVarName : this.variables) {
+            String innerVarName = getInnerName(outterVarName);
+            this.innerVars.put(outterVarName, innerVarName);
+            this.classWriter.visitField(ACC_PRIVATE + ACC_FINAL, innerVarName,
+                    JAVATYPE_DESC, null, null).visitEnd();
+
+        }
+    }
+
+    public void initMetricVariables() {
+        this.innerMetricVars = new HashMap<>(this.metricVariables.size());
+        for (String outterVarName : this.metricVariables) {
+            String innerVarName = getInnerName(outterVarName);
+            this.innerMetricVars.put(outterVarName, innerVarName);
+            this.classWriter.visitField(ACC_PRIVATE + ACC_FINAL, innerVarName,
+                    SMERTRIC_DESC, null, null).visitEnd();
+
+        }
+    }
+
+    public void initMethods() {
+        this.innerMethodMap = new HashMap<>(methodTokens.size());
+        for (String outterMethodName : methodTokens) {
+            String innerMethodName = getInnerName(outterMethodName);
+            this.innerMethodMap.put(outterMethodName, innerMethodName);
+            this.classWriter.visitField(ACC_PRIVATE + ACC_FINAL, innerMethodName,
+                    FUNCTION_DESC, null, null).visitEnd();
+        }
+    }
+
+    protected void methodBody(List<Token<?>> tokenList) {
+        methodBody(tokenList, true);
+    }
+
+    /**
+     * Generates the token list. If its code would be larger than {@code method.split.threshold} bytes, subexpressions
+     * of it are outlined into private methods, so that no generated method gets too large for the JIT.
+     */
+    protected void methodBody(List<Token<?>> tokenList, boolean isLoad) {
+        Map<Integer, List<ExpressionNode>> outlines = this.bodyDepth == 0
+                ? planOutlines(tokenList, isLoad) : Collections.emptyMap();
+        this.bodyDepth++;
+        try {
+            emitTokens(tokenList, 0, tokenList.size() - 1, isLoad, outlines);
+        } finally {
+            this.bodyDepth--;
+        }
+    }
+
+    private void emitTokens(List<Token<?>> tokenList, int from, int to, boolean isLoad,
+                            Map<Integer, List<ExpressionNode>> outlines) {
+        for (int i = from; i <= to; i++) {
+            ExpressionNode outline = outlineAt(outlines, i, from, to);
+            if (outline != null) {
+                visitOutlineCall(tokenList, outline, isLoad, outlines);
+                i = outline.end;
+                continue;
+            }
+            Token token = tokenList.get(i);
+            switch (token.getType()) {
+                case Constant:
+                    onFoldedConstant((ConstantToken) token);
+                    break;
+                case Typed:
+                    onTyped((TypedToken) token, isLoad);
+                    break;
+                case Operator:
+                    OperatorToken op = (OperatorToken) token;
+                    switch (op.getOperatorType()) {
+                        case ADD:
+                            onAdd(token);
+                            break;
+                        case SUB:
+                            onSub(token);
+                            break;
+                        case MULT:
+                            onMult(token);
+                            break;
+                        case DIV:
+                            onDiv(token);
+                            break;
+                        case MOD:
+                            onMod(token);
+                            break;
+                        case EQ:
+                            onEq(token);
+                            break;
+                        case NEQ:
+                            onNeq(token);
+                            break;
+                        case LT:
+                            onLt(token);
+                            break;
+                        case LE:
+                            onLe(token);
+                            break;
+                        case GT:
+                            onGt(token);
+                            break;
+                        case GE:
+                            onGe(token);
+                            break;
+                        case NOT:
+                            onNot(token);
+                            break;
+                        case NEG:
+                            onNeg(token);
+                            break;
+                        case AND:
+                            onAndRight(token);
+                            break;
+                        case OR:
+                            onJoinRight(token);
+                            break;
+                        case FUNC:
+                            onMethodInvoke(token);
+                            break;
+                        case IN:
+                            onIn(token);
+                            break;
+                        case UNION:
+                            onUnion(token);
+                            break;
+                        case DEFAULTOPERATION:
+                            onDefaultOperation(token);
+                            break;
+                    }
+                    break;
+                case Delegate:
+                    DelegateToken delegateToken = (DelegateToken) token;
+                    final Token<?> realToken = delegateToken.getToken();
+                    switch (delegateToken.getDelegateTokenType()) {
+                        case And_Left:
+                            onAndLeft(realToken);
+                            break;
+                        case Join_Left:
+                            onJoinLeft(realToken);
+                            break;
+                        case Method_Name:
+                            onMethodName(realToken,isLoad);
+                            break;
+                        case Method_Param:
+                            onMethodParameter(realToken);
+                            break;
+                    }
+                    break;
+
+                default:
+                    onConstant(token, isLoad);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @return the largest outlined subexpression starting at the token, except the range being generated itself
+     */
+    private static ExpressionNode outlineAt(Map<Integer, List<ExpressionNode>> outlines, int index, int from, int to) {
+        List<ExpressionNode> nodes = outlines.get(index);
+        if (nodes == null) {
+            return null;
+        }
+        ExpressionNode outline = null;
+        for (ExpressionNode node : nodes) {
+            if (node.end <= to && !(node.start == from && node.end == to) && (outline == null || node.end > outline.end)) {
+                outline = node;
+            }
+        }
+        return outline;
+    }
+
+    /**
+     * Calls a private method which evaluates the subexpression, and generates the method.
+     */
+    private void visitOutlineCall(List<Token<?>> tokenList, ExpressionNode node, boolean isLoad,
+                                  Map<Integer, List<ExpressionNode>> outlines) {
+        String methodName = OUTLINE_METHOD_NAME + this.outlinedMethodCount++;
+        this.mv.visitVarInsn(ALOAD, 0);
+        this.mv.visitVarInsn(ALOAD, 1);
+        this.mv.visitMethodInsn(INVOKEVIRTUAL, this.className, methodName, OUTLINE_METHOD_DESC);
+        this.pushOperand();
+
+        MethodVisitor caller = this.mv;
+        int operandsCount = this.operandsCount;
+        Label label = this.currentLabel;
+        this.mv = visitMethod(ACC_PRIVATE + ACC_FINAL, methodName, OUTLINE_METHOD_DESC, null);
+        this.mv.visitCode();
+        this.operandsCount = 0;
+        this.currentLabel = START_LABEL;
+        emitTokens(tokenList, node.start, node.end, isLoad, outlines);
+        this.mv.visitInsn(ARETURN);
+        this.mv.visitMaxs(0, 0);
+        this.mv.visitEnd();
+        this.mv = caller;
+        this.operandsCount = operandsCount;
+        this.currentLabel = label;
+    }
+
+    /**
+     * Chooses the subexpressions to outline. Every node is sized by generating it into a {@link CodeSizeEvaluator},
+     * then bottom up the largest operands of a node larger than the threshold are replaced by calls until it fits.
+     *
+     * @return the outlined nodes by their first token
+     */
+    private Map<Integer, List<ExpressionNode>> planOutlines(List<Token<?>> tokenList, boolean isLoad) {
+        if (this.methodSplitThreshold <= 0 || tokenList.isEmpty()
+                || measure(tokenList, 0, tokenList.size() - 1, isLoad) <= this.methodSplitThreshold) {
+            return Collections.emptyMap();
+        }
+        ExpressionNode root = ExpressionNode.parse(tokenList);
+        if (root == null) {
+            log.warn("can not split the code of {} which exceeds {} bytes", this.className, this.methodSplitThreshold);
+            return Collections.emptyMap();
+        }
+        Map<Integer, List<ExpressionNode>> outlines = new HashMap<>();
+        int size = plan(tokenList, root, isLoad, outlines);
+        if (size > this.methodSplitThreshold) {
+            log.warn("the code of {} is {} bytes after splitting, more than {}", this.className, size, this.methodSplitThreshold);
+        }
+        return outlines;
+    }
+
+    /**
+     * @return the size of the node once its outlined operands are calls
+     */
+    private int plan(List<Token<?>> tokenList, ExpressionNode node, boolean isLoad,
+                     Map<Integer, List<ExpressionNode>> outlines) {
+        int size = measure(tokenList, node.start, node.end, isLoad);
+        if (size <= this.methodSplitThreshold || node.operands.isEmpty()) {
+            return size;
+        }
+        int[] operandSizes = new int[node.operands.size()];
+        for (int i = 0; i < operandSizes.length; i++) {
+            ExpressionNode operand = node.operands.get(i);
+            int operandSize = measure(tokenList, operand.start, operand.end, isLoad);
+            operandSizes[i] = plan(tokenList, operand, isLoad, outlines);
+            size -= operandSize - operandSizes[i];
+        }
+        while (size > this.methodSplitThreshold) {
+            int largest = -1;
+            for (int i = 0; i < operandSizes.length; i++) {
+                if (operandSizes[i] > OUTLINE_CALL_SIZE && (largest < 0 || operandSizes[i] > operandSizes[largest])) {
+                    largest = i;
+                }
+            }
+            if (largest < 0) {
+                break;
+            }
+            ExpressionNode operand = node.operands.get(largest);
+            outlines.computeIfAbsent(operand.start, k -> new ArrayList<>()).add(operand);
+            size -= operandSizes[largest] - OUTLINE_CALL_SIZE;
+            operandSizes[largest] = OUTLINE_CALL_SIZE;
+        }
+        return size;
+    }
+
+    /**
+     * @return the maximum size of the code of the tokens, generated into a {@link CodeSizeEvaluator} only
+     */
+    private int measure(List<Token<?>> tokenList, int from, int to, boolean isLoad) {
+        MethodVisitor mv = this.mv;
+        int operandsCount = this.operandsCount;
+        int maxStacks = this.maxStacks;
+        int maxLocals = this.maxLocals;
+        Label label = this.currentLabel;
+        CodeSizeEvaluator evaluator = new CodeSizeEvaluator(null);
+        this.mv = evaluator;
+        this.bodyDepth++;
+        try {
+            emitTokens(tokenList, from, to, isLoad, Collections.emptyMap());
+        } finally {
+            this.bodyDepth--;
+            this.mv = mv;
+            this.operandsCount = operandsCount;
+            this.maxStacks = maxStacks;
+            this.maxLocals = maxLocals;
+            this.currentLabel = label;
+        }
+        return evaluator.getMaxSize();
+    }
+
+    /**
+     * Starts a method of the generated class, its size is measured for the {@link CodeSizeMetrics}.
+     */
+    protected MethodVisitor visitMethod(int access, String name, String desc, String signature) {
+        CodeSizeEvaluator evaluator = new CodeSizeEvaluator(this.classWriter.visitMethod(access, name, desc, signature, null));
+        this.methodSizes.put(name, evaluator);
+        return evaluator;
+    }
+
+    /**
+     * Defines the generated class and registers its {@link CodeSizeMetrics}.
+     */
+    protected Class<?> defineClass(byte[] bytes) throws Throwable {
+        Class<?> definedClass = ClassDefiner.defineClass(this.className, this.type, bytes, this.classLoader);
+        Map<String, Integer> sizes = new LinkedHashMap<>();
+        this.methodSizes.forEach((name, evaluator) -> sizes.put(name, evaluator.getMaxSize()));
+        CodeSizeMetrics metrics = new CodeSizeMetrics(this.className, sizes, this.outlinedMethodCount);
+        CodeSizeMetrics.register(definedClass, metrics);
+        if (metrics.getLargestMethodSize() > CodeSizeMetrics.HUGE_METHOD_LIMIT) {
+            log.warn("{} has a method larger than {} bytes which is not JIT compiled, {}", this.className,
+                    CodeSizeMetrics.HUGE_METHOD_LIMIT, metrics);
+        } else if (this.outlinedMethodCount > 0) {
+            log.info("{} outlined {} methods, {}", this.className, this.outlinedMethodCount, metrics);
+        }
+        return definedClass;
+    }
+
+    public int getLocalIndex() {
+        return this.maxLocals++;
+    }
+
+    public void onAdd(final Token<?> lookhead) {
+        visitBinOperator(lookhead, OperatorType.ADD, "add");
+    }
+
+    private void loadOpType(final OperatorType opType) {
+        this.pushOperand();
+        this.mv.visitFieldInsn(GETSTATIC, OT_OWNER,
+                opType.name(), OT_DESC);
+    }
+
+
+    protected void popOperand() {
+        this.operandsCount--;
+    }
+
+
+    private void popOperand(final int n) {
+        this.operandsCount -= n;
+    }
+
+
+    public void onSub(final Token<?> lookhead) {
+        visitBinOperator(lookhead, OperatorType.SUB, "sub");
+    }
+
+
+    public void onMult(final Token<?> lookhead) {
+        visitBinOperator(lookhead, OperatorType.MULT, "mult");
+    }
+
+
+    public void onExponent(final Token<?> lookhead) {
+        visitBinOperator(lookhead, OperatorType.Exponent, "exponent");
+    }
+
+
+    public void onDiv(final Token<?> lookhead) {
+        visitBinOperator(lookhead, OperatorType.DIV, "div");
+    }
+
+
+    public void onMod(final Token<?> lookhead) {
+        visitBinOperator(lookhead, OperatorType.MOD, "mod");
+    }
+
+
+    public void onAndLeft(final Token<?> lookhead) {
+        loadEnv();
+        visitLeftBranch(lookhead, IFEQ, OperatorType.AND);
+    }
+
+
+    private void visitBoolean() {
+        this.mv.visitMethodInsn(INVOKEVIRTUAL, OBJECT_OWNER, "booleanValue", "(Ljava/util/Map;)Z");
+    }
+
+
+    private void pushLabel0(final Label l0) {
+        this.l0stack.push(l0);
+    }
+
+
+    public void onAndRight(final Token<?> lookhead) {
+        visitRightBranch(lookhead, IFEQ, OperatorType.AND);
+        this.popOperand(2); // boolean object and environment
+        this.pushOperand();
+    }
+
+
+    private void visitRightBranch(final Token<?> lookhead, final int ints,
+                                  final OperatorType opType) {
+        loadOpType(opType);
+        visitLineNumber(lookhead);
+        this.mv.visitMethodInsn(INVOKESTATIC, OR_OWNER,
+                "eval",
+                OR_EVAL_METHOD_DESC);
+        this.popOperand();
+
+    }
+
+    /**
+     * Label stack for ternary operator
+     */
+    private final Stack<Label> l0stack = new Stack<Label>();
+    private final Stack<Label> l1stack = new Stack<Label>();
+
+    private Label makeLabel() {
+        return new Label();
+    }
+
+    public void onTernaryBoolean(final Token<?> lookhead) {
+        loadEnv();
+        visitLineNumber(lookhead);
+        visitBoolean();
+        Label l0 = makeLabel();
+        Label l1 = makeLabel();
+        pushLabel0(l0);
+        pushLabel1(l1);
+        this.mv.visitJumpInsn(IFEQ, l0);
+        this.popOperand();
+        this.popOperand();
+        this.pushOperand(2); // add two booleans
+
+        this.popOperand(); // pop the last result
+    }
+
+
+    private void pushLabel1(final Label l1) {
+        this.l1stack.push(l1);
+    }
+
+
+    public void onTernaryLeft(final Token<?> lookhead) {
+        this.mv.visitJumpInsn(GOTO, peekLabel1());
+        visitLabel(popLabel0());
+        visitLineNumber(lookhead);
+        this.popOperand(); // pop one boolean
+    }
+
+
+    private Label peekLabel1() {
+        return this.l1stack.peek();
+    }
+
+
+    public void onTernaryRight(final Token<?> lookhead) {
+        visitLabel(popLabel1());
+        visitLineNumber(lookhead);
+        this.popOperand(); // pop one boolean
+    }
+
+
+    public void onTernaryEnd(final Token<?> lookhead) {
+        visitLineNumber(lookhead);
+        if (this.operandsCount == 0) {
+            return;
+        }
+        while (--this.operandsCount > 0) {
+            this.mv.visitInsn(POP);
+        }
+    }
+
+    private Label popLabel1() {
+        return this.l1stack.pop();
+    }
+
+
+    /**
+     * Do logic operation "||" right operand
+     */
+
+    public void onJoinRight(final Token<?> lookhead) {
+        visitRightBranch(lookhead, IFNE, OperatorType.OR);
+        this.popOperand(2);
+        this.pushOperand();
+
+    }
+
+
+    private void visitLabel(final Label label) {
+        this.mv.visitLabel(label);
+        this.currentLabel = label;
+    }
+
+
+    private Label peekLabel0() {
+        return this.l0stack.peek();
+    }
+
+
+    private Label popLabel0() {
+        return this.l0stack.pop();
+    }
+
+
+    /**
+     * Do logic operation "||" left operand
+     */
+
+    public void onJoinLeft(final Token<?> lookhead) {
+        loadEnv();
+        visitLeftBranch(lookhead, IFNE, OperatorType.OR);
+    }
+
+
+    private void visitLeftBranch(final Token<?> lookhead, final int ints, final OperatorType opType) {
+        this.popOperand();
+    }
+
+
+    public void onEq(final Token<?> lookhead) {
+        doCompareAndJump(lookhead, IFNE, OperatorType.EQ);
+    }
+
+
+    public void onNeq(final Token<?> lookhead) {
+        doCompareAndJump(lookhead, IFEQ, OperatorType.NEQ);
+    }
+
+
+    private void doCompareAndJump(final Token<?> lookhead, final int ints,
+                                  final OperatorType opType) {
+        visitLineNumber(lookhead);
+        loadEnv();
+        visitCompare(ints, opType);
+    }
+
+
+    private boolean isEqNe(final int ints) {
+        return ints == IFEQ || ints == IFNE;
+    }
+
+    private void visitCompare(final int ints, final OperatorType opType) {
+        if (this.invokedynamicOperators) {
+            this.mv.visitInvokeDynamicInsn(opType.name(), OPERATOR_INDY_DESC, OPERATOR_BOOTSTRAP);
+            return;
+        }
+        loadOpType(opType);
+        this.mv.visitMethodInsn(INVOKESTATIC, OR_OWNER,
+                "eval",
+                OT_EVAL_METHOD_DESC);
+        this.popOperand();
+
+    }
+
+
+    public void onGe(final Token<?> lookhead) {
+        doCompareAndJump(lookhead, IFLT, OperatorType.GE);
+    }
+
+
+    public void onGt(final Token<?> lookhead) {
+        doCompareAndJump(lookhead, IFLE, OperatorType.GT);
+    }
+
+
+    public void onLe(final Token<?> lookhead) {
+        doCompareAndJump(lookhead, IFGT, OperatorType.LE);
+
+    }
+
+
+    public void onLt(final Token<?> lookhead) {
+        doCompareAndJump(lookhead, IFGE, OperatorType.LT);
+    }
+
+    private void pushOperand(final int delta) {
+        this.operandsCount += delta;
+        setMaxStacks(this.operandsCount);
+    }
+
+
+    /**
+     * Logic operation '!'
+     */
+
+    public void onNot(final Token<?> lookhead) {
+        visitUnaryOperator(lookhead, OperatorType.NOT, "not");
+    }
+
+    private void visitBinOperator(final Token<?> token, final OperatorType opType,
+                                  final String methodName) {
+        visitLineNumber(token);
+        loadEnv();
+        if (this.invokedynamicOperators && isArithmetic(opType)) {
+            this.mv.visitInvokeDynamicInsn(opType.name(), OPERATOR_INDY_DESC, OPERATOR_BOOTSTRAP);
+            return;
+        }
+        this.mv.visitMethodInsn(INVOKEVIRTUAL, OBJECT_OWNER, methodName,
+                OBJECT_OPERATION_METHOD_DESC);
+    }
+
+    private static boolean isArithmetic(final OperatorType opType) {
+        return opType == OperatorType.ADD || opType == OperatorType.SUB || opType == OperatorType.MULT
+                || opType == OperatorType.DIV || opType == OperatorType.MOD;
+    }
+
+    private void visitLineNumber(final Token<?> token) {
+        if (token != null && token.getLineNo() > 0) {
+            this.mv.visitLineNumber(token.getLineNo(), this.currentLabel);
+        }
+    }
+
+    private void visitUnaryOperator(final Token<?> lookhead, final OperatorType opType,
+                                    final String methodName) {
+        visitLineNumber(lookhead);
+        this.mv.visitTypeInsn(CHECKCAST, OBJECT_OWNER);
+        loadEnv();
+        this.popOperand();
+    }
+
+    public void onNeg(final Token<?> lookhead) {
+        visitUnaryOperator(lookhead, OperatorType.NEG, "neg");
+    }
+
+    protected void loadEnv() {
+        this.mv.visitVarInsn(ALOAD, 1);
+        this.pushOperand();
+    }
+
+    private void setMaxStacks(final int newMaxStacks) {
+        if (newMaxStacks > this.maxStacks) {
+            this.maxStacks = newMaxStacks;
+        }
+    }
+
+    public void onMethodInvoke(final Token<?> lookhead) {
+
+//        loadEnv();
+        visitLineNumber(lookhead);
+
+        final MetricUnitRealCodeGenerator.MethodMetaData methodMetaData = this.methodMetaDataStack.pop();
+        final int parameterCount = methodMetaData.parameterCount;
+        this.mv.visitMethodInsn(INVOKEINTERFACE, FCUNTION_OWNER,
+                "call", getInvokeMethodDesc(parameterCount));
+        this.mv.visitMethodInsn(INVOKESTATIC, RU_OWNER, "assertNotNull",
+                RU_OWNER_GETFUNCTION_DESC);
+
+        this.popOperand(); // method object
+        this.popOperand(); // env map
+        this.popOperand(parameterCount);
+        this.pushOperand();
+    }
+
+    public void onIn(Token<?> lookhead) {
+        visitBinOperator(lookhead, OperatorType.IN, "in");
+    }
+
+    public void onUnion(Token<?> lookhead) {
+        visitBinOperator(lookhead, OperatorType.UNION, "union");
+    }
+
+    public void onDefaultOperation(Token<?> lookhead) {
+        visitBinOperator(lookhead, OperatorType.DEFAULTOPERATION, "defaultOperation");
+    }
+
+    public void onMethodName(final Token<?> lookhead,boolean isLoad) {
+        String outtterMethodName = lookhead.getLexeme();
+        if(isLoad) {
+            String innerMethodName = this.innerMethodMap.get(outtterMethodName);
+            Preconditions.checkNotNull(innerMethodName, outtterMethodName + " is not init");
+            if (innerMethodName != null) {
+                loadFunction(outtterMethodName, innerMethodName);
+            }
+        }else{
+            if(this instanceof MetricUnitRealCodeGenerator) {
+//                mv.visitVarInsn(ALOAD, 0);
+//                mv.visitFieldInsn(GETFIELD, Type.getInternalName(BaseExpression.class), "instance",
+//                        EXECUTOR_DESC);
+//                this.mv.visitLdcInsn(outtterMethodName);
+////            mv.visitLdcInsn("[]");
+//                mv.visitMethodInsn(INVOKEVIRTUAL, EXECUTOR_OWNER,
+//                        "getFunction",
+//                        GET_FUNCTION_DESC);
+                this.mv.visitLdcInsn(outtterMethodName);
+                this.mv.visitMethodInsn(INVOKESTATIC, RU_OWNER, "getFunction",
+                        "(Ljava/lang/String;)"+ Type.getDescriptor(SFunction.class));
+            }
+
+
+
+//            mv.visitTypeInsn(Opcodes.NEW, Type.getInternalName(ListFunction.class));
+//            mv.visitInsn(Opcodes.DUP);
+//            mv.visitMethodInsn(Opcodes.INVOKESPECIAL, Type.getInternalName(ListFunction.class), "<init>", "()V");
+        }
+        loadEnv();
+        this.methodMetaDataStack.push(new MetricUnitRealCodeGenerator.MethodMetaData(lookhead, outtterMethodName));
+    }
+
+    private void loadFunction(final String outterMethodName, final String innerMethodName) {
+        Map<String, Integer> name2Index = this.labelNameIndexMap.get(this.currentLabel);
+        // Is it stored in local?
+        if (name2Index != null && name2Index.containsKey(innerMethodName)) {
+            int localIndex = name2Index.get(innerMethodName);
+            this.mv.visitVarInsn(ALOAD, localIndex);
+            this.pushOperand();
+        } else {
+            this.mv.visitVarInsn(ALOAD, 0);
+            this.mv.visitFieldInsn(GETFIELD, this.className, innerMethodName,
+                    FUNCTION_DESC);
+            this.pushOperand();
+        }
+    }
+
+    public void onMethodParameter(final Token<?> lookhead) {
+        visitLineNumber(lookhead);
+        MetricUnitRealCodeGenerator.MethodMetaData currentMethodMetaData = this.methodMetaDataStack.peek();
+        currentMethodMetaData.parameterCount++;
+    }
+
+    protected void onConstant(final Token<?> lookhead, final boolean isLoad) {
+        if (lookhead == null) {
+            return;
+        }
+        visitLineNumber(lookhead);
+        switch (lookhead.getType()) {
+            case Number:
+                if (loadConstant(lookhead, isLoad)) {
+                    return;
+                }
+                NumberToken numberToken = (NumberToken) lookhead;
+                Number number = numberToken.getNumber();
+
+                if (TypeUtils.isBigInt(number)) {
+                    this.mv.visitLdcInsn(numberToken.getLexeme());
+                    this.mv.visitMethodInsn(INVOKESTATIC, BIGINT_OWNER,
+                            "valueOf", BIGINT_VALUEOF_DESC);
+                } else if (TypeUtils.isDecimal(number)) {
+                    loadEnv();
+                    this.mv.visitLdcInsn(numberToken.getLexeme());
+                    this.mv.visitMethodInsn(INVOKESTATIC,
+                            DECIMAL_OWNER, "valueOf", DECIMAL_VALUEOF_DESC);
+                } else if (TypeUtils.isDouble(number)) {
+                    this.mv.visitLdcInsn(number);
+                    this.mv.visitMethodInsn(INVOKESTATIC, DOUBLE_OWNER,
+                            "valueOf", DOUBLE_VALUEOF_DESC);
+                } else {
+                    this.mv.visitLdcInsn(number);
+                    this.mv.visitMethodInsn(INVOKESTATIC, LONG_OWNER,
+                            "valueOf", LONG_VALUEOF_DESC);
+                }
+                break;
+            case String:
+                if (loadConstant(lookhead, isLoad)) {
+                    return;
+                }
+                this.mv.visitTypeInsn(NEW, STRING_OWNER);
+                this.mv.visitInsn(DUP);
+                this.mv.visitLdcInsn(lookhead.getJavaValue(null));
+                this.mv.visitMethodInsn(INVOKESPECIAL, STRING_OWNER,
+                        CONSTRUCTOR_METHOD_NAME, "(Ljava/lang/String;)V");
+                break;
+            case Variable:
+                if (loadConstant(lookhead, isLoad)) {
+                    return;
+                }
+                VariableToken variableToken = (VariableToken) lookhead;
+
+                if (variableToken.equals(VariableToken.TRUE)) {
+                    this.mv.visitFieldInsn(GETSTATIC, BOOLEAN_OWNER,
+                            "TRUE", BOOLEAN_DESC);
+                } else if (variableToken.equals(VariableToken.FALSE)) {
+                    this.mv.visitFieldInsn(GETSTATIC, BOOLEAN_OWNER,
+                            "FALSE", BOOLEAN_DESC);
+                } else if (variableToken.equals(VariableToken.NULL)) {
+                    this.mv.visitFieldInsn(GETSTATIC, NIL_OWNER, "NULL",
+                            NIL_DESC);
+                } else {
+                    if (isLoad) {
+                        if (ParserUtils.isMetricToken(variableToken)) {
+                            String outterVarName = variableToken.getLexeme();
+                            String innerVarName = this.innerMetricVars.get(outterVarName);
+                            this.mv.visitVarInsn(ALOAD, 0);
+                            this.mv.visitFieldInsn(GETFIELD, this.className, innerVarName,
+                                    SMERTRIC_DESC);
+                        } else {
+                            String outterVarName = variableToken.getLexeme();
+                            String innerVarName = this.innerVars.get(outterVarName);
+                            this.mv.visitVarInsn(ALOAD, 0);
+                            this.mv.visitFieldInsn(GETFIELD, this.className, innerVarName,
+                                    JAVATYPE_DESC);
+                        }
+                    } else {
+                        String outterVarName = variableToken.getLexeme();
+
+                        this.mv.visitTypeInsn(NEW, JAVATYPE_OWNER);
+                        this.mv.visitInsn(DUP);
+                        this.mv.visitLdcInsn(outterVarName);
+                        this.mv.visitMethodInsn(INVOKESPECIAL, JAVATYPE_OWNER, CONSTRUCTOR_METHOD_NAME,
+                                "(" + Type.getDescriptor(String.class) + ")V");
+                    }
+                }
+                break;
+        }
+    }
+
+    private void onFoldedConstant(final ConstantToken token) {
+        visitLineNumber(token);
+        this.mv.visitVarInsn(ALOAD, 0);
+        this.mv.visitFieldInsn(GETFIELD, this.className, this.foldedConstantPool.get(token), OBJECT_DESC);
+        this.pushOperand();
+    }
+
+    private boolean loadConstant(final Token<?> lookhead, final boolean isLoad) {
+        String fieldName;
+        if (isLoad && (fieldName = this.constantPool.get(lookhead)) != null) {
+            this.mv.visitVarInsn(ALOAD, 0);
+            this.mv.visitFieldInsn(GETFIELD, this.className, fieldName, OBJECT_DESC);
+            this.pushOperand();
+            return true;
+        }
+        return false;
+    }
+
+    protected void pushOperand() {
+        this.pushOperand(1);
+    }
+
+    private static String getInvokeMethodDesc(final int paramCount) {
+        StringBuilder sb = new StringBuilder("(Ljava/util/Map;");
+        if (paramCount <= 20) {
+            for (int i = 0; i < paramCount; i++) {
+                sb.append(OBJECT_DESC);
+            }
+        } else {
+            for (int i = 0; i < 20; i++) {
+                sb.append(OBJECT_DESC);
+            }
+            // variadic params as an array
+            sb.append(OBJECT_LIST_DESC);
+        }
+        sb.append(")");
+        sb.append(OBJECT_DESC);
+        return sb.toString();
+    }
+
+    protected void endVisitClass() {
+        this.classWriter.visitEnd();
+    }
+
+    public static class MethodMetaData {
+        public int parameterCount = 0;
+
+        public int variadicListIndex = -1;
+
+        public final Token<?> token;
+
+        public final String methodName;
+
+        public int funcId = -1;
+
+
+        public MethodMetaData(final Token<?> token, final String methodName) {
+            super();
+            this.token = token;
+            this.methodName = methodName;
+        }
+    }
+
+    public abstract T getResult();
+}
@@ -24,22 +24,31 @@ public class AggInnerRealCodeGenerator<T> extends AbstractRealCodeGenerator<T> i
 
     public AggInnerRealCodeGenerator(final SoloscanExecutor instance, final SoloscanClassloader classLoader, final Class<T> type) {
         super(instance, classLoader, type);
-        this.className = "So_AggInner_" + System.currentTimeMillis() + "_" + CLASS_COUNTER.getAndIncrement();
+        this.className = ClassDefiner.getClassNamePrefix() + "So_AggInner_" + System.currentTimeMillis() + "_" + CLASS_COUNTER.getAndIncrement();
         this.classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
         classWriter.visit(Opcodes.V1_7, ACC_PUBLIC,
-                className, null, "java/lang/Object", new String[]{FILTER_INTERFACE});
+                className, null, "java/lang/Object", new String[]{FILTER_INTERFACE, TERMS_INTERFACE});
         classWriter.visitSource(className, null);
     }
 
     @Override
     public T getResult() {
+        foldConstants(this.filterTokenContainer.tokenList);
+        foldConstants(this.merticsTokenContainer.tokenList);
+        splitFilterTerms(this.filterTokenContainer.tokenList);
+        if (this.filterTerms == null) {
+            specializeTypes(this.filterTokenContainer.tokenList);
+        }
+        specializeTypes(this.merticsTokenContainer.tokenList);
+        addTokens(this.merticsTokenContainer);
         initConstants();
         initVariables();
         initMethods();
         constructor();
         startVisitMethodCode();
-        methodBody(this.filterTokenContainer.tokenList);
+        visitFilterBody(this.filterTokenContainer.tokenList, true);
         endVisitMethodCode();
+        visitFilterTermMethods(true);
         visitGetColumnValueMethodCode();
         endVisitClass();
 
@@ -50,7 +59,7 @@ public class AggInnerRealCodeGenerator<T> extends AbstractRealCodeGenerator<T> i
 
         try {
             Class<?> defineClass =
-                    ClassDefiner.defineClass(this.className, type, bytes, this.classLoader);
+                    defineClass(bytes);
             Constructor<?> constructor =
                     defineClass.getConstructor(SoloscanExecutor.class, SymbolTable.class, String.class);
             AggInner aggInner = (AggInner) constructor.newInstance(this.instance
@@ -69,9 +78,8 @@ public class AggInnerRealCodeGenerator<T> extends AbstractRealCodeGenerator<T> i
 
     private void constructor() {
 
-        this.mv = this.classWriter.visitMethod(ACC_PUBLIC, CONSTRUCTOR_METHOD_NAME,
-                CONSTRUCTOR_DESC,
-                null, null);
+        this.mv = visitMethod(ACC_PUBLIC, CONSTRUCTOR_METHOD_NAME,
+                CONSTRUCTOR_DESC, null);
         this.mv.visitCode();
         this.mv.visitVarInsn(ALOAD, 0);
         this.mv.visitMethodInsn(INVOKESPECIAL, Type.getInternalName(Object.class), CONSTRUCTOR_METHOD_NAME, "()V");
@@ -116,6 +124,8 @@ public class AggInnerRealCodeGenerator<T> extends AbstractRealCodeGenerator<T> i
             }
         }
 
+        initFoldedConstants();
+        initAdaptivePredicate();
         this.mv.visitInsn(RETURN);
         this.mv.visitMaxs(0, 0);
         this.mv.visitEnd();
@@ -124,27 +134,22 @@ public class AggInnerRealCodeGenerator<T> extends AbstractRealCodeGenerator<T> i
 
     private void startVisitMethodCode() {
 
-        this.mv = classWriter.visitMethod(ACC_PUBLIC + +ACC_FINAL, CHECK_METHOD_NAME,
+        this.mv = visitMethod(ACC_PUBLIC + +ACC_FINAL, CHECK_METHOD_NAME,
                 FILTER_METHOD_DESC,
-                FILTER_METHOD_DESC, null);
+                FILTER_METHOD_DESC);
         this.mv.visitCode();
     }
 
     private void endVisitMethodCode() {
-        loadEnv();
-        this.mv.visitMethodInsn(INVOKEVIRTUAL, OBJECT_OWNER, "getValue",
-                "(Ljava/util/Map;)Ljava/lang/Object;");
-        this.mv.visitMethodInsn(INVOKESTATIC, RU_OWNER, "covertBoolean",
-                "(Ljava/lang/Object;)Z");
         this.mv.visitInsn(IRETURN);
         this.mv.visitMaxs(this.maxStacks, this.maxLocals);
         this.mv.visitEnd();
     }
 
     private void visitGetColumnValueMethodCode() {
-        this.mv = classWriter.visitMethod(ACC_PUBLIC + +ACC_FINAL, GETCOLUMNVALUE_METHOD_NAME,
+        this.mv = visitMethod(ACC_PUBLIC + +ACC_FINAL, GETCOLUMNVALUE_METHOD_NAME,
                 GETCOLUMNVALUE_METHOD_DESC,
-                GETCOLUMNVALUE_METHOD_DESC, null);
+                GETCOLUMNVALUE_METHOD_DESC);
         this.mv.visitCode();
         if (this.merticsTokenContainer.tokenList.size() > 0) {
             methodBody(this.merticsTokenContainer.tokenList);
@@ -0,0 +1,143 @@
+package org.soloquest.soloscan.compiler.codegen;
+
+import lombok.extern.slf4j.Slf4j;
+import org.soloquest.soloscan.SoloscanOptions;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Defines the generated classes. In order of preference it uses {@code Lookup.defineHiddenClass} (JDK 15+),
+ * {@code Unsafe.defineAnonymousClass} (JDK 8) and at last the {@link SoloscanClassloader} of the compilation.
+ * None of them pins the classes into a long-lived loader, so they are unloaded once the expression is dropped.
+ */
+@Slf4j
+public class ClassDefiner {
+    private static final Object[] EMPTY_OBJS = new Object[]{};
+    private static MethodHandle DEFINE_CLASS_HANDLE;
+    private static MethodHandle DEFINE_HIDDEN_CLASS_HANDLE;
+    private static Object EMPTY_CLASS_OPTIONS;
+
+    private static final String HIDDEN_CLASS_PACKAGE = ClassDefiner.class.getPackage().getName().replace('.', '/') + "/";
+
+    private static final AtomicLong DEFINED_COUNT = new AtomicLong();
+    private static final AtomicLong UNLOADED_COUNT = new AtomicLong();
+    private static final ReferenceQueue<Class<?>> UNLOADED_QUEUE = new ReferenceQueue<>();
+    private static final Set<Reference<Class<?>>> DEFINED_CLASSES = ConcurrentHashMap.newKeySet();
+
+    static {
+        try {
+            Class<?> optionClass = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+            EMPTY_CLASS_OPTIONS = Array.newInstance(optionClass, 0);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            DEFINE_HIDDEN_CLASS_HANDLE = lookup.findVirtual(MethodHandles.Lookup.class, "defineHiddenClass",
+                    methodType(MethodHandles.Lookup.class, byte[].class, boolean.class, EMPTY_CLASS_OPTIONS.getClass()))
+                    .bindTo(lookup);
+        } catch (Throwable e) {
+            log.info("defineHiddenClass is not supported, {}", e.toString());
+        }
+        // since JDK 9 an anonymous class in the unnamed package is moved into the package of its host class,
+        // and then it can not resolve its own name, so only JDK 8 uses it
+        if (DEFINE_HIDDEN_CLASS_HANDLE == null && System.getProperty("java.specification.version", "").startsWith("1.")) {
+            try {
+                Class<?> clazz = Class.forName("sun.misc.Unsafe");
+                Field f = clazz.getDeclaredField("theUnsafe");
+                f.setAccessible(true);
+                Object unsafe = f.get(null);
+                MethodHandle methodHandle =
+                        MethodHandles.lookup().findVirtual(clazz, "defineAnonymousClass",
+                                methodType(Class.class, Class.class, byte[].class, Object[].class));
+
+                if (methodHandle != null) {
+                    methodHandle = methodHandle.bindTo(unsafe);
+                }
+                DEFINE_CLASS_HANDLE = methodHandle;
+            } catch (Throwable e) {
+                log.warn("Failed to get methodhandle", e);
+            }
+        }
+    }
+
+    private static boolean userMethodHandle = SoloscanOptions.getOption(SoloscanOptions.USE_METHODHANDLE);
+
+    /**
+     * Hidden classes must live in the package of the lookup class, so the generated class names get this prefix.
+     */
+    public static String getClassNamePrefix() {
+        if (userMethodHandle && DEFINE_HIDDEN_CLASS_HANDLE != null) {
+            return HIDDEN_CLASS_PACKAGE;
+        }
+        return "";
+    }
+
+    public static final Class<?> defineClass(final String className, final Class<?> clazz,
+                                             final byte[] bytes, final SoloscanClassloader classLoader) throws Throwable {
+        Class<?> definedClass;
+        if (userMethodHandle && DEFINE_HIDDEN_CLASS_HANDLE != null) {
+            MethodHandles.Lookup lookup = (MethodHandles.Lookup) DEFINE_HIDDEN_CLASS_HANDLE.invoke(bytes, true, EMPTY_CLASS_OPTIONS);
+            definedClass = lookup.lookupClass();
+        } else if (userMethodHandle && DEFINE_CLASS_HANDLE != null) {
+            definedClass = (Class<?>) DEFINE_CLASS_HANDLE.invokeExact(clazz, bytes, EMPTY_OBJS);
+        } else {
+            definedClass = defineClassByClassLoader(className, bytes, classLoader);
+        }
+        onClassDefined(definedClass, className, bytes, classLoader);
+        return definedClass;
+    }
+
+    public static Class<?> defineClassByClassLoader(final String className, final byte[] bytes,
+                                                    final SoloscanClassloader classLoader) {
+        return classLoader.defineClass(className.replace('/', '.'), bytes);
+    }
+
+    private static void onClassDefined(Class<?> definedClass, String className, byte[] bytes, SoloscanClassloader classLoader) {
+        expungeUnloadedClasses();
+        DEFINED_COUNT.incrementAndGet();
+        DEFINED_CLASSES.add(new WeakReference<>(definedClass, UNLOADED_QUEUE));
+        if (classLoader != null) {
+            classLoader.onClassDefined(definedClass, className, bytes);
+        }
+    }
+
+    private static void expungeUnloadedClasses() {
+        Reference<? extends Class<?>> reference;
+        while ((reference = UNLOADED_QUEUE.poll()) != null) {
+            if (DEFINED_CLASSES.remove(reference)) {
+                UNLOADED_COUNT.incrementAndGet();
+            }
+        }
+    }
+
+    public static long getDefinedClassCount() {
+        return DEFINED_COUNT.get();
+    }
+
+    public static long getUnloadedClassCount() {
+        expungeUnloadedClasses();
+        return UNLOADED_COUNT.get();
+    }
+
+    public static long getLiveClassCount() {
+        expungeUnloadedClasses();
+        return DEFINED_COUNT.get() - UNLOADED_COUNT.get();
+    }
+
+    public static String getDefineMode() {
+        if (userMethodHandle && DEFINE_HIDDEN_CLASS_HANDLE != null) {
+            return "hidden_class";
+        } else if (userMethodHandle && DEFINE_CLASS_HANDLE != null) {
+            return "anonymous_class";
+        }
+        return "class_loader";
+    }
+}
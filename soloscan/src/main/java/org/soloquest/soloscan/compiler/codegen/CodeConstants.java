@@ -1,14 +1,20 @@
 package org.soloquest.soloscan.compiler.codegen;
 
+import org.soloquest.soloscan.AggregationState;
 import org.soloquest.soloscan.BaseMetricUnitExpression;
 import org.soloquest.soloscan.BaseSoloExpression;
+import org.soloquest.soloscan.GroupKey;
 import org.soloquest.soloscan.SoloscanExecutor;
+import org.soloquest.soloscan.compiler.asm.Handle;
+import org.soloquest.soloscan.compiler.asm.Opcodes;
 import org.soloquest.soloscan.compiler.asm.Type;
 import org.soloquest.soloscan.compiler.lexer.SymbolTable;
 import org.soloquest.soloscan.compiler.lexer.token.OperatorType;
+import org.soloquest.soloscan.runtime.aggfunction.AggFunction;
 import org.soloquest.soloscan.runtime.aggfunction.AggInner;
 import org.soloquest.soloscan.runtime.lang.*;
 import org.soloquest.soloscan.utils.Env;
+import org.soloquest.soloscan.utils.TypeUtils;
 
 import java.util.Map;
 
@@ -70,6 +76,10 @@ public interface CodeConstants {
 
     String BOOLEAN_OWNER = Type.getInternalName(SBoolean.class);
     String BOOLEAN_DESC = Type.getDescriptor(SBoolean.class);
+    String BOOLEAN_VALUEOF_DESC = "(Z)" + BOOLEAN_DESC;
+
+    String NUMBERS_OWNER = Type.getInternalName(Numbers.class);
+    String TYPE_UTILS_OWNER = Type.getInternalName(TypeUtils.class);
 
     String NIL_OWNER = Type.getInternalName(SNull.class);
     String NIL_DESC = Type.getDescriptor(SNull.class);
@@ -77,6 +87,16 @@ public interface CodeConstants {
     String EXECUTE_METHOD_NAME = "execute0";
     String EXECUTE_DESC = "(L" + Env.class.getCanonicalName().replaceAll("\\.", "/") + ";)Ljava/lang/Object;";
 
+    String OUTLINE_METHOD_NAME = "outline";
+    String OUTLINE_METHOD_DESC = "(" + ENV_DESC + ")" + OBJECT_DESC;
+    /**
+     * aload_0, aload_1 and invokevirtual
+     */
+    int OUTLINE_CALL_SIZE = 5;
+    String OPERATOR_CALL_SITE_OWNER = Type.getInternalName(OperatorCallSite.class);
+    String OPERATOR_INDY_DESC = OperatorCallSite.TYPE.toMethodDescriptorString();
+    Handle OPERATOR_BOOTSTRAP = new Handle(Opcodes.H_INVOKESTATIC, OPERATOR_CALL_SITE_OWNER, "bootstrap",
+            "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;)Ljava/lang/invoke/CallSite;");
     String OR_OWNER = OperationRuntime.class.getCanonicalName().replaceAll("\\.", "/");
 
     String OT_OWNER = Type.getInternalName(OperatorType.class);
@@ -102,7 +122,19 @@ public interface CodeConstants {
 
 
     String GROUPING_METHOD_NAME = "grouping";
-    String GROUPING_METHOD_DESC = "(" + ENV_DESC + ")" + Type.getDescriptor(String.class);
+    String GROUPING_METHOD_DESC = "(" + ENV_DESC + Type.getDescriptor(GroupKey.class) + ")V";
+    String GROUP_KEY_OWNER = Type.getInternalName(GroupKey.class);
+
+    String PROCESS_ROW_METHOD_NAME = "processRow";
+    String AGGREGATION_STATE_OWNER = Type.getInternalName(AggregationState.class);
+    String PROCESS_ROW_METHOD_DESC = "(" + ENV_DESC + Type.getDescriptor(AggregationState.class) + ")Z";
+    String AGG_FUNCTION_OWNER = Type.getInternalName(AggFunction.class);
+
+    String TERMS_INTERFACE = Type.getInternalName(AdaptivePredicate.Terms.class);
+    String ADAPTIVE_PREDICATE_OWNER = Type.getInternalName(AdaptivePredicate.class);
+    String ADAPTIVE_PREDICATE_DESC = Type.getDescriptor(AdaptivePredicate.class);
+    String FILTER_TERM_METHOD_NAME = "filterTerm";
+    String FILTER_TERM_METHOD_DESC = "(I" + ENV_DESC + ")Z";
 
     String FILTER_METHOD_NAME = "filter";
     String FILTER_METHOD_DESC = "(" + ENV_DESC + ")" + Type.getDescriptor(boolean.class);
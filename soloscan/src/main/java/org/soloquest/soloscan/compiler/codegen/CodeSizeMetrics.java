@@ -0,0 +1,81 @@
+package org.soloquest.soloscan.compiler.codegen;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The bytecode size of the methods of a generated class, measured while it is generated. HotSpot does not compile
+ * a method larger than 8000 bytes ({@code -XX:HugeMethodLimit}), so the generators outline the subexpressions of a
+ * larger method body into private methods, see {@code method.split.threshold}.
+ * <p>
+ * The metrics are kept as long as the class is loaded; a class loaded from the persistent cache or a precompiled
+ * catalog has none.
+ */
+public final class CodeSizeMetrics {
+
+    /**
+     * The size from which HotSpot interprets a method forever.
+     */
+    public static final int HUGE_METHOD_LIMIT = 8000;
+
+    private static final Map<Class<?>, CodeSizeMetrics> METRICS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final String className;
+    private final Map<String, Integer> methodSizes;
+    private final int outlinedMethodCount;
+
+    CodeSizeMetrics(String className, Map<String, Integer> methodSizes, int outlinedMethodCount) {
+        this.className = className;
+        this.methodSizes = Collections.unmodifiableMap(new LinkedHashMap<>(methodSizes));
+        this.outlinedMethodCount = outlinedMethodCount;
+    }
+
+    static void register(Class<?> clazz, CodeSizeMetrics metrics) {
+        METRICS.put(clazz, metrics);
+    }
+
+    /**
+     * @return the metrics of the class of a generated expression, metric unit or aggregate function inner, null if
+     * its class was not generated in this JVM
+     */
+    public static CodeSizeMetrics of(Object generated) {
+        return METRICS.get(generated instanceof Class ? (Class<?>) generated : generated.getClass());
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * @return the maximum bytecode size of every method, by method name
+     */
+    public Map<String, Integer> getMethodSizes() {
+        return methodSizes;
+    }
+
+    public int getLargestMethodSize() {
+        return methodSizes.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+    }
+
+    public int getTotalSize() {
+        return methodSizes.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    /**
+     * @return the number of private methods the subexpressions of huge methods are outlined into
+     */
+    public int getOutlinedMethodCount() {
+        return outlinedMethodCount;
+    }
+
+    @Override
+    public String toString() {
+        return "CodeSizeMetrics{" +
+                "className='" + className + '\'' +
+                ", methodSizes=" + methodSizes +
+                ", outlinedMethodCount=" + outlinedMethodCount +
+                '}';
+    }
+}
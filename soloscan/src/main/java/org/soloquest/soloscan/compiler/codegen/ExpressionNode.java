@@ -0,0 +1,100 @@
+package org.soloquest.soloscan.compiler.codegen;
+
+import org.soloquest.soloscan.compiler.lexer.token.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A subexpression of a token list in reverse polish notation: the range of its tokens, which evaluates it completely,
+ * and its operands. A function call is a node with {@link OperatorType#FUNC} whose operands are the arguments.
+ */
+final class ExpressionNode {
+
+    final int start;
+    final int end;
+    final OperatorType operatorType;
+    final List<ExpressionNode> operands;
+    private boolean functionMark;
+
+    private ExpressionNode(final int start, final int end, final OperatorType operatorType, final List<ExpressionNode> operands) {
+        this.start = start;
+        this.end = end;
+        this.operatorType = operatorType;
+        this.operands = operands;
+    }
+
+    /**
+     * @return the root of the token list, null if it is not a single well formed expression
+     */
+    static ExpressionNode parse(final List<Token<?>> tokenList) {
+        Deque<ExpressionNode> stack = new ArrayDeque<>();
+        for (int i = 0; i < tokenList.size(); i++) {
+            Token<?> token = tokenList.get(i);
+            switch (token.getType()) {
+                case Number:
+                case Variable:
+                case String:
+                case Char:
+                case Constant:
+                case Typed:
+                    stack.push(new ExpressionNode(i, i, null, Collections.emptyList()));
+                    break;
+                case Delegate:
+                    if (((DelegateToken) token).getDelegateTokenType() == DelegateToken.DelegateTokenType.Method_Name) {
+                        ExpressionNode mark = new ExpressionNode(i, i, null, Collections.emptyList());
+                        mark.functionMark = true;
+                        stack.push(mark);
+                    }
+                    break;
+                case Operator:
+                    ExpressionNode node = ((OperatorToken) token).getOperatorType() == OperatorType.FUNC
+                            ? popFunction(stack, i) : popOperator(stack, (OperatorToken) token, i);
+                    if (node == null) {
+                        return null;
+                    }
+                    stack.push(node);
+                    break;
+                default:
+                    return null;
+            }
+        }
+        if (stack.size() != 1 || stack.peek().functionMark) {
+            return null;
+        }
+        return stack.pop();
+    }
+
+    private static ExpressionNode popFunction(final Deque<ExpressionNode> stack, final int end) {
+        List<ExpressionNode> arguments = new ArrayList<>();
+        while (!stack.isEmpty()) {
+            ExpressionNode node = stack.pop();
+            if (node.functionMark) {
+                Collections.reverse(arguments);
+                return new ExpressionNode(node.start, end, OperatorType.FUNC, arguments);
+            }
+            arguments.add(node);
+        }
+        return null;
+    }
+
+    private static ExpressionNode popOperator(final Deque<ExpressionNode> stack, final OperatorToken token, final int end) {
+        OperatorType operatorType = token.getOperatorType();
+        int arity = operatorType.arity;
+        if (stack.size() < arity) {
+            return null;
+        }
+        List<ExpressionNode> operands = new ArrayList<>(arity);
+        for (int i = 0; i < arity; i++) {
+            ExpressionNode operand = stack.pop();
+            if (operand.functionMark) {
+                return null;
+            }
+            operands.add(0, operand);
+        }
+        return new ExpressionNode(operands.get(0).start, end, operatorType, operands);
+    }
+}
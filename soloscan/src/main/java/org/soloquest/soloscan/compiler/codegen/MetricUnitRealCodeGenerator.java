@@ -2,7 +2,9 @@ package org.soloquest.soloscan.compiler.codegen;
 
 
 import lombok.extern.slf4j.Slf4j;
+import org.soloquest.soloscan.AggFunctionUnit;
 import org.soloquest.soloscan.BaseMetricUnitExpression;
+import org.soloquest.soloscan.GroupKey;
 import org.soloquest.soloscan.SoloscanExecutor;
 import org.soloquest.soloscan.SoloscanOptions;
 import org.soloquest.soloscan.compiler.asm.ClassWriter;
@@ -14,9 +16,12 @@ import org.soloquest.soloscan.compiler.lexer.token.Token;
 import org.soloquest.soloscan.compiler.lexer.token.VariableToken;
 import org.soloquest.soloscan.exception.ExpressionCompileException;
 import org.soloquest.soloscan.exception.ExpressionExecuteException;
+import org.soloquest.soloscan.runtime.aggfunction.AggFunction;
+import org.soloquest.soloscan.runtime.aggfunction.AggInner;
 import org.soloquest.soloscan.utils.MiscUtils;
 
 import java.lang.reflect.Constructor;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -25,20 +30,35 @@ import static org.soloquest.soloscan.compiler.asm.Opcodes.*;
 @Slf4j
 public class MetricUnitRealCodeGenerator<T> extends AbstractRealCodeGenerator<T> implements CodeConstants {
 
+    private List<AggFunctionUnit> aggFunctionUnits = Collections.emptyList();
 
     public MetricUnitRealCodeGenerator(final SoloscanExecutor instance,
                                        final SoloscanClassloader classLoader, final Class<T> type) {
         super(instance, classLoader, type);
-        this.className = "So_Mu_" + System.currentTimeMillis() + "_" + CLASS_COUNTER.getAndIncrement();
+        this.className = ClassDefiner.getClassNamePrefix() + "So_Mu_" + System.currentTimeMillis() + "_" + CLASS_COUNTER.getAndIncrement();
         this.classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
         this.classWriter.visit(Opcodes.V1_7, ACC_PUBLIC + ACC_SUPER,
-                this.className, null, MU_SUPER_CLASSNAME, null);
+                this.className, null, MU_SUPER_CLASSNAME, new String[]{TERMS_INTERFACE});
 
 
     }
 
+    /**
+     * @param aggFunctionUnits the aggregate functions of the metric unit, they are compiled while it is parsed
+     */
+    public void setAggFunctionUnits(List<AggFunctionUnit> aggFunctionUnits) {
+        this.aggFunctionUnits = aggFunctionUnits;
+    }
+
     @Override
     public T getResult() {
+        foldConstants(this.tokenList);
+        foldConstants(this.filterTokenContainer.tokenList);
+        splitFilterTerms(this.filterTokenContainer.tokenList);
+        if (this.filterTerms == null) {
+            specializeTypes(this.filterTokenContainer.tokenList);
+        }
+        addTokens(this.filterTokenContainer);
         initConstants();
         initVariables();
         initMetricVariables();
@@ -53,6 +73,10 @@ public class MetricUnitRealCodeGenerator<T> extends AbstractRealCodeGenerator<T>
 
         visitFilterMethod();
 
+        if (SoloscanOptions.getOption(SoloscanOptions.FUSED_SCAN)) {
+            visitProcessRowMethod();
+        }
+
         endVisitClass();
         byte[] bytes = this.classWriter.toByteArray();
         if (SoloscanOptions.getOption(SoloscanOptions.GENERATE_CLASS)) {
@@ -61,7 +85,7 @@ public class MetricUnitRealCodeGenerator<T> extends AbstractRealCodeGenerator<T>
 
         try {
             Class<?> defineClass =
-                    ClassDefiner.defineClass(this.className, type, bytes, this.classLoader);
+                    defineClass(bytes);
             Constructor<?> constructor =
                     defineClass.getConstructor(SoloscanExecutor.class, SymbolTable.class, String.class);
             BaseMetricUnitExpression exp = (BaseMetricUnitExpression) constructor.newInstance(this.instance
@@ -78,9 +102,9 @@ public class MetricUnitRealCodeGenerator<T> extends AbstractRealCodeGenerator<T>
     }
 
     private void startVisitMethodCode() {
-        this.mv = this.classWriter.visitMethod(ACC_PUBLIC + +ACC_FINAL, EXECUTE_METHOD_NAME,
+        this.mv = visitMethod(ACC_PUBLIC + +ACC_FINAL, EXECUTE_METHOD_NAME,
                 EXECUTE_DESC,
-                EXECUTE_DESC, null);
+                EXECUTE_DESC);
         this.mv.visitCode();
     }
 
@@ -96,9 +120,8 @@ public class MetricUnitRealCodeGenerator<T> extends AbstractRealCodeGenerator<T>
 
     private void constructor() {
 
-        this.mv = this.classWriter.visitMethod(ACC_PUBLIC, CONSTRUCTOR_METHOD_NAME,
-                CONSTRUCTOR_DESC,
-                null, null);
+        this.mv = visitMethod(ACC_PUBLIC, CONSTRUCTOR_METHOD_NAME,
+                CONSTRUCTOR_DESC, null);
         this.mv.visitCode();
         this.mv.visitVarInsn(ALOAD, 0);
         this.mv.visitVarInsn(ALOAD, 1);
@@ -163,19 +186,25 @@ public class MetricUnitRealCodeGenerator<T> extends AbstractRealCodeGenerator<T>
             }
         }
 
+        initFoldedConstants();
+        initAdaptivePredicate();
         this.mv.visitInsn(RETURN);
         this.mv.visitMaxs(0, 0);
         this.mv.visitEnd();
 
     }
 
+    /**
+     * Generates {@code grouping(Env, GroupKey)}, it appends the value of every grouping column of the row to the key
+     * instead of concatenating them into a string.
+     */
     private void visitGroupingMethod() {
         if (this.groupingTokenContainer.tokenList.size() == 0) {
             return;
         }
-        this.mv = this.classWriter.visitMethod(ACC_PUBLIC, GROUPING_METHOD_NAME,
+        this.mv = visitMethod(ACC_PUBLIC + ACC_FINAL, GROUPING_METHOD_NAME,
                 GROUPING_METHOD_DESC,
-                GROUPING_METHOD_DESC, null);
+                GROUPING_METHOD_DESC);
         this.mv.visitCode();
         Label start = new Label();
         mv.visitLabel(start);
@@ -183,15 +212,12 @@ public class MetricUnitRealCodeGenerator<T> extends AbstractRealCodeGenerator<T>
         Label end = new Label();
         mv.visitLabel(end);
         mv.visitLocalVariable("rowEnv", ENV_DESC, ENV_DESC, start, end, 1);
+        mv.visitLocalVariable("groupKey", Type.getDescriptor(GroupKey.class), null, start, end, 2);
 
 
         List<Token<?>> tokens = this.groupingTokenContainer.tokenList;
-        int localIndex = 2;
-        int paramCount = 0;
         for (Token token : tokens) {
             if (token instanceof VariableToken) {
-                VariableToken variableToken = (VariableToken) token;
-
                 Label ifLabel = new Label();
                 mv.visitVarInsn(Opcodes.ALOAD, 1);
                 mv.visitLdcInsn(token.getLexeme());
@@ -202,53 +228,25 @@ public class MetricUnitRealCodeGenerator<T> extends AbstractRealCodeGenerator<T>
 
                 mv.visitTypeInsn(NEW, "java/lang/IllegalArgumentException");
                 mv.visitInsn(DUP);
-                mv.visitTypeInsn(NEW, "java/lang/StringBuilder");
-                mv.visitInsn(DUP);
-                mv.visitLdcInsn("Key not found: ");
-                mv.visitMethodInsn(INVOKESPECIAL, "java/lang/StringBuilder", "<init>", "(Ljava/lang/String;)V");
-                mv.visitLdcInsn(token.getLexeme());
-                mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/StringBuilder", "append",
-                        "(Ljava/lang/String;)Ljava/lang/StringBuilder;");
-                mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/StringBuilder", "toString",
-                        "()Ljava/lang/String;");
+                mv.visitLdcInsn("Key not found: " + token.getLexeme());
                 mv.visitMethodInsn(INVOKESPECIAL, "java/lang/IllegalArgumentException", "<init>",
                         "(Ljava/lang/String;)V");
                 mv.visitInsn(ATHROW);
 
                 mv.visitLabel(ifLabel);
 
-
-                mv.visitLocalVariable(variableToken.getLexeme() + "_arg" + paramCount, Type.getDescriptor(String.class), null, start, end, localIndex);
+                mv.visitVarInsn(Opcodes.ALOAD, 2);
                 mv.visitVarInsn(Opcodes.ALOAD, 1);
                 mv.visitLdcInsn(token.getLexeme());
                 mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, ENV_OWNER, "get", "(Ljava/lang/Object;)Ljava/lang/Object;");
-                mv.visitMethodInsn(INVOKESTATIC, RU_OWNER, "covertString",
-                        "(Ljava/lang/Object;)Ljava/lang/String;");
-                mv.visitVarInsn(Opcodes.ASTORE, localIndex);
-                paramCount++;
-                localIndex++;
+                mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, GROUP_KEY_OWNER, "add", "(Ljava/lang/Object;)V");
             } else {
                 log.warn("{} is not variable,please check it", token);
                 throw new ExpressionCompileException();
             }
         }
 
-        mv.visitTypeInsn(Opcodes.NEW, "java/lang/StringBuilder");
-        mv.visitInsn(Opcodes.DUP);
-        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/StringBuilder", "<init>", "()V");
-
-        int startIndex = 2;
-        for (int i = 0; i < paramCount; i++) {
-            mv.visitVarInsn(Opcodes.ALOAD, startIndex++);
-            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/StringBuilder", "append", "(Ljava/lang/String;)Ljava/lang/StringBuilder;");
-            if (i < paramCount - 1) {
-                mv.visitLdcInsn("__");
-                mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/StringBuilder", "append", "(Ljava/lang/String;)Ljava/lang/StringBuilder;");
-            }
-        }
-
-        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/StringBuilder", "toString", "()Ljava/lang/String;");
-        mv.visitInsn(Opcodes.ARETURN);
+        mv.visitInsn(Opcodes.RETURN);
 
         mv.visitMaxs(0, 0);
 
@@ -260,24 +258,88 @@ public class MetricUnitRealCodeGenerator<T> extends AbstractRealCodeGenerator<T>
         if (this.filterTokenContainer.tokenList.size() == 0) {
             return;
         }
-        this.mv = this.classWriter.visitMethod(ACC_PUBLIC + ACC_FINAL, FILTER_METHOD_NAME,
+        this.mv = visitMethod(ACC_PUBLIC + ACC_FINAL, FILTER_METHOD_NAME,
                 FILTER_METHOD_DESC,
-                FILTER_METHOD_DESC, null);
+                FILTER_METHOD_DESC);
         this.mv.visitCode();
         mv.visitLocalVariable("rowEnv", ENV_DESC, ENV_DESC, new Label(), new Label(), 1);
 
 
-        methodBody(this.filterTokenContainer.tokenList, false);
-        mv.visitVarInsn(Opcodes.ALOAD, 1);
-        this.mv.visitMethodInsn(INVOKEVIRTUAL, OBJECT_OWNER, "getValue",
-                "(Ljava/util/Map;)Ljava/lang/Object;");
-        this.mv.visitMethodInsn(INVOKESTATIC, RU_OWNER, "covertBoolean",
-                "(Ljava/lang/Object;)Z");
+        visitFilterBody(this.filterTokenContainer.tokenList, true);
         this.mv.visitInsn(IRETURN);
 
         mv.visitMaxs(0, 0);
 
         this.mv.visitEnd();
+
+        visitFilterTermMethods(true);
+    }
+
+    /**
+     * Generates {@code processRow(Env, AggregationState)}, it calls the final filter and grouping methods of this class
+     * and then checks the filter and accumulates every aggregate function at a call site of its own, so each call site
+     * sees a single receiver class and the JIT inlines the whole row into one method.
+     */
+    private void visitProcessRowMethod() {
+        this.mv = visitMethod(ACC_PUBLIC + ACC_FINAL, PROCESS_ROW_METHOD_NAME,
+                PROCESS_ROW_METHOD_DESC,
+                PROCESS_ROW_METHOD_DESC);
+        this.mv.visitCode();
+        if (this.filterTokenContainer.tokenList.size() > 0) {
+            Label pass = new Label();
+            this.mv.visitVarInsn(ALOAD, 0);
+            this.mv.visitVarInsn(ALOAD, 1);
+            this.mv.visitMethodInsn(INVOKEVIRTUAL, this.className, FILTER_METHOD_NAME, FILTER_METHOD_DESC);
+            this.mv.visitJumpInsn(IFNE, pass);
+            this.mv.visitInsn(ICONST_0);
+            this.mv.visitInsn(IRETURN);
+            this.mv.visitLabel(pass);
+        }
+        if (this.groupingTokenContainer.tokenList.size() > 0) {
+            this.mv.visitVarInsn(ALOAD, 0);
+            this.mv.visitVarInsn(ALOAD, 1);
+            this.mv.visitVarInsn(ALOAD, 2);
+            this.mv.visitMethodInsn(INVOKEVIRTUAL, AGGREGATION_STATE_OWNER, "key", "()" + Type.getDescriptor(GroupKey.class));
+            this.mv.visitMethodInsn(INVOKEVIRTUAL, this.className, GROUPING_METHOD_NAME, GROUPING_METHOD_DESC);
+        }
+        String functionsDesc = "[" + Type.getDescriptor(AggFunction.class);
+        String aggInnersDesc = "[" + Type.getDescriptor(AggInner.class);
+        this.mv.visitVarInsn(ALOAD, 2);
+        this.mv.visitMethodInsn(INVOKEVIRTUAL, AGGREGATION_STATE_OWNER, "functions", "()" + functionsDesc);
+        this.mv.visitVarInsn(ASTORE, 3);
+        this.mv.visitVarInsn(ALOAD, 2);
+        this.mv.visitMethodInsn(INVOKEVIRTUAL, AGGREGATION_STATE_OWNER, "aggInners", "()" + aggInnersDesc);
+        this.mv.visitVarInsn(ASTORE, 4);
+        for (int i = 0; i < this.aggFunctionUnits.size(); i++) {
+            AggFunctionUnit aggFunctionUnit = this.aggFunctionUnits.get(i);
+            boolean needsInnerValue = aggFunctionUnit.genAggFunction().needsInnerValue();
+            Label skip = new Label();
+            this.mv.visitVarInsn(ALOAD, 4);
+            this.mv.visitLdcInsn(i);
+            this.mv.visitInsn(AALOAD);
+            this.mv.visitVarInsn(ALOAD, 1);
+            this.mv.visitMethodInsn(INVOKEINTERFACE, FILTER_INTERFACE, CHECK_METHOD_NAME, CHECK_METHOD_DESC);
+            this.mv.visitJumpInsn(IFEQ, skip);
+            this.mv.visitVarInsn(ALOAD, 3);
+            this.mv.visitLdcInsn(i);
+            this.mv.visitInsn(AALOAD);
+            this.mv.visitVarInsn(ALOAD, 1);
+            if (needsInnerValue) {
+                this.mv.visitVarInsn(ALOAD, 4);
+                this.mv.visitLdcInsn(i);
+                this.mv.visitInsn(AALOAD);
+                this.mv.visitVarInsn(ALOAD, 1);
+                this.mv.visitMethodInsn(INVOKEINTERFACE, FILTER_INTERFACE, GETCOLUMNVALUE_METHOD_NAME, GETCOLUMNVALUE_METHOD_DESC);
+            } else {
+                this.mv.visitInsn(ACONST_NULL);
+            }
+            this.mv.visitMethodInsn(INVOKEINTERFACE, AGG_FUNCTION_OWNER, "accumulate", "(" + ENV_DESC + "Ljava/lang/Object;)V");
+            this.mv.visitLabel(skip);
+        }
+        this.mv.visitInsn(ICONST_1);
+        this.mv.visitInsn(IRETURN);
+        this.mv.visitMaxs(0, 0);
+        this.mv.visitEnd();
     }
 
 }
@@ -0,0 +1,51 @@
+package org.soloquest.soloscan.compiler.codegen;
+
+import org.soloquest.soloscan.compiler.lexer.token.OperatorType;
+import org.soloquest.soloscan.compiler.lexer.token.Token;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a filter in reverse polish notation into the terms of its top level {@code &&} or {@code ||} chain, e.g.
+ * {@code a=1 && b>2 && c in [1,2]} into its three conjuncts, so they can be evaluated in any order.
+ */
+class PredicateSplitter {
+
+    private OperatorType operatorType;
+
+    /**
+     * @return the token lists of the terms in source order, null if the filter is not a chain of two terms at least
+     */
+    List<List<Token<?>>> split(final List<Token<?>> tokenList) {
+        ExpressionNode root = ExpressionNode.parse(tokenList);
+        if (root == null || (root.operatorType != OperatorType.AND && root.operatorType != OperatorType.OR)) {
+            return null;
+        }
+        this.operatorType = root.operatorType;
+        List<ExpressionNode> terms = new ArrayList<>();
+        flatten(root, root.operatorType, terms);
+        List<List<Token<?>>> termTokens = new ArrayList<>(terms.size());
+        for (ExpressionNode term : terms) {
+            termTokens.add(new ArrayList<>(tokenList.subList(term.start, term.end + 1)));
+        }
+        return termTokens;
+    }
+
+    /**
+     * @return {@link OperatorType#AND} or {@link OperatorType#OR} of the last split chain
+     */
+    OperatorType getOperatorType() {
+        return operatorType;
+    }
+
+    private void flatten(final ExpressionNode node, final OperatorType operatorType, final List<ExpressionNode> terms) {
+        if (node.operatorType == operatorType) {
+            for (ExpressionNode operand : node.operands) {
+                flatten(operand, operatorType, terms);
+            }
+        } else {
+            terms.add(node);
+        }
+    }
+}
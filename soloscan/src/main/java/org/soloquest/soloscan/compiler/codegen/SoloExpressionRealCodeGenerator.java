@@ -22,7 +22,7 @@ public class SoloExpressionRealCodeGenerator<T> extends AbstractRealCodeGenerato
     public SoloExpressionRealCodeGenerator(final SoloscanExecutor instance,
                                        final SoloscanClassloader classLoader, final Class<T> type) {
         super(instance, classLoader, type);
-        this.className = "So_" + System.currentTimeMillis() + "_" + CLASS_COUNTER.getAndIncrement();
+        this.className = ClassDefiner.getClassNamePrefix() + "So_" + System.currentTimeMillis() + "_" + CLASS_COUNTER.getAndIncrement();
         this.classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
         this.classWriter.visit(Opcodes.V1_7, ACC_PUBLIC + ACC_SUPER,
                 this.className, null, SUPER_CLASSNAME, null);
@@ -30,6 +30,7 @@ public class SoloExpressionRealCodeGenerator<T> extends AbstractRealCodeGenerato
 
     @Override
     public T getResult() {
+        foldConstants(this.tokenList);
         initConstants();
         initVariables();
         initMetricVariables();
@@ -48,7 +49,7 @@ public class SoloExpressionRealCodeGenerator<T> extends AbstractRealCodeGenerato
 
         try {
             Class<?> defineClass =
-                    ClassDefiner.defineClass(this.className, type, bytes, this.classLoader);
+                    defineClass(bytes);
             Constructor<?> constructor =
                     defineClass.getConstructor(SoloscanExecutor.class, SymbolTable.class, String.class);
             Expression exp = (Expression) constructor.newInstance(this.instance
@@ -65,9 +66,9 @@ public class SoloExpressionRealCodeGenerator<T> extends AbstractRealCodeGenerato
     }
 
     private void startVisitMethodCode() {
-        this.mv = this.classWriter.visitMethod(ACC_PUBLIC + +ACC_FINAL, EXECUTE_METHOD_NAME,
+        this.mv = visitMethod(ACC_PUBLIC + +ACC_FINAL, EXECUTE_METHOD_NAME,
                 EXECUTE_DESC,
-                EXECUTE_DESC, null);
+                EXECUTE_DESC);
         this.mv.visitCode();
     }
 
@@ -83,9 +84,8 @@ public class SoloExpressionRealCodeGenerator<T> extends AbstractRealCodeGenerato
 
     private void constructor() {
 
-        this.mv = this.classWriter.visitMethod(ACC_PUBLIC, CONSTRUCTOR_METHOD_NAME,
-                CONSTRUCTOR_DESC,
-                null, null);
+        this.mv = visitMethod(ACC_PUBLIC, CONSTRUCTOR_METHOD_NAME,
+                CONSTRUCTOR_DESC, null);
         this.mv.visitCode();
         this.mv.visitVarInsn(ALOAD, 0);
         this.mv.visitVarInsn(ALOAD, 1);
@@ -150,6 +150,7 @@ public class SoloExpressionRealCodeGenerator<T> extends AbstractRealCodeGenerato
             }
         }
 
+        initFoldedConstants();
         this.mv.visitInsn(RETURN);
         this.mv.visitMaxs(0, 0);
         this.mv.visitEnd();
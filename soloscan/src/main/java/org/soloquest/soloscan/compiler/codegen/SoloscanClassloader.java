@@ -0,0 +1,77 @@
+package org.soloquest.soloscan.compiler.codegen;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Each compilation gets its own generation of class loader, when the compiled expression is dropped
+ * the loader and all the classes defined by it can be unloaded together.
+ */
+public class SoloscanClassloader extends ClassLoader {
+
+    private static final AtomicLong GENERATION_COUNTER = new AtomicLong();
+    private final long generation;
+    private final AtomicInteger definedClassCount = new AtomicInteger();
+    private Map<Class<?>, GeneratedClass> generatedClasses;
+
+    public SoloscanClassloader(ClassLoader parent) {
+        super(parent);
+        this.generation = GENERATION_COUNTER.getAndIncrement();
+    }
+
+    public SoloscanClassloader newGeneration() {
+        return new SoloscanClassloader(getParent());
+    }
+
+    public Class<?> defineClass(String name, byte[] b) {
+        return defineClass(name, b, 0, b.length);
+    }
+
+    void onClassDefined(Class<?> definedClass, String className, byte[] bytes) {
+        definedClassCount.incrementAndGet();
+        if (generatedClasses != null) {
+            generatedClasses.put(definedClass, new GeneratedClass(className, bytes));
+        }
+    }
+
+    /**
+     * Keeps the bytes of the classes defined from now on, so that they can be persisted.
+     */
+    public void recordGeneratedClasses() {
+        if (generatedClasses == null) {
+            generatedClasses = new ConcurrentHashMap<>();
+        }
+    }
+
+    public GeneratedClass getGeneratedClass(Class<?> definedClass) {
+        return generatedClasses == null ? null : generatedClasses.get(definedClass);
+    }
+
+    public int getDefinedClassCount() {
+        return definedClassCount.get();
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public static class GeneratedClass {
+        public final String className;
+        public final byte[] bytes;
+
+        public GeneratedClass(String className, byte[] bytes) {
+            this.className = className;
+            this.bytes = bytes;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SoloscanClassloader{" +
+                "generation=" + generation +
+                ", definedClassCount=" + definedClassCount +
+                '}';
+    }
+}
@@ -0,0 +1,232 @@
+package org.soloquest.soloscan.compiler.codegen;
+
+import org.soloquest.soloscan.compiler.lexer.SymbolTable;
+import org.soloquest.soloscan.compiler.lexer.token.*;
+import org.soloquest.soloscan.dataset.Schema;
+import org.soloquest.soloscan.utils.ParserUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Infers the primitive types of the subexpressions of a token list in reverse polish notation from a
+ * {@link Schema}, and replaces every largest subexpression on typed columns by a {@link TypedToken}.
+ * <p>
+ * Only the operations whose primitive evaluation gives the same result as {@code SObject} are typed, e.g.
+ * the division of two longs is not, since it results in a ratio.
+ */
+class TypeSpecializer {
+
+    private final Schema schema;
+
+    TypeSpecializer(final Schema schema) {
+        this.schema = schema;
+    }
+
+    /**
+     * @return whether any subexpression is replaced
+     */
+    boolean specialize(final List<Token<?>> tokenList) {
+        Deque<Node> stack = new ArrayDeque<>();
+        for (int i = 0; i < tokenList.size(); i++) {
+            Token<?> token = tokenList.get(i);
+            switch (token.getType()) {
+                case Number:
+                    stack.push(new Node(i, i, typedNumber((NumberToken) token)));
+                    break;
+                case Variable:
+                    stack.push(new Node(i, i, typedVariable((VariableToken) token)));
+                    break;
+                case String:
+                case Char:
+                case Constant:
+                    stack.push(new Node(i, i, null));
+                    break;
+                case Delegate:
+                    if (((DelegateToken) token).getDelegateTokenType() == DelegateToken.DelegateTokenType.Method_Name) {
+                        stack.push(Node.functionMark(i));
+                    }
+                    break;
+                case Operator:
+                    OperatorToken operatorToken = (OperatorToken) token;
+                    Node node = operatorToken.getOperatorType() == OperatorType.FUNC
+                            ? popFunction(stack, i) : popOperator(stack, operatorToken, i);
+                    if (node == null) {
+                        return false;
+                    }
+                    stack.push(node);
+                    break;
+                default:
+                    return false;
+            }
+        }
+        List<Node> typedNodes = new ArrayList<>();
+        for (Node node : stack) {
+            collect(node, typedNodes);
+        }
+        // replaced from the end of the list, so the positions of the others are kept
+        typedNodes.sort((a, b) -> b.start - a.start);
+        for (Node node : typedNodes) {
+            List<Token<?>> span = tokenList.subList(node.start, node.end + 1);
+            node.typed.setTokens(new ArrayList<>(span));
+            span.clear();
+            tokenList.add(node.start, node.typed);
+        }
+        return !typedNodes.isEmpty();
+    }
+
+    private void collect(final Node node, final List<Node> typedNodes) {
+        if (node.typed != null && node.typed.getOperands().length > 0 && node.hasColumn) {
+            typedNodes.add(node);
+            return;
+        }
+        for (Node child : node.children) {
+            collect(child, typedNodes);
+        }
+    }
+
+    private TypedToken typedNumber(final NumberToken token) {
+        Number number = token.getNumber();
+        if (number instanceof Long) {
+            return new TypedToken(token, long.class);
+        } else if (number instanceof Double) {
+            return new TypedToken(token, double.class);
+        }
+        return null;
+    }
+
+    private TypedToken typedVariable(final VariableToken token) {
+        if (VariableToken.TRUE.equals(token) || VariableToken.FALSE.equals(token)) {
+            return new TypedToken(token, boolean.class);
+        }
+        if (SymbolTable.isReservedKeyword(token) || ParserUtils.isMetricToken(token)) {
+            return null;
+        }
+        Class<?> type = schema.getType(token.getLexeme());
+        return type == null ? null : new TypedToken(token, type);
+    }
+
+    private Node popFunction(final Deque<Node> stack, final int end) {
+        List<Node> args = new ArrayList<>();
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            if (node.functionMark) {
+                Node function = new Node(node.start, end, null);
+                function.children.addAll(args);
+                return function;
+            }
+            args.add(node);
+        }
+        return null;
+    }
+
+    private Node popOperator(final Deque<Node> stack, final OperatorToken token, final int end) {
+        OperatorType operatorType = token.getOperatorType();
+        int arity = operatorType == OperatorType.NOT || operatorType == OperatorType.NEG ? 1 : 2;
+        if (stack.size() < arity) {
+            return null;
+        }
+        Node right = stack.pop();
+        Node left = arity == 2 ? stack.pop() : null;
+        if (right.functionMark || (left != null && left.functionMark)) {
+            return null;
+        }
+        Node node;
+        if (left == null) {
+            node = new Node(right.start, end, typedUnary(token, right.typed));
+            node.children.add(right);
+        } else {
+            node = new Node(left.start, end, typedBinary(token, left.typed, right.typed));
+            node.children.add(left);
+            node.children.add(right);
+        }
+        return node;
+    }
+
+    private TypedToken typedUnary(final OperatorToken token, final TypedToken operand) {
+        if (operand == null) {
+            return null;
+        }
+        Class<?> type = operand.getJavaType();
+        switch (token.getOperatorType()) {
+            case NEG:
+                return isNumeric(type) ? new TypedToken(token, type, operand) : null;
+            case NOT:
+                return type == boolean.class ? new TypedToken(token, boolean.class, operand) : null;
+            default:
+                return null;
+        }
+    }
+
+    private TypedToken typedBinary(final OperatorToken token, final TypedToken left, final TypedToken right) {
+        if (left == null || right == null) {
+            return null;
+        }
+        Class<?> leftType = left.getJavaType();
+        Class<?> rightType = right.getJavaType();
+        boolean numeric = isNumeric(leftType) && isNumeric(rightType);
+        Class<?> numericType = leftType == long.class && rightType == long.class ? long.class : double.class;
+        switch (token.getOperatorType()) {
+            case ADD:
+            case SUB:
+            case MULT:
+            case MOD:
+                return numeric ? new TypedToken(token, numericType, left, right) : null;
+            case DIV:
+                return numeric && numericType == double.class ? new TypedToken(token, double.class, left, right) : null;
+            case EQ:
+            case NEQ:
+            case LT:
+            case LE:
+            case GT:
+            case GE:
+                return numeric ? new TypedToken(token, boolean.class, left, right) : null;
+            case AND:
+            case OR:
+                return leftType == boolean.class && rightType == boolean.class
+                        ? new TypedToken(token, boolean.class, left, right) : null;
+            default:
+                return null;
+        }
+    }
+
+    private static boolean isNumeric(final Class<?> type) {
+        return type == long.class || type == double.class;
+    }
+
+    private static class Node {
+        final int start;
+        final int end;
+        final TypedToken typed;
+        final List<Node> children = new ArrayList<>();
+        final boolean hasColumn;
+        boolean functionMark;
+
+        Node(final int start, final int end, final TypedToken typed) {
+            this.start = start;
+            this.end = end;
+            this.typed = typed;
+            this.hasColumn = typed != null && hasColumn(typed);
+        }
+
+        static Node functionMark(final int start) {
+            Node node = new Node(start, start, null);
+            node.functionMark = true;
+            return node;
+        }
+
+        private static boolean hasColumn(final TypedToken typed) {
+            if (typed.isColumn()) {
+                return true;
+            }
+            for (TypedToken operand : typed.getOperands()) {
+                if (hasColumn(operand)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
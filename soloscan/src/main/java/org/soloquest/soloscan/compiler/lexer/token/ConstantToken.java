@@ -0,0 +1,39 @@
+package org.soloquest.soloscan.compiler.lexer.token;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A call of a builtin function on integer literals only, such as {@code [5,11,9999]} or {@code range(513,520,1)},
+ * folded at compile time. The value is built once per generated class instead of once per row.
+ */
+public class ConstantToken extends AbstractToken<long[]> {
+
+    private final String functionName;
+    private final long[] args;
+
+    public ConstantToken(final String functionName, final long[] args, final int lineNo, final int startIndex) {
+        super(functionName + Arrays.toString(args), lineNo, startIndex);
+        this.functionName = functionName;
+        this.args = args;
+    }
+
+    public String getFunctionName() {
+        return this.functionName;
+    }
+
+    public long[] getArgs() {
+        return this.args;
+    }
+
+    @Override
+    public long[] getJavaValue(final Map<String, Object> env) {
+        return this.args;
+    }
+
+    @Override
+    public TokenType getType() {
+        return TokenType.Constant;
+    }
+
+}
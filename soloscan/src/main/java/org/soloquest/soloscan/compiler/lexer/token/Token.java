@@ -5,7 +5,7 @@ import java.util.Map;
 
 public interface Token<T> {
     enum TokenType {
-        String, Variable, Number, Char, Operator, Delegate
+        String, Variable, Number, Char, Operator, Delegate, Constant, Typed
     }
 
     Token<T> withMeta(String name, Object v);
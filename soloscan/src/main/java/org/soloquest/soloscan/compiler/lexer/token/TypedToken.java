@@ -0,0 +1,67 @@
+package org.soloquest.soloscan.compiler.lexer.token;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A subexpression whose operands are all of a known primitive type, evaluated on {@code long}, {@code double}
+ * and {@code boolean} values. It is a tree: a leaf is a column or a number literal, an inner node an operator
+ * applied to its operands. The root keeps the tokens it replaces, they are the fallback evaluation when a
+ * column value of the row is not of the declared type.
+ */
+public class TypedToken extends AbstractToken<Object> {
+
+    private final Token<?> token;
+    private final Class<?> javaType;
+    private final TypedToken[] operands;
+    private List<Token<?>> tokens;
+
+    public TypedToken(final Token<?> token, final Class<?> javaType, final TypedToken... operands) {
+        super(token.getLexeme(), token.getLineNo(), token.getStartIndex());
+        this.token = token;
+        this.javaType = javaType;
+        this.operands = operands;
+    }
+
+    /**
+     * @return the column, number or operator token of the node
+     */
+    public Token<?> getToken() {
+        return this.token;
+    }
+
+    /**
+     * @return {@code long.class}, {@code double.class} or {@code boolean.class}
+     */
+    public Class<?> getJavaType() {
+        return this.javaType;
+    }
+
+    public TypedToken[] getOperands() {
+        return this.operands;
+    }
+
+    public boolean isColumn() {
+        return this.token.getType() == TokenType.Variable && this.operands.length == 0
+                && !VariableToken.TRUE.equals(this.token) && !VariableToken.FALSE.equals(this.token);
+    }
+
+    public List<Token<?>> getTokens() {
+        return this.tokens;
+    }
+
+    public void setTokens(final List<Token<?>> tokens) {
+        this.tokens = tokens;
+    }
+
+    @Override
+    public Object getJavaValue(final Map<String, Object> env) {
+        return this.token.getJavaValue(env);
+    }
+
+    @Override
+    public TokenType getType() {
+        return TokenType.Typed;
+    }
+
+}
@@ -28,8 +28,12 @@ public class AggFunctionText {
     }
 
     public AggFunctionText(String name) {
+        this(name, "PH_AGG_" + (char) INIT_PLACEHOLDER.getAndIncrement());
+    }
+
+    public AggFunctionText(String name, String placeHolder) {
         this.name = name;
-        this.placeHolder = "PH_AGG_" + (char) INIT_PLACEHOLDER.getAndIncrement();
+        this.placeHolder = placeHolder;
     }
 
 
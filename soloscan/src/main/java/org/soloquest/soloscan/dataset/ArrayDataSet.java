@@ -0,0 +1,86 @@
+package org.soloquest.soloscan.dataset;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A data set of rows given as arrays of values in the order of its columns. Its rows are {@link ArrayRow}s sharing
+ * one {@link ColumnSlots}, so the generated code reads their columns by index.
+ */
+public class ArrayDataSet implements DataSet {
+
+    private final List<String> columns;
+    private final List<Object[]> dataSet;
+    private final Schema schema;
+    // replaced by close(), which may be called by the thread cancelling the scan
+    private volatile Iterator<Object[]> iterator;
+    private ColumnSlots columnSlots;
+
+    private final Map<String, Function<Row, Object>> calcColumnMap = new LinkedHashMap<>();
+
+    public ArrayDataSet(List<String> columns, List<Object[]> dataSet) {
+        this(columns, dataSet, null);
+    }
+
+    public ArrayDataSet(List<String> columns, List<Object[]> dataSet, Schema schema) {
+        this.columns = columns;
+        this.dataSet = dataSet;
+        this.schema = schema;
+        this.iterator = dataSet.iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return iterator.hasNext();
+    }
+
+    @Override
+    public Row next() {
+        Object[] values = iterator.next();
+        ColumnSlots columnSlots = getColumnSlots();
+        if (calcColumnMap.isEmpty()) {
+            return new ArrayRow(columnSlots, values);
+        }
+        Row row = new ArrayRow(columnSlots, Arrays.copyOf(values, columnSlots.size()));
+        calcColumnMap.forEach((column, function) -> row.putValue(column, function.apply(row)));
+        return row;
+    }
+
+    /**
+     * @return the layout of the rows, the columns followed by the calculated columns. It is rebuilt when a calculated
+     * column is added, the rows read after that have the column.
+     */
+    public ColumnSlots getColumnSlots() {
+        if (columnSlots == null) {
+            List<String> layout = new ArrayList<>(columns);
+            layout.addAll(calcColumnMap.keySet());
+            columnSlots = new ColumnSlots(layout);
+        }
+        return columnSlots;
+    }
+
+    @Override
+    public boolean addCalcColumn(String columnName, Function<Row, Object> function) {
+        if (columns.contains(columnName) || calcColumnMap.putIfAbsent(columnName, function) != null) {
+            return false;
+        }
+        columnSlots = null;
+        return true;
+    }
+
+    @Override
+    public void close() {
+        iterator = Collections.emptyIterator();
+    }
+
+    @Override
+    public Schema getSchema() {
+        return schema;
+    }
+}
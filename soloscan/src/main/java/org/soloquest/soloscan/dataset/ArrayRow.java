@@ -0,0 +1,46 @@
+package org.soloquest.soloscan.dataset;
+
+/**
+ * A row of values in the order of the columns of its {@link ColumnSlots}.
+ */
+public class ArrayRow implements Row {
+
+    private final ColumnSlots columnSlots;
+    private final Object[] values;
+
+    public ArrayRow(ColumnSlots columnSlots, Object[] values) {
+        this.columnSlots = columnSlots;
+        this.values = values;
+    }
+
+    @Override
+    public Object getValue(String column) {
+        int slot = columnSlots.slot(column);
+        return slot < 0 ? null : values[slot];
+    }
+
+    @Override
+    public Object getValue(int slot) {
+        return values[slot];
+    }
+
+    @Override
+    public boolean putValue(String column, Object value) {
+        int slot = columnSlots.slot(column);
+        if (slot < 0 || values[slot] != null) {
+            return false;
+        }
+        values[slot] = value;
+        return true;
+    }
+
+    @Override
+    public boolean containsColumn(String column) {
+        return columnSlots.slot(column) >= 0;
+    }
+
+    @Override
+    public ColumnSlots getColumnSlots() {
+        return columnSlots;
+    }
+}
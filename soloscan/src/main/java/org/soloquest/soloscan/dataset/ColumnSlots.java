@@ -0,0 +1,52 @@
+package org.soloquest.soloscan.dataset;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The layout of the rows of a {@link DataSet}: the index of every column in the row. All the rows of a data set share
+ * one layout, the generated code resolves a column name to its slot once per layout and then reads the row by index
+ * with {@link Row#getValue(int)}. A column name given twice resolves to its last index, as a later value of a
+ * column replaces an earlier one in a map row.
+ */
+public final class ColumnSlots {
+
+    private final List<String> columns;
+    private final Map<String, Integer> slots;
+
+    public ColumnSlots(List<String> columns) {
+        this.columns = Collections.unmodifiableList(columns);
+        this.slots = new HashMap<>(columns.size() * 2);
+        for (int i = 0; i < columns.size(); i++) {
+            slots.put(columns.get(i), i);
+        }
+    }
+
+    public static ColumnSlots of(String... columns) {
+        return new ColumnSlots(Arrays.asList(columns));
+    }
+
+    /**
+     * @return the index of the column in the row, -1 if the rows have no such column
+     */
+    public int slot(String column) {
+        Integer slot = slots.get(column);
+        return slot == null ? -1 : slot;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public int size() {
+        return columns.size();
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnSlots" + columns;
+    }
+}
@@ -33,4 +33,11 @@ public interface DataSet extends Cloneable {
     public boolean addCalcColumn(String columnName, Function<Row, Object> function);
 
     void close();
+
+    /**
+     * @return the types of the columns, null if unknown
+     */
+    default Schema getSchema() {
+        return null;
+    }
 }
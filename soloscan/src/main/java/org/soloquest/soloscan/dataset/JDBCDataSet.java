@@ -0,0 +1,140 @@
+package org.soloquest.soloscan.dataset;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+public class JDBCDataSet implements DataSet {
+    private final ResultSet rs;
+    private ResultSetMetaData rsmd;
+    private int columns;
+    private Schema schema;
+    private ColumnSlots columnSlots;
+
+    private final Map<String, Function<Row, Object>> calcColumnMap = new LinkedHashMap<>();
+
+    public JDBCDataSet(ResultSet rs) {
+        this.rs = rs;
+        try {
+            this.rsmd = rs.getMetaData();
+            this.columns = rsmd.getColumnCount();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            return rs.next();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public Row next() {
+        ColumnSlots columnSlots = getColumnSlots();
+        Object[] values = new Object[columnSlots.size()];
+        for (int i = 1; i <= columns; ++i) {
+            try {
+                values[i - 1] = rs.getObject(i);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        Row result = new ArrayRow(columnSlots, values);
+        calcColumnMap.forEach((column, function) -> result.putValue(column, function.apply(result)));
+        return result;
+    }
+
+    /**
+     * @return the layout of the rows, the columns of the result set in its order followed by the calculated columns
+     * which are not columns of the result set. It is rebuilt when a calculated column is added, the rows read after
+     * that have the column.
+     */
+    public ColumnSlots getColumnSlots() {
+        if (columnSlots == null) {
+            List<String> layout = new ArrayList<>(columns + calcColumnMap.size());
+            try {
+                for (int i = 1; i <= columns; ++i) {
+                    layout.add(rsmd.getColumnName(i));
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+            for (String calcColumn : calcColumnMap.keySet()) {
+                if (!layout.contains(calcColumn)) {
+                    layout.add(calcColumn);
+                }
+            }
+            columnSlots = new ColumnSlots(layout);
+        }
+        return columnSlots;
+    }
+
+    @Override
+    public boolean addCalcColumn(String columnName, Function<Row, Object> function) {
+        if (calcColumnMap.putIfAbsent(columnName, function) != null) {
+            return false;
+        }
+        columnSlots = null;
+        return true;
+    }
+
+    @Override
+    public Schema getSchema() {
+        if (schema == null) {
+            Map<String, Class<?>> columnTypes = new HashMap<>();
+            try {
+                for (int i = 1; i <= rsmd.getColumnCount(); ++i) {
+                    Class<?> type = toJavaType(rsmd.getColumnType(i));
+                    if (type != null) {
+                        columnTypes.put(rsmd.getColumnName(i), type);
+                    }
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+            schema = Schema.of(columnTypes);
+        }
+        return schema;
+    }
+
+    private static Class<?> toJavaType(int sqlType) {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return long.class;
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return double.class;
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return boolean.class;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            rs.close();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+
+}
@@ -1,5 +1,6 @@
 package org.soloquest.soloscan.dataset;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -9,12 +10,19 @@ import java.util.function.Function;
 public class ListDataSet<T extends Map> implements DataSet {
 
     private final List<T> dataSet;
-    private Iterator<T> iterator;
+    // replaced by close(), which may be called by the thread cancelling the scan
+    private volatile Iterator<T> iterator;
+    private final Schema schema;
 
     private final Map<String, Function<Row, Object>> calcColumnMap = new HashMap<>();
 
     public ListDataSet(List<T> dataSet) {
+        this(dataSet, null);
+    }
+
+    public ListDataSet(List<T> dataSet, Schema schema) {
         this.dataSet = dataSet;
+        this.schema = schema;
         iterator = this.dataSet.iterator();
     }
 
@@ -42,8 +50,16 @@ public class ListDataSet<T extends Map> implements DataSet {
     }
 
 
+    /**
+     * Ends the iteration, the list itself belongs to the caller and is left as it is.
+     */
     @Override
     public void close() {
-        dataSet.clear();
+        iterator = Collections.emptyIterator();
+    }
+
+    @Override
+    public Schema getSchema() {
+        return schema;
     }
 }
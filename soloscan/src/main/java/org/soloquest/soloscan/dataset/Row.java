@@ -0,0 +1,24 @@
+package org.soloquest.soloscan.dataset;
+
+public interface Row {
+
+    Object getValue(String column);
+
+    public boolean putValue(String column, Object value);
+
+    boolean containsColumn(String column);
+
+    /**
+     * @return the layout of the row, null if its columns can only be read by name
+     */
+    default ColumnSlots getColumnSlots() {
+        return null;
+    }
+
+    /**
+     * Reads a column by its index in the {@link #getColumnSlots() layout} of the row.
+     */
+    default Object getValue(int slot) {
+        throw new UnsupportedOperationException("the row has no column slots");
+    }
+}
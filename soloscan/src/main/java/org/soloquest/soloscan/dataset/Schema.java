@@ -0,0 +1,105 @@
+package org.soloquest.soloscan.dataset;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The Java types of the columns of a {@link DataSet}. With it the generated filters and aggregate function inners
+ * evaluate the arithmetic and comparisons of typed columns on primitive {@code long}, {@code double} and
+ * {@code boolean} values, instead of boxing every operand into an {@code SObject}.
+ * <p>
+ * The schema is a hint: a row value of another type, or null, is evaluated by the generic path as before.
+ */
+public class Schema {
+
+    private final Map<String, Class<?>> columnTypes;
+    private final String signature;
+
+    public Schema(Map<String, Class<?>> columnTypes) {
+        Map<String, Class<?>> primitiveTypes = new LinkedHashMap<>();
+        for (Map.Entry<String, Class<?>> entry : columnTypes.entrySet()) {
+            Class<?> primitiveType = toPrimitiveType(entry.getValue());
+            if (primitiveType != null) {
+                primitiveTypes.put(entry.getKey(), primitiveType);
+            }
+        }
+        this.columnTypes = Collections.unmodifiableMap(primitiveTypes);
+        StringBuilder sb = new StringBuilder();
+        new TreeMap<>(primitiveTypes).forEach((column, type) -> sb.append(column).append(':').append(type.getName()).append(';'));
+        this.signature = sb.toString();
+    }
+
+    public static Schema of(Map<String, Class<?>> columnTypes) {
+        return new Schema(columnTypes);
+    }
+
+    /**
+     * Parses the schema back from its {@link #getSignature() signature}.
+     */
+    public static Schema fromSignature(String signature) {
+        Map<String, Class<?>> columnTypes = new LinkedHashMap<>();
+        for (String column : signature.split(";")) {
+            int index = column.lastIndexOf(':');
+            if (index > 0) {
+                String type = column.substring(index + 1);
+                columnTypes.put(column.substring(0, index),
+                        "long".equals(type) ? long.class : "double".equals(type) ? double.class : boolean.class);
+            }
+        }
+        return new Schema(columnTypes);
+    }
+
+    /**
+     * @return {@code long.class}, {@code double.class} or {@code boolean.class}, null if the column is untyped
+     */
+    public Class<?> getType(String column) {
+        return columnTypes.get(column);
+    }
+
+    public Map<String, Class<?>> getColumnTypes() {
+        return columnTypes;
+    }
+
+    public boolean isEmpty() {
+        return columnTypes.isEmpty();
+    }
+
+    /**
+     * The typed columns in a stable order, the expressions compiled with the schema are cached by it.
+     */
+    public String getSignature() {
+        return signature;
+    }
+
+    private static Class<?> toPrimitiveType(Class<?> type) {
+        if (type == long.class || type == Long.class || type == int.class || type == Integer.class
+                || type == short.class || type == Short.class || type == byte.class || type == Byte.class) {
+            return long.class;
+        } else if (type == double.class || type == Double.class || type == float.class || type == Float.class) {
+            return double.class;
+        } else if (type == boolean.class || type == Boolean.class) {
+            return boolean.class;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        return o instanceof Schema && signature.equals(((Schema) o).signature);
+    }
+
+    @Override
+    public int hashCode() {
+        return signature.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "Schema{" + signature + '}';
+    }
+}
@@ -30,6 +30,11 @@ public abstract class AbstractAggFunction implements AggFunction {
         }
     }
 
+    @Override
+    public void accumulate(Env env, Object innerValue) {
+        doProcess(env);
+    }
+
     @Override
     public String getPlaceHolder() {
         return this.text.getPlaceHolder();
@@ -0,0 +1,83 @@
+package org.soloquest.soloscan.runtime.aggfunction;
+
+import org.soloquest.soloscan.compiler.lexer.token.Token;
+import org.soloquest.soloscan.utils.Env;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+public interface AggFunction {
+    Number getValue();
+
+    void setFilter(AggInner aggInner);
+
+    AggInner getFilter();
+
+    void process(Env env);
+
+    /**
+     * Accumulates a row that has passed the filter of the function, the generated {@code processRow} of a metric unit
+     * checks the filter and computes the inner value itself.
+     *
+     * @param innerValue the inner value of the row, null if the function does not {@link #needsInnerValue()}
+     */
+    default void accumulate(Env env, Object innerValue) {
+        process(env);
+    }
+
+    default boolean needsInnerValue() {
+        return false;
+    }
+
+    /**
+     * Adds the partial aggregate of another function of the same aggregate function unit, accumulated from other
+     * rows, e.g. by another worker of a parallel scan. Merging a function in the {@link #isIdentity() identity}
+     * state changes nothing.
+     */
+    default void merge(AggFunction other) {
+        throw new UnsupportedOperationException(getClass().getName() + " can not merge partial aggregates");
+    }
+
+    /**
+     * Drops the accumulated state, the function is in the identity state again.
+     */
+    default void reset() {
+        throw new UnsupportedOperationException(getClass().getName() + " can not be reset");
+    }
+
+    /**
+     * @return true if the function holds the identity state of a new or reset function, e.g. a count of 0, merging
+     * it into another function changes nothing
+     */
+    default boolean isIdentity() {
+        throw new UnsupportedOperationException(getClass().getName() + " does not know its identity state");
+    }
+
+    /**
+     * Writes the accumulated state in a compact binary form, read back by {@link #readState} of a function of the same
+     * aggregate function unit.
+     */
+    default void writeState(DataOutput out) throws IOException {
+        throw new UnsupportedOperationException(getClass().getName() + " can not write its state");
+    }
+
+    /**
+     * Replaces the accumulated state by the one written by {@link #writeState}.
+     */
+    default void readState(DataInput in) throws IOException {
+        throw new UnsupportedOperationException(getClass().getName() + " can not read its state");
+    }
+
+    String getPlaceHolder();
+
+    default boolean validate(List<Token> filterTokenList) {
+        return true;
+    }
+
+    default String getGroupBy() {
+        return "ALL";
+    }
+
+}
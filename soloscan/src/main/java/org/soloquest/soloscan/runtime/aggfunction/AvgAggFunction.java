@@ -0,0 +1,81 @@
+package org.soloquest.soloscan.runtime.aggfunction;
+
+import org.soloquest.soloscan.compiler.parser.AggFunctionText;
+import org.soloquest.soloscan.exception.ExpressionExecuteException;
+import org.soloquest.soloscan.utils.Env;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public class AvgAggFunction extends AbstractAggFunction {
+    protected double sum;
+    protected long count;
+
+
+    public AvgAggFunction(AggFunctionText text) {
+        super(text);
+    }
+
+    @Override
+    protected void doProcess(Env env) {
+        accumulate(env, aggInner.getInnerValue(env));
+    }
+
+    @Override
+    public boolean needsInnerValue() {
+        return true;
+    }
+
+    @Override
+    public void accumulate(Env env, Object object) {
+        count++;
+        if (object instanceof Number) {
+            sum += ((Number) object).doubleValue();
+        } else {
+            throw new ExpressionExecuteException(object + " is not a number");
+        }
+
+
+    }
+
+    @Override
+    public Double getValue() {
+        if (count == 0) {
+            return 0.0;
+        }
+        return sum / count;
+    }
+
+    @Override
+    public void merge(AggFunction other) {
+        AvgAggFunction partial = (AvgAggFunction) other;
+        sum += partial.sum;
+        count += partial.count;
+    }
+
+    @Override
+    public void reset() {
+        sum = 0;
+        count = 0;
+    }
+
+    @Override
+    public boolean isIdentity() {
+        return count == 0;
+    }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        out.writeLong(count);
+        if (count > 0) {
+            out.writeDouble(sum);
+        }
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        count = in.readLong();
+        sum = count > 0 ? in.readDouble() : 0;
+    }
+}
@@ -0,0 +1,54 @@
+package org.soloquest.soloscan.runtime.aggfunction;
+
+import org.soloquest.soloscan.compiler.parser.AggFunctionText;
+import org.soloquest.soloscan.utils.Env;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public class CountAggFunction extends AbstractAggFunction {
+
+    private long initCount;
+    private long count = initCount;
+
+    public CountAggFunction(AggFunctionText text) {
+        super(text);
+    }
+
+    @Override
+    public Number getValue() {
+        return count;
+    }
+
+
+    @Override
+    protected void doProcess(Env env) {
+        count++;
+    }
+
+    @Override
+    public void merge(AggFunction other) {
+        count += ((CountAggFunction) other).count;
+    }
+
+    @Override
+    public void reset() {
+        count = 0;
+    }
+
+    @Override
+    public boolean isIdentity() {
+        return count == 0;
+    }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        out.writeLong(count);
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        count = in.readLong();
+    }
+}
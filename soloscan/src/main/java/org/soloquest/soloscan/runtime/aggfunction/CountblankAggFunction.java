@@ -3,6 +3,10 @@ package org.soloquest.soloscan.runtime.aggfunction;
 import org.soloquest.soloscan.compiler.parser.AggFunctionText;
 import org.soloquest.soloscan.utils.Env;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 public class CountblankAggFunction extends AbstractAggFunction {
     private long initCount;
     private long count = initCount;
@@ -24,4 +28,28 @@ public class CountblankAggFunction extends AbstractAggFunction {
         return count;
     }
 
+    @Override
+    public void merge(AggFunction other) {
+        count += ((CountblankAggFunction) other).count;
+    }
+
+    @Override
+    public void reset() {
+        count = 0;
+    }
+
+    @Override
+    public boolean isIdentity() {
+        return count == 0;
+    }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        out.writeLong(count);
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        count = in.readLong();
+    }
 }
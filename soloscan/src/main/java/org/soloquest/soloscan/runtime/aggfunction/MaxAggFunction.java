@@ -0,0 +1,85 @@
+package org.soloquest.soloscan.runtime.aggfunction;
+
+import org.soloquest.soloscan.compiler.parser.AggFunctionText;
+import org.soloquest.soloscan.exception.ExpressionExecuteException;
+import org.soloquest.soloscan.utils.Env;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public class MaxAggFunction extends AbstractAggFunction {
+
+    private long initCount;
+    // the value of no rows is 0
+    private boolean empty = true;
+    private long value;
+
+    public MaxAggFunction(AggFunctionText text) {
+        super(text);
+    }
+
+
+    @Override
+    public Number getValue() {
+        return empty ? 0L : value;
+    }
+
+
+    @Override
+    protected void doProcess(Env env) {
+        accumulate(env, aggInner.getInnerValue(env));
+    }
+
+    @Override
+    public boolean needsInnerValue() {
+        return true;
+    }
+
+    @Override
+    public void accumulate(Env env, Object object) {
+        if (object instanceof Number) {
+            long i = ((Number) object).longValue();
+            if (empty || i > this.value) {
+                this.value = i;
+                this.empty = false;
+            }
+        } else {
+            throw new ExpressionExecuteException(object + " is not a number");
+        }
+    }
+
+    @Override
+    public void merge(AggFunction other) {
+        MaxAggFunction partial = (MaxAggFunction) other;
+        if (!partial.empty && (empty || partial.value > value)) {
+            value = partial.value;
+            empty = false;
+        }
+    }
+
+    @Override
+    public void reset() {
+        empty = true;
+        value = 0;
+    }
+
+    @Override
+    public boolean isIdentity() {
+        return empty;
+    }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        out.writeBoolean(empty);
+        if (!empty) {
+            out.writeLong(value);
+        }
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        empty = in.readBoolean();
+        value = empty ? 0 : in.readLong();
+    }
+}
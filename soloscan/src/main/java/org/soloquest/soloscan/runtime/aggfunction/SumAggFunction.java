@@ -4,6 +4,10 @@ import org.soloquest.soloscan.compiler.parser.AggFunctionText;
 import org.soloquest.soloscan.exception.ExpressionExecuteException;
 import org.soloquest.soloscan.utils.Env;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 public class SumAggFunction extends AbstractAggFunction {
 
     private long initCount;
@@ -21,7 +25,16 @@ public class SumAggFunction extends AbstractAggFunction {
 
     @Override
     protected void doProcess(Env env) {
-        Object object = aggInner.getInnerValue(env);
+        accumulate(env, aggInner.getInnerValue(env));
+    }
+
+    @Override
+    public boolean needsInnerValue() {
+        return true;
+    }
+
+    @Override
+    public void accumulate(Env env, Object object) {
         if (object instanceof Number) {
             long i = ((Number) object).intValue();
             this.value += i;
@@ -31,4 +44,28 @@ public class SumAggFunction extends AbstractAggFunction {
         }
     }
 
+    @Override
+    public void merge(AggFunction other) {
+        value += ((SumAggFunction) other).value;
+    }
+
+    @Override
+    public void reset() {
+        value = 0;
+    }
+
+    @Override
+    public boolean isIdentity() {
+        return value == 0;
+    }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        out.writeLong(value);
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        value = in.readLong();
+    }
 }
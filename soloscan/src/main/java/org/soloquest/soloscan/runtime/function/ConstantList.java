@@ -0,0 +1,99 @@
+package org.soloquest.soloscan.runtime.function;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list of integer literals folded at compile time, such as {@code [5,11,9999]}.
+ * Besides the list view it holds a primitive lookup structure, a bitset when the values are dense
+ * and an open addressing hash set otherwise, so {@code in} checks a value without boxing it.
+ */
+public class ConstantList extends AbstractList<Object> implements RandomAccess {
+
+    private static final int MAX_BITSET_SPAN = 1 << 16;
+
+    private final Long[] values;
+    private final long min;
+    private final long[] bits;
+    private final long[] table;
+    private final boolean containsZero;
+
+    public ConstantList(long... longs) {
+        this.values = new Long[longs.length];
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        boolean containsZero = false;
+        for (int i = 0; i < longs.length; i++) {
+            values[i] = longs[i];
+            min = Math.min(min, longs[i]);
+            max = Math.max(max, longs[i]);
+            containsZero |= longs[i] == 0;
+        }
+        this.min = min;
+        this.containsZero = containsZero;
+        if (longs.length > 0 && max - min >= 0 && max - min < MAX_BITSET_SPAN) {
+            this.bits = new long[(int) ((max - min) >>> 6) + 1];
+            for (long value : longs) {
+                long offset = value - min;
+                bits[(int) (offset >>> 6)] |= 1L << offset;
+            }
+            this.table = null;
+        } else {
+            this.bits = null;
+            // zero marks an empty slot, the presence of zero itself is kept aside
+            this.table = new long[Integer.highestOneBit(Math.max(longs.length, 1) * 2) * 2];
+            for (long value : longs) {
+                if (value != 0) {
+                    insert(value);
+                }
+            }
+        }
+    }
+
+    private void insert(long value) {
+        int mask = table.length - 1;
+        int index = hash(value) & mask;
+        while (table[index] != 0) {
+            if (table[index] == value) {
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        table[index] = value;
+    }
+
+    private static int hash(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    public boolean contains(long value) {
+        if (bits != null) {
+            long offset = value - min;
+            return offset >= 0 && offset >>> 6 < bits.length && (bits[(int) (offset >>> 6)] & (1L << offset)) != 0;
+        }
+        if (value == 0) {
+            return containsZero;
+        }
+        int mask = table.length - 1;
+        int index = hash(value) & mask;
+        long slot;
+        while ((slot = table[index]) != 0) {
+            if (slot == value) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    @Override
+    public Object get(int index) {
+        return values[index];
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+}
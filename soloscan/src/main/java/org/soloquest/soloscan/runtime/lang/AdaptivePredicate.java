@@ -0,0 +1,202 @@
+package org.soloquest.soloscan.runtime.lang;
+
+import lombok.extern.slf4j.Slf4j;
+import org.soloquest.soloscan.utils.Env;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Chooses the evaluation order of the terms of a top level {@code &&} or {@code ||} filter. The first rows of every
+ * scan are sampled: every term is evaluated and its cost and pass rate are counted. Then the terms are ranked, the
+ * cheap ones which decide the result most often first, and the generated filter evaluates them in that order with
+ * short-circuit.
+ * <p>
+ * A conjunction is ranked by {@code cost / (1 - passRate)}, a disjunction by {@code cost / passRate}.
+ * <p>
+ * The predicate belongs to a plan shared by concurrent executions, the counters and the order of a scan are kept by
+ * its row env. The predicate only remembers the last ranked scan, for {@link #toString()}.
+ */
+@Slf4j
+public final class AdaptivePredicate {
+
+    /**
+     * Implemented by the generated classes with a filter, a filter which is not adaptive has no terms.
+     */
+    public interface Terms {
+
+        /**
+         * Evaluates one term of the filter.
+         *
+         * @throws IndexOutOfBoundsException if the filter has no such term
+         */
+        boolean filterTerm(int term, Env env);
+
+        /**
+         * @return the predicate of the filter, null if the filter is evaluated in source order
+         */
+        default AdaptivePredicate getAdaptivePredicate() {
+            return null;
+        }
+    }
+
+    /**
+     * The counters of the sampled rows of one scan, and the order chosen after them.
+     */
+    private static final class Sampling {
+
+        private final long[] costNanos;
+        private final long[] passCounts;
+        // the cost and result of every term of the sampled row
+        private final long[] rowNanos;
+        private final boolean[] rowPassed;
+        private long sampledRows;
+        private int[] order;
+
+        private Sampling(int terms) {
+            this.costNanos = new long[terms];
+            this.passCounts = new long[terms];
+            this.rowNanos = new long[terms];
+            this.rowPassed = new boolean[terms];
+        }
+    }
+
+    private final String[] terms;
+    private final boolean conjunction;
+    private final int sampleRows;
+    private volatile Sampling lastRanked;
+
+    public AdaptivePredicate(String[] terms, boolean conjunction, int sampleRows) {
+        this.terms = terms;
+        this.conjunction = conjunction;
+        this.sampleRows = Math.max(sampleRows, 1);
+    }
+
+    private Sampling sampling(Env env) {
+        Sampling sampling = (Sampling) env.getScanState(this);
+        if (sampling == null) {
+            sampling = new Sampling(terms.length);
+            env.putScanState(this, sampling);
+        }
+        return sampling;
+    }
+
+    /**
+     * @return the order of the terms chosen by the scan of the row env, null while it samples
+     */
+    public int[] order(Env env) {
+        Sampling sampling = (Sampling) env.getScanState(this);
+        return sampling == null ? null : sampling.order;
+    }
+
+    /**
+     * @return the order of the terms chosen by the last ranked scan, null if no scan has ranked them yet
+     */
+    public int[] order() {
+        Sampling sampling = lastRanked;
+        return sampling == null ? null : sampling.order;
+    }
+
+    /**
+     * Evaluates all the terms of a sampled row in source order and counts their cost and result.
+     */
+    public boolean sample(Terms filter, Env env) {
+        Sampling sampling = sampling(env);
+        long[] nanos = sampling.rowNanos;
+        boolean[] passed = sampling.rowPassed;
+        boolean result = conjunction;
+        for (int i = 0; i < terms.length; i++) {
+            long start = System.nanoTime();
+            passed[i] = filter.filterTerm(i, env);
+            nanos[i] = System.nanoTime() - start;
+            result = conjunction ? result && passed[i] : result || passed[i];
+        }
+        for (int i = 0; i < terms.length; i++) {
+            sampling.costNanos[i] += nanos[i];
+            sampling.passCounts[i] += passed[i] ? 1 : 0;
+        }
+        if (++sampling.sampledRows >= sampleRows) {
+            sampling.order = rank(sampling);
+            lastRanked = sampling;
+            if (log.isDebugEnabled()) {
+                log.debug("filter terms are reordered to {}", this);
+            }
+        }
+        return result;
+    }
+
+    private int[] rank(Sampling sampling) {
+        double[] ranks = new double[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            double cost = Math.max(sampling.costNanos[i], 1) / (double) sampling.sampledRows;
+            double passRate = sampling.passCounts[i] / (double) sampling.sampledRows;
+            double decisiveRate = conjunction ? 1 - passRate : passRate;
+            ranks[i] = cost / Math.max(decisiveRate, 1e-6);
+        }
+        return IntStream.range(0, terms.length).boxed()
+                .sorted(Comparator.comparingDouble(i -> ranks[i]))
+                .mapToInt(Integer::intValue).toArray();
+    }
+
+    public boolean isConjunction() {
+        return conjunction;
+    }
+
+    public String[] getTerms() {
+        return terms;
+    }
+
+    /**
+     * @return the count of the rows sampled by the last ranked scan
+     */
+    public long getSampledRows() {
+        Sampling sampling = lastRanked;
+        return sampling == null ? 0 : sampling.sampledRows;
+    }
+
+    /**
+     * @return the pass rate of every term in source order sampled by the last ranked scan
+     */
+    public double[] getPassRates() {
+        Sampling sampling = lastRanked;
+        if (sampling == null) {
+            return new double[terms.length];
+        }
+        return Arrays.stream(sampling.passCounts).mapToDouble(count -> count / (double) sampling.sampledRows).toArray();
+    }
+
+    /**
+     * @return the average cost of every term in source order sampled by the last ranked scan
+     */
+    public double[] getCostNanos() {
+        Sampling sampling = lastRanked;
+        if (sampling == null) {
+            return new double[terms.length];
+        }
+        return Arrays.stream(sampling.costNanos).mapToDouble(cost -> cost / (double) sampling.sampledRows).toArray();
+    }
+
+    /**
+     * @return the terms in the order the last ranked scan evaluates them
+     */
+    public String getOrderDescription() {
+        int[] order = order();
+        if (order == null) {
+            order = IntStream.range(0, terms.length).toArray();
+        }
+        return Arrays.stream(order).mapToObj(i -> terms[i]).collect(Collectors.joining(conjunction ? " && " : " || "));
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptivePredicate{" +
+                "order='" + getOrderDescription() + '\'' +
+                ", ranked=" + (lastRanked != null) +
+                ", sampledRows=" + getSampledRows() +
+                ", passRates=" + Arrays.toString(getPassRates()) +
+                ", costNanos=" + Arrays.toString(getCostNanos()) +
+                '}';
+    }
+}
@@ -446,15 +446,17 @@ public class Numbers {
             long gcd = gcd(n, val);
             if (gcd == 0)
                 return num(0);
+            if (n == Long.MIN_VALUE && val == -1)
+                // the quotient does not fit a long
+                return BigInteger.valueOf(n).negate();
 
             n = n / gcd;
             long d = val / gcd;
             if (d == 1)
                 return num(n);
-            if (d < 0) {
-                n = -n;
-                d = -d;
-            }
+            if (d < 0)
+                // negated as BigIntegers, -Long.MIN_VALUE does not fit a long
+                return new Ratio(BigInteger.valueOf(n).negate(), BigInteger.valueOf(d).negate());
             return new Ratio(BigInteger.valueOf(n), BigInteger.valueOf(d));
         }
 
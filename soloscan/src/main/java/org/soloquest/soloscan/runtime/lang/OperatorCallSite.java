@@ -0,0 +1,289 @@
+package org.soloquest.soloscan.runtime.lang;
+
+import lombok.extern.slf4j.Slf4j;
+import org.soloquest.soloscan.compiler.lexer.token.OperatorType;
+import org.soloquest.soloscan.utils.TypeUtils;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.util.Map;
+
+/**
+ * The {@code invokedynamic} call site of an arithmetic or comparison operator of the generated code. The first call
+ * looks at the operands and links a fast path for their types: integral with integral, floating with a number, or a
+ * string literal with a string. A fast path evaluates the operator on the primitive values and relinks the site when
+ * its guard fails, a site relinked more than {@link #MAX_RELINKS} times is linked to the generic {@link SObject}
+ * operations for good. Operand values which no fast path handles, e.g. null, are evaluated by the generic operations
+ * without relinking.
+ */
+@Slf4j
+public final class OperatorCallSite extends MutableCallSite {
+
+    public static final MethodType TYPE = MethodType.methodType(SObject.class, SObject.class, SObject.class, Map.class);
+
+    static final int MAX_RELINKS = 8;
+
+    private static final int ADD = 0;
+    private static final int SUB = 1;
+    private static final int MULT = 2;
+    private static final int DIV = 3;
+    private static final int MOD = 4;
+    private static final int EQ = 5;
+    private static final int NEQ = 6;
+    private static final int LT = 7;
+    private static final int LE = 8;
+    private static final int GT = 9;
+    private static final int GE = 10;
+
+    private static final MethodHandle RELINK;
+    private static final MethodHandle GENERIC;
+    private static final MethodHandle LONGS;
+    private static final MethodHandle DOUBLES;
+    private static final MethodHandle STRINGS;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodType fastPathType = TYPE.insertParameterTypes(0, int.class, OperatorCallSite.class);
+            RELINK = lookup.findVirtual(OperatorCallSite.class, "relink", TYPE);
+            GENERIC = lookup.findStatic(OperationRuntime.class, "eval", TYPE.appendParameterTypes(OperatorType.class));
+            LONGS = lookup.findStatic(OperatorCallSite.class, "longs", fastPathType);
+            DOUBLES = lookup.findStatic(OperatorCallSite.class, "doubles", fastPathType);
+            STRINGS = lookup.findStatic(OperatorCallSite.class, "strings", fastPathType);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * The fast path linked to a call site.
+     */
+    public enum Kind {
+        UNLINKED, LONGS, DOUBLES, STRINGS, GENERIC
+    }
+
+    private final OperatorType operatorType;
+    private final int operator;
+    private volatile Kind kind = Kind.UNLINKED;
+    private int relinks;
+
+    OperatorCallSite(OperatorType operatorType, MethodType type) {
+        super(type);
+        this.operatorType = operatorType;
+        this.operator = toOperator(operatorType);
+        setTarget(RELINK.bindTo(this).asType(type));
+    }
+
+    /**
+     * The bootstrap method of the operator call sites, the name of a site is the name of its {@link OperatorType}.
+     */
+    public static CallSite bootstrap(MethodHandles.Lookup lookup, String name, MethodType type) {
+        return new OperatorCallSite(OperatorType.valueOf(name), type);
+    }
+
+    public OperatorType getOperatorType() {
+        return operatorType;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    private static int toOperator(OperatorType operatorType) {
+        switch (operatorType) {
+            case ADD:
+                return ADD;
+            case SUB:
+                return SUB;
+            case MULT:
+                return MULT;
+            case DIV:
+                return DIV;
+            case MOD:
+                return MOD;
+            case EQ:
+                return EQ;
+            case NEQ:
+                return NEQ;
+            case LT:
+                return LT;
+            case LE:
+                return LE;
+            case GT:
+                return GT;
+            case GE:
+                return GE;
+            default:
+                throw new IllegalArgumentException(operatorType + " is not a binary arithmetic or comparison operator");
+        }
+    }
+
+    /**
+     * Links the fast path for the types of the operands and evaluates them by the generic operations.
+     */
+    private SObject relink(SObject left, SObject right, Map<String, Object> env) {
+        Kind kind = classify(left, right, env);
+        if (kind != null && kind != this.kind && this.kind != Kind.GENERIC) {
+            synchronized (this) {
+                if (++relinks > MAX_RELINKS) {
+                    kind = Kind.GENERIC;
+                    log.info("the {} operator call site is megamorphic, it is linked to the generic operations", operatorType);
+                }
+                link(kind);
+            }
+        }
+        return generic(left, right, env);
+    }
+
+    private void link(Kind kind) {
+        MethodHandle target;
+        switch (kind) {
+            case LONGS:
+                target = MethodHandles.insertArguments(LONGS, 0, operator, this);
+                break;
+            case DOUBLES:
+                target = MethodHandles.insertArguments(DOUBLES, 0, operator, this);
+                break;
+            case STRINGS:
+                target = MethodHandles.insertArguments(STRINGS, 0, operator, this);
+                break;
+            default:
+                target = MethodHandles.insertArguments(GENERIC, 3, operatorType);
+                break;
+        }
+        setTarget(target.asType(type()));
+        this.kind = kind;
+    }
+
+    private Kind classify(SObject left, SObject right, Map<String, Object> env) {
+        Object x = left.getValue(env);
+        Object y = right.getValue(env);
+        if (isNumeric(left) && isNumeric(right)) {
+            if (TypeUtils.isLong(x) && TypeUtils.isLong(y)) {
+                return Kind.LONGS;
+            } else if (isNumber(x) && isNumber(y)) {
+                return Kind.DOUBLES;
+            }
+        } else if (left instanceof SString && (operator == ADD || isStringOperand(right, y))) {
+            return Kind.STRINGS;
+        }
+        return null;
+    }
+
+    private SObject generic(SObject left, SObject right, Map<String, Object> env) {
+        return OperationRuntime.eval(left, right, env, operatorType);
+    }
+
+    /**
+     * The operands whose operations are the arithmetic of {@link Numbers} on their values.
+     */
+    private static boolean isNumeric(SObject operand) {
+        return operand instanceof SNumber || operand instanceof SJavaType;
+    }
+
+    private static boolean isNumber(Object value) {
+        return TypeUtils.isLong(value) || TypeUtils.isDouble(value);
+    }
+
+    private static boolean isStringOperand(SObject operand, Object value) {
+        return value instanceof String && (operand instanceof SString || operand instanceof SJavaType);
+    }
+
+    private static SObject longs(int operator, OperatorCallSite site, SObject left, SObject right, Map<String, Object> env) {
+        Object a = left.getValue(env);
+        Object b = right.getValue(env);
+        if (isNumeric(left) && isNumeric(right) && TypeUtils.isLong(a) && TypeUtils.isLong(b)) {
+            long x = ((Number) a).longValue();
+            long y = ((Number) b).longValue();
+            switch (operator) {
+                case ADD:
+                    return SLong.valueOf(Math.addExact(x, y));
+                case SUB:
+                    return SLong.valueOf(Math.addExact(x, Math.negateExact(y)));
+                case MULT:
+                    return SLong.valueOf(Math.multiplyExact(x, y));
+                case DIV:
+                    // an inexact quotient is a ratio, Long.MIN_VALUE / -1 overflows a long
+                    if (y != 0 && x % y == 0 && !(y == -1 && x == Long.MIN_VALUE)) {
+                        return SLong.valueOf(x / y);
+                    }
+                    return site.generic(left, right, env);
+                case MOD:
+                    if (y != 0) {
+                        return SLong.valueOf(x % y);
+                    }
+                    return site.generic(left, right, env);
+                default:
+                    return compared(operator, Long.compare(x, y));
+            }
+        }
+        return site.relink(left, right, env);
+    }
+
+    private static SObject doubles(int operator, OperatorCallSite site, SObject left, SObject right, Map<String, Object> env) {
+        Object a = left.getValue(env);
+        Object b = right.getValue(env);
+        if (isNumeric(left) && isNumeric(right) && isNumber(a) && isNumber(b)
+                && (TypeUtils.isDouble(a) || TypeUtils.isDouble(b))) {
+            double x = ((Number) a).doubleValue();
+            double y = ((Number) b).doubleValue();
+            switch (operator) {
+                case ADD:
+                    return new SDouble(x + y);
+                case SUB:
+                    // the generic subtraction negates an integral subtrahend exactly
+                    if (b instanceof Long && (Long) b == Long.MIN_VALUE) {
+                        return site.generic(left, right, env);
+                    }
+                    return new SDouble(x - y);
+                case MULT:
+                    return new SDouble(x * y);
+                case DIV:
+                    if (y != 0) {
+                        return new SDouble(x / y);
+                    }
+                    return site.generic(left, right, env);
+                case MOD:
+                    return site.generic(left, right, env);
+                default:
+                    return compared(operator, x < y ? -1 : y < x ? 1 : 0);
+            }
+        }
+        return site.relink(left, right, env);
+    }
+
+    private static SObject strings(int operator, OperatorCallSite site, SObject left, SObject right, Map<String, Object> env) {
+        if (left instanceof SString) {
+            String x = ((SString) left).getValue(env);
+            Object y = right.getValue(env);
+            if (x != null) {
+                if (operator == ADD) {
+                    return new SString(x + y);
+                } else if (isStringOperand(right, y)) {
+                    return compared(operator, x.compareTo((String) y));
+                }
+            }
+        }
+        return site.relink(left, right, env);
+    }
+
+    private static SObject compared(int operator, int result) {
+        switch (operator) {
+            case EQ:
+                return SBoolean.valueOf(result == 0);
+            case NEQ:
+                return SBoolean.valueOf(result != 0);
+            case LT:
+                return SBoolean.valueOf(result < 0);
+            case LE:
+                return SBoolean.valueOf(result <= 0);
+            case GT:
+                return SBoolean.valueOf(result > 0);
+            default:
+                return SBoolean.valueOf(result >= 0);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package org.soloquest.soloscan.runtime.lang;
 
 import org.soloquest.soloscan.SoloscanExecutor;
+import org.soloquest.soloscan.runtime.function.ConstantList;
+import org.soloquest.soloscan.runtime.function.IntRange;
 import org.soloquest.soloscan.utils.Env;
 
 import java.math.MathContext;
@@ -25,6 +27,53 @@ public class RuntimeUtils {
     }
 
 
+    /**
+     * Builds a list literal folded at compile time, the values are separated by comma.
+     */
+    public static SObject constantList(final String values) {
+        String[] items = values.isEmpty() ? new String[0] : values.split(",");
+        long[] longs = new long[items.length];
+        for (int i = 0; i < items.length; i++) {
+            longs[i] = Long.parseLong(items[i]);
+        }
+        return SRuntimeJavaType.valueOf(new ConstantList(longs));
+    }
+
+    public static SObject constantRange(final int start, final int end, final int step) {
+        return SRuntimeJavaType.valueOf(new IntRange(start, end, step));
+    }
+
+    /**
+     * The primitive counterparts of the {@link Numbers} operations the typed code uses, with the same results
+     * and exceptions as the boxed ones.
+     */
+    public static long remainder(final long x, final long y) {
+        if (y == 0) {
+            throw new ArithmeticException("Divide by zero");
+        }
+        return x % y;
+    }
+
+    public static double divide(final double x, final double y) {
+        if (Double.isNaN(x)) {
+            return x;
+        } else if (Double.isNaN(y)) {
+            return y;
+        } else if (y == 0) {
+            throw new ArithmeticException("Divide by zero");
+        }
+        return x / y;
+    }
+
+    public static int compare(final double x, final double y) {
+        if (x < y) {
+            return -1;
+        } else if (y < x) {
+            return 1;
+        }
+        return 0;
+    }
+
     public static final SObject assertNotNull(final SObject object) {
         if (object != null) {
             return object;
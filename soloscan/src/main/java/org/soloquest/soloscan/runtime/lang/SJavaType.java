@@ -1,7 +1,10 @@
 package org.soloquest.soloscan.runtime.lang;
 
 import org.soloquest.soloscan.compiler.lexer.SymbolTable;
+import org.soloquest.soloscan.runtime.function.ConstantList;
 import org.soloquest.soloscan.runtime.function.IntRange;
+import org.soloquest.soloscan.utils.Env;
+import org.soloquest.soloscan.utils.VariableBindings;
 
 import java.util.List;
 import java.util.Map;
@@ -10,6 +13,10 @@ public class SJavaType extends SObject<Object> {
 
     protected String name;
 
+    // a variable of a plan is resolved once per scan, a temporary one is read from the env
+    private final boolean planVariable;
+    private final int hash;
+
     @Override
     public SObjectType getSObjectType() {
         return SObjectType.JavaType;
@@ -20,10 +27,17 @@ public class SJavaType extends SObject<Object> {
     }
 
     public SJavaType(final String name) {
-        this(name, null);
+        this(name, null, false);
     }
 
+    /**
+     * A variable of a plan, created with the plan and read by all of its executions.
+     */
     public SJavaType(final String name, final SymbolTable symbolTable) {
+        this(name, symbolTable, true);
+    }
+
+    private SJavaType(final String name, final SymbolTable symbolTable, final boolean planVariable) {
         super();
         if (name != null) {
             if (symbolTable != null) {
@@ -32,12 +46,24 @@ public class SJavaType extends SObject<Object> {
                 this.name = name;
             }
         }
-
+        this.planVariable = planVariable && name != null;
+        this.hash = this.planVariable ? VariableBindings.hashOf(this) : 0;
     }
 
 
+    /**
+     * Reads a column of a row with a layout by its slot and a variable which is not a column as a constant, both
+     * resolved once per scan into the {@link VariableBindings} of the row env, not into the shared plan.
+     */
     @Override
     public Object getValue(final Map<String, Object> env) {
+        if (planVariable && env instanceof Env) {
+            Env rowEnv = (Env) env;
+            VariableBindings bindings = rowEnv.getVariableBindings();
+            if (bindings != null) {
+                return bindings.getValue(this, hash, name, rowEnv.getRow());
+            }
+        }
         return env.get(name);
     }
 
@@ -61,7 +87,11 @@ public class SJavaType extends SObject<Object> {
             case JavaType:
                 SJavaType otherJavaType = (SJavaType) other;
                 final Object otherValue = otherJavaType.getValue(env);
-                if (otherValue instanceof List) {
+                if (otherValue instanceof ConstantList) {
+                    if (value instanceof Number) {
+                        return SBoolean.valueOf(((ConstantList) otherValue).contains(((Number) value).intValue()));
+                    }
+                } else if (otherValue instanceof List) {
                     if (value instanceof Number) {
                         value = new Long(((Number) value).intValue());
                         return SBoolean.valueOf(((List) otherValue).contains(value));
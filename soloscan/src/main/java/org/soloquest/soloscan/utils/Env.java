@@ -0,0 +1,211 @@
+package org.soloquest.soloscan.utils;
+
+import org.soloquest.soloscan.Expression;
+import org.soloquest.soloscan.SoloscanExecutor;
+import org.soloquest.soloscan.SoloscanOptions;
+import org.soloquest.soloscan.dataset.ColumnSlots;
+import org.soloquest.soloscan.dataset.Row;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+public class Env implements Map<String, Object> {
+
+    private final Map<String, Object> envMap;
+    private final SoloscanExecutor instance;
+    private final Expression expression;
+    private Row dataMap;
+    private boolean bindColumnSlots;
+    private ColumnSlots columnSlots;
+    private VariableBindings variableBindings;
+    // the states the plans shared by concurrent executions keep for the scan of this row env, keyed by identity
+    private Object[] scanStateKeys;
+    private Object[] scanStates;
+    private boolean canPutAggrValue = true;
+
+    public static final Map EMPTY_ENV = new HashMap();
+
+    public Env(SoloscanExecutor instance, Expression expression, Map<String, Object> envMap) {
+        this.instance = instance;
+        this.expression = expression;
+        this.envMap = envMap;
+    }
+
+    public Env newRowEnv(Row row) {
+        Env env = new Env(this.instance, this.expression, this.envMap);
+        env.canPutAggrValue = false;
+        env.bindColumnSlots = SoloscanOptions.getOption(SoloscanOptions.COLUMN_SLOTS);
+        return env.resetRow(row);
+    }
+
+    /**
+     * Points a row env at the next row, so that a scan reuses one env for all of its rows.
+     */
+    public Env resetRow(Row row) {
+        this.dataMap = row;
+        if (bindColumnSlots) {
+            this.columnSlots = row == null ? null : row.getColumnSlots();
+        }
+        return this;
+    }
+
+    /**
+     * @return the variables of the scan resolved against the layout of the current row, null if the row is read by
+     * column name. They are resolved again when the layout changes.
+     */
+    public VariableBindings getVariableBindings() {
+        ColumnSlots columnSlots = this.columnSlots;
+        if (columnSlots == null) {
+            return null;
+        }
+        VariableBindings bindings = this.variableBindings;
+        if (bindings == null || bindings.getColumnSlots() != columnSlots) {
+            bindings = new VariableBindings(columnSlots, envMap);
+            this.variableBindings = bindings;
+        }
+        return bindings;
+    }
+
+    /**
+     * @return the state kept for the scan by a part of a shared plan, null if it has none yet
+     */
+    public Object getScanState(Object key) {
+        Object[] keys = this.scanStateKeys;
+        if (keys != null) {
+            for (int i = 0; i < keys.length && keys[i] != null; i++) {
+                if (keys[i] == key) {
+                    return scanStates[i];
+                }
+            }
+        }
+        return null;
+    }
+
+    public void putScanState(Object key, Object state) {
+        int i = 0;
+        if (scanStateKeys == null) {
+            scanStateKeys = new Object[2];
+            scanStates = new Object[2];
+        } else {
+            while (i < scanStateKeys.length && scanStateKeys[i] != null && scanStateKeys[i] != key) {
+                i++;
+            }
+            if (i == scanStateKeys.length) {
+                scanStateKeys = Arrays.copyOf(scanStateKeys, i * 2);
+                scanStates = Arrays.copyOf(scanStates, i * 2);
+            }
+        }
+        scanStateKeys[i] = key;
+        scanStates[i] = state;
+    }
+
+    public Row getRow() {
+        return dataMap;
+    }
+
+    /**
+     * @return the layout of the current row, null if the row is read by column name
+     */
+    public ColumnSlots getColumnSlots() {
+        return columnSlots;
+    }
+
+    public Map<String, Object> getEnvMap() {
+        return envMap;
+    }
+
+    public Expression getExpression() {
+        return expression;
+    }
+
+    public SoloscanExecutor getInstance() {
+        return this.instance;
+    }
+
+    public void putAggrValue(String key, Object value) {
+        if (canPutAggrValue) {
+            envMap.put(key, value);
+        } else {
+            throw new UnsupportedOperationException("this env can not put aggfunction value");
+        }
+    }
+
+    @Override
+    public int size() {
+        return this.envMap.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.envMap.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (columnSlots != null) {
+            return columnSlots.slot(key.toString()) >= 0;
+        }
+        if (dataMap != null) {
+            return dataMap.containsColumn(key.toString());
+        }
+        return this.envMap.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return this.envMap.containsValue(value);
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (key == null) {
+            return null;
+        }
+        if (columnSlots != null) {
+            int slot = columnSlots.slot(key.toString());
+            return slot >= 0 ? dataMap.getValue(slot) : this.envMap.get(key);
+        }
+        if (dataMap != null && dataMap.containsColumn(key.toString())) {
+            return dataMap.getValue(key.toString());
+        }
+        return this.envMap.get(key);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        return this.envMap.put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        return this.envMap.remove(key);
+    }
+
+    @Override
+    public void putAll(Map m) {
+        this.envMap.putAll(m);
+    }
+
+    @Override
+    public void clear() {
+        this.envMap.clear();
+    }
+
+    @Override
+    public Set keySet() {
+        return this.envMap.keySet();
+    }
+
+    @Override
+    public Collection values() {
+        return this.envMap.values();
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return this.envMap.entrySet();
+    }
+}
@@ -30,7 +30,7 @@ public class MiscUtils {
         File tempDir = new File(tempDirPath);
         File classRoot = new File(tempDir, "soloscan_classes");
         classRoot.mkdir();
-        String fileName = className + ".class";
+        String fileName = className.replace('/', '.') + ".class";
 
         try {
             ByteArrayInputStream inStream = new ByteArrayInputStream(bytes);
@@ -85,6 +85,54 @@ public class MiscUtils {
         }
     }
 
+    /**
+     * Trims the expression and collapses every whitespace run outside string literals into one blank,
+     * and drops it next to a separator or bracket, so that expressions differing only in layout share
+     * the same cache key.
+     */
+    public static String normalizeExpression(final String expression) {
+        if (expression == null) {
+            return null;
+        }
+        String str = expression.trim();
+        StringBuilder sb = new StringBuilder(str.length());
+        char quote = 0;
+        boolean lastIsWhitespace = false;
+        for (int i = 0; i < str.length(); i++) {
+            char ch = str.charAt(i);
+            if (quote != 0) {
+                // the content of a string literal is kept as it is, an escaped character does not end it
+                sb.append(ch);
+                if (ch == '\\' && i + 1 < str.length()) {
+                    sb.append(str.charAt(++i));
+                } else if (ch == quote) {
+                    quote = 0;
+                }
+                continue;
+            }
+            if (Character.isWhitespace(ch)) {
+                if (!lastIsWhitespace && !isSeparator(sb.charAt(sb.length() - 1))) {
+                    sb.append(' ');
+                    lastIsWhitespace = true;
+                }
+                continue;
+            }
+            if (lastIsWhitespace && isSeparator(ch)) {
+                sb.setLength(sb.length() - 1);
+            }
+            if (ch == '"' || ch == '\'') {
+                quote = ch;
+            }
+            sb.append(ch);
+            lastIsWhitespace = false;
+        }
+        return sb.toString();
+    }
+
+    private static boolean isSeparator(final char ch) {
+        return ch == ',' || ch == ';' || ch == '(' || ch == ')' || ch == '[' || ch == ']' || ch == '{' || ch == '}';
+    }
+
     public final static Pattern pattern = Pattern.compile("\\{\\{(.*?)\\}\\}");
     public static void applyPlaceHolder(Map<String,String> expressionMap, Map<String,String> placeHolderMap){
         if(placeHolderMap == null || placeHolderMap.size() == 0){
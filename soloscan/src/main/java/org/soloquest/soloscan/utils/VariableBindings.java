@@ -0,0 +1,98 @@
+package org.soloquest.soloscan.utils;
+
+import org.soloquest.soloscan.dataset.ColumnSlots;
+import org.soloquest.soloscan.dataset.Row;
+
+import java.util.Map;
+
+/**
+ * The variables of one scan resolved against the layout of its rows: a column to its slot, a variable which is not a
+ * column to its value in the env, bound as a constant for the scan. It is owned by the row env of the scan, so the
+ * plans shared by concurrent executions keep no per-scan state, and it is dropped when the layout of the rows changes.
+ * <p>
+ * The variables are keyed by identity in an open addressing table, a variable is resolved on its first read.
+ */
+public final class VariableBindings {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int NOT_COLUMN = -1;
+
+    private final ColumnSlots columnSlots;
+    private final Map<String, Object> envMap;
+    private Object[] keys = new Object[INITIAL_CAPACITY];
+    private int[] slots = new int[INITIAL_CAPACITY];
+    private Object[] constants = new Object[INITIAL_CAPACITY];
+    private int size;
+
+    VariableBindings(ColumnSlots columnSlots, Map<String, Object> envMap) {
+        this.columnSlots = columnSlots;
+        this.envMap = envMap;
+    }
+
+    public ColumnSlots getColumnSlots() {
+        return columnSlots;
+    }
+
+    /**
+     * @param key  the variable, compared by identity
+     * @param hash the hash of the key, computed once by the variable
+     * @param name the name of the variable
+     * @param row  the current row of the scan, laid out by {@link #getColumnSlots()}
+     */
+    public Object getValue(Object key, int hash, String name, Row row) {
+        int mask = keys.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            Object k = keys[i];
+            if (k == key) {
+                int slot = slots[i];
+                return slot == NOT_COLUMN ? constants[i] : row.getValue(slot);
+            }
+            if (k == null) {
+                return bind(i, key, hash, name, row);
+            }
+        }
+    }
+
+    private Object bind(int index, Object key, int hash, String name, Row row) {
+        int slot = columnSlots.slot(name);
+        Object value = slot < 0 ? envMap.get(name) : null;
+        keys[index] = key;
+        slots[index] = slot < 0 ? NOT_COLUMN : slot;
+        constants[index] = value;
+        if (++size * 2 > keys.length) {
+            resize();
+        }
+        return slot < 0 ? value : row.getValue(slot);
+    }
+
+    private void resize() {
+        Object[] oldKeys = keys;
+        int[] oldSlots = slots;
+        Object[] oldConstants = constants;
+        keys = new Object[oldKeys.length * 2];
+        slots = new int[keys.length];
+        constants = new Object[keys.length];
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            Object key = oldKeys[j];
+            if (key == null) {
+                continue;
+            }
+            int i = hashOf(key) & mask;
+            while (keys[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            slots[i] = oldSlots[j];
+            constants[i] = oldConstants[j];
+        }
+    }
+
+    /**
+     * The hash a variable passes to {@link #getValue}, spread over the low bits.
+     */
+    public static int hashOf(Object key) {
+        int hash = System.identityHashCode(key) * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,60 @@
+package org.soloquest.soloscan.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The virtual threads of JDK 21+, looked up by reflection so that the library still runs on Java 8.
+ */
+@Slf4j
+public final class VirtualThreads {
+
+    private static final Method OF_VIRTUAL;
+    private static final Method NAME;
+    private static final Method FACTORY;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builderClass.getMethod("name", String.class, long.class);
+            factory = builderClass.getMethod("factory");
+            // a preview feature before JDK 21, unusable without --enable-preview
+            ofVirtual.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            ofVirtual = null;
+            log.debug("virtual threads are not supported by java {}", System.getProperty("java.version"));
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+    }
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * @return a factory of virtual threads named namePrefix-virtual-1, namePrefix-virtual-2...
+     * @throws UnsupportedOperationException before JDK 21
+     */
+    public static ThreadFactory newThreadFactory(String namePrefix) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("virtual threads need java 21+, the current one is " + System.getProperty("java.version"));
+        }
+        try {
+            Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), namePrefix + "-virtual-", 1L);
+            return (ThreadFactory) FACTORY.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("can not create virtual threads", e);
+        }
+    }
+}
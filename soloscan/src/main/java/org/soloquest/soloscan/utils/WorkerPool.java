@@ -0,0 +1,140 @@
+package org.soloquest.soloscan.utils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A long-lived pool of a bounded count of named threads with a bounded queue, a task submitted while all the threads
+ * are busy and the queue is full is rejected with {@link RejectedExecutionException}. Idle threads exit after a minute.
+ * <p>
+ * A pool of {@link #virtual(String, int) virtual threads} starts a thread for every task up to its max count of
+ * threads, a task blocked in I/O then parks its thread without holding an OS thread.
+ */
+public class WorkerPool {
+
+    private static final long KEEP_ALIVE_SECONDS = 60;
+    private static final long VIRTUAL_KEEP_ALIVE_SECONDS = 1;
+
+    private final String name;
+    private final boolean virtual;
+    private final int queueCapacity;
+    private final ThreadPoolExecutor executor;
+    private final LongAdder rejectedCount = new LongAdder();
+
+    /**
+     * @param queueCapacity the max count of waiting tasks, 0 means unbounded
+     */
+    public WorkerPool(String name, int threads, int queueCapacity) {
+        this(name, threads, queueCapacity > 0 ? new ArrayBlockingQueue<>(queueCapacity) : new LinkedBlockingQueue<>(),
+                queueCapacity, new WorkerThreadFactory(name), false);
+    }
+
+    private WorkerPool(String name, int threads, BlockingQueue<Runnable> queue, int queueCapacity, ThreadFactory threadFactory,
+                       boolean virtual) {
+        this.name = name;
+        this.virtual = virtual;
+        this.queueCapacity = queueCapacity;
+        int maxThreads = Math.max(1, threads);
+        this.executor = new ThreadPoolExecutor(maxThreads, maxThreads, virtual ? VIRTUAL_KEEP_ALIVE_SECONDS : KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, queue, threadFactory, (task, executor) -> {
+            rejectedCount.increment();
+            throw new RejectedExecutionException("the " + name + " pool is saturated, threads:" + executor.getMaximumPoolSize()
+                    + ", queue:" + executor.getQueue().size());
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * A pool of virtual threads without a queue, a task is rejected when threads tasks are running already.
+     *
+     * @throws UnsupportedOperationException before JDK 21
+     */
+    public static WorkerPool virtual(String name, int threads) {
+        return new WorkerPool(name, threads, new SynchronousQueue<>(), 0, VirtualThreads.newThreadFactory(name), true);
+    }
+
+    public <T> Future<T> submit(Callable<T> task) {
+        return executor.submit(task);
+    }
+
+    public Future<?> submit(Runnable task) {
+        return executor.submit(task);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    public int getMaxThreads() {
+        return executor.getMaximumPoolSize();
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * @return the count of live threads
+     */
+    public int getPoolSize() {
+        return executor.getPoolSize();
+    }
+
+    public int getLargestPoolSize() {
+        return executor.getLargestPoolSize();
+    }
+
+    /**
+     * @return the approximate count of threads running a task
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * @return the count of tasks waiting for a thread
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public long getCompletedTaskCount() {
+        return executor.getCompletedTaskCount();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return "WorkerPool{" +
+                "name='" + name + '\'' +
+                ", virtual=" + virtual +
+                ", maxThreads=" + getMaxThreads() +
+                ", poolSize=" + getPoolSize() +
+                ", activeCount=" + getActiveCount() +
+                ", queueSize=" + getQueueSize() +
+                ", queueCapacity=" + queueCapacity +
+                ", completedTaskCount=" + getCompletedTaskCount() +
+                ", rejectedCount=" + getRejectedCount() +
+                '}';
+    }
+}
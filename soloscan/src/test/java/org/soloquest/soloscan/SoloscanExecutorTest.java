@@ -0,0 +1,1510 @@
+package org.soloquest.soloscan;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.soloquest.soloscan.compiler.codegen.ClassDefiner;
+import org.soloquest.soloscan.compiler.codegen.CodeSizeMetrics;
+import org.soloquest.soloscan.dataset.ArrayDataSet;
+import org.soloquest.soloscan.dataset.ColumnSlots;
+import org.soloquest.soloscan.dataset.DataSet;
+import org.soloquest.soloscan.dataset.ListDataSet;
+import org.soloquest.soloscan.dataset.Schema;
+import org.soloquest.soloscan.dataset.TerminalRow;
+import org.soloquest.soloscan.exception.ExpressionCompileException;
+import org.soloquest.soloscan.exception.ExpressionExecuteException;
+import org.soloquest.soloscan.compiler.parser.AggFunctionText;
+import org.soloquest.soloscan.runtime.aggfunction.AggFunction;
+import org.soloquest.soloscan.runtime.aggfunction.CountAggFunction;
+import org.soloquest.soloscan.runtime.function.ConstantList;
+import org.soloquest.soloscan.runtime.lang.AbstractFunction;
+import org.soloquest.soloscan.runtime.lang.AdaptivePredicate;
+import org.soloquest.soloscan.runtime.lang.OperatorCallSite;
+import org.soloquest.soloscan.runtime.lang.SDouble;
+import org.soloquest.soloscan.runtime.lang.SJavaType;
+import org.soloquest.soloscan.runtime.lang.SLong;
+import org.soloquest.soloscan.runtime.lang.SObject;
+import org.soloquest.soloscan.runtime.lang.Numbers;
+import org.soloquest.soloscan.utils.MetricUtils;
+import org.soloquest.soloscan.utils.VirtualThreads;
+import org.soloquest.soloscan.utils.WorkerPool;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+@Slf4j
+public class SoloscanExecutorTest {
+
+    static List<Map<String, Object>> data;
+
+    @BeforeClass
+    public static synchronized void beforeClass() throws IOException {
+        if(data != null){
+            return ;
+        }
+        data = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        InputStream stream = SoloscanExecutorTest.class.getClassLoader().getResourceAsStream("data.xlsx");
+        XSSFWorkbook workbook = new XSSFWorkbook(stream);
+
+        log.warn("read execl:{}.ms",(System.currentTimeMillis()-start));
+
+        start = System.currentTimeMillis();
+        Sheet sheet = workbook.getSheetAt(0);
+        int rowNums = sheet.getPhysicalNumberOfRows();
+        log.warn("rowNums:{}",rowNums);
+
+        start = System.currentTimeMillis();
+        Row row = sheet.getRow(0);
+        List<String> key = new ArrayList<>();
+        for (Cell cell : row) {
+            cell.setCellType(CellType.STRING);
+            key.add(cell.getStringCellValue());
+        }
+        for(int i=1;i<rowNums;i++){
+            row = sheet.getRow(i);
+            if(row!=null){
+                Map<String,Object> map = new HashMap<>();
+                int count = 0;
+                for(int col = 0;col< key.size();col++){
+                    Cell cell = row.getCell(col);
+                    if(cell != null){
+                        cell.setCellType(CellType.STRING);
+                        String value = cell.getStringCellValue();
+                        if(value!=null && !value.equals("")){
+                            int intValue = Integer.parseInt(value);
+                            map.put(key.get(count),intValue);
+                        }
+                    }else{
+                        map.put(key.get(count),null);
+                    }
+                    count++;
+                }
+
+                if(count!= key.size()){
+                    throw new RuntimeException("rowNums:"+i+"count:"+count+",key size:"+key.size());
+                }
+                data.add(map);
+            }
+        }
+        log.warn("generate map:"+(System.currentTimeMillis()-start)+".ms");
+        SoloscanOptions.set(SoloscanOptions.GENERATE_CLASS.key(), true);
+    }
+
+
+    @Test
+    public void testExperiment() {
+        SoloscanExecutor instance = SoloscanExecutor.INSTANCE;
+        List<String> list = new ArrayList<>();
+        list.add("{count(SCCC)}");
+        list.add("{count(SCCC),grouping(SCCC,RQ),SCCC=20}");
+        list.add("{count(SCCC),grouping(SCCC),SCCC=20}");
+        list.add("{count(SCCC!=20)/count()}");
+        list.add("{count(SCCC),SCCC,SCCC=5||SCCC=11||SCCC=20}");
+        log.warn("result:{}",instance.executeList(list, new ListDataSet<>(data)));
+
+    }
+
+    @Test
+    public void testNoGrouping() {
+        SoloscanExecutor instance = SoloscanExecutor.INSTANCE;
+        Map<String, String> map = new HashMap<>();
+        map.put("row1", "{count(SCCC)} ");
+        map.put("row2", "{count(SCCC!=20)/count()}");
+        Map<String, Object> result = instance.execute(map, new ListDataSet<>(data));
+        Assert.assertEquals(result.size(), 2);
+        Assert.assertEquals(result.get("row1").getClass(), Long.class);
+        Assert.assertEquals(result.get("row2").getClass(), Double.class);
+    }
+
+    @Test
+    public void testCountAndCountblank() {
+        SoloscanExecutor instance = SoloscanExecutor.INSTANCE;
+        Map<String, String> map = new HashMap<>();
+        map.put("row1", "{count(SCCC)} ");
+        map.put("row2", "{count(SCCC!=20)}");
+        map.put("row3", "{count(SCCC!=20 || SCCC =20)}");
+        Map<String, Object> result = instance.execute(map, new ListDataSet<>(data));
+        Assert.assertEquals(result.size(), 3);
+        Assert.assertEquals(result.get("row1").getClass(), Long.class);
+        Assert.assertEquals(result.get("row2").getClass(), Long.class);
+        Assert.assertEquals(result.get("row3").getClass(), Long.class);
+        Assert.assertTrue(Numbers.equiv(result.get("row1"),result.get("row3")));
+        Assert.assertTrue(Numbers.gt(result.get("row1"),result.get("row2")));
+
+
+        map.put("row1", "{count(SCCC in [5,19,20])} ");
+        map.put("row2", "{count(SCCC in [5,19])}");
+        map.put("row3", "{count(SCCC in [5])}");
+        result = instance.execute(map, new ListDataSet<>(data));
+        Assert.assertEquals(result.size(), 3);
+        Assert.assertEquals(result.get("row1").getClass(), Long.class);
+        Assert.assertEquals(result.get("row2").getClass(), Long.class);
+        Assert.assertEquals(result.get("row3").getClass(), Long.class);
+        Assert.assertTrue(Numbers.gt(result.get("row1"),result.get("row2")));
+        Assert.assertTrue(Numbers.gt(result.get("row2"),result.get("row3")));
+
+
+        map.put("row1", "{countblank(SCCC)} ");
+        map.put("row2", "{count(SCCC!=null)}");
+        result = instance.execute(map, new ListDataSet<>(data));
+        Assert.assertEquals(result.get("row1").getClass(), Long.class);
+        Assert.assertEquals(result.get("row2").getClass(), Long.class);
+        Assert.assertTrue(Numbers.equiv(result.get("row1"),result.get("row2")));
+    }
+
+    @Test
+    public void testSumAndSumx(){
+
+        SoloscanExecutor instance = SoloscanExecutor.INSTANCE;
+        Object object = instance.execute("{count(SCCC)}", new ListDataSet<>(data));
+        Object object1 = instance.execute("{count(SCCC=xyz)}", new ListDataSet<>(data));
+        Object object2 = instance.execute("{count(SCCC!=xyz)}", new ListDataSet<>(data));
+        Assert.assertEquals(((Long) object).longValue(), ((Long) object1).longValue() + ((Long) object2).longValue());
+
+        object = instance.execute("{sum(SCCC)}", new ListDataSet<>(data));
+        object1 = instance.execute("{sum(SCCC)+sum(SCCC)}", new ListDataSet<>(data));
+        Assert.assertEquals(((Long) object).longValue() * 2, ((Long) object1).longValue());
+
+        object = instance.execute("{sum(SCCC),SCCC}", new ListDataSet<>(data));
+        object1 = instance.execute("{sum(SCCC),SCCC,SCCC=1} union {sum(SCCC),SCCC,SCCC!=1}", new ListDataSet<>(data));
+        Assert.assertTrue(object instanceof HashMap);
+        Assert.assertTrue(object1 instanceof HashMap);
+        Assert.assertEquals(object, object1);
+
+        object = instance.execute("{sum(SCCC),SCCC,SCCC=5||SCCC=20}", new ListDataSet<>(data));
+        object1 = instance.execute("{sum(SCCC),SCCC,SCCC=5} union {sum(SCCC),SCCC,SCCC=20}", new ListDataSet<>(data));
+        Assert.assertTrue(object instanceof HashMap);
+        Assert.assertTrue(object1 instanceof HashMap);
+        Assert.assertTrue(((HashMap) object).size() > 0);
+        Assert.assertTrue(((HashMap) object1).size() > 0);
+        Assert.assertEquals(object, object1);
+
+        object = instance.execute("{sum(SCCC)}", new ListDataSet<>(data));
+        object1 = instance.execute("{sum(SCCC=xyz)}", new ListDataSet<>(data));
+        object2 = instance.execute("{sum(SCCC!=xyz)}", new ListDataSet<>(data));
+        Assert.assertEquals(((Long) object).longValue(), ((Long) object1).longValue() + ((Long) object2).longValue());
+
+        object = instance.execute("{sum(SCCC)}", new ListDataSet<>(data));
+        object1 = instance.execute("{sumx(SCCC,SCCC=xyz)}", new ListDataSet<>(data));
+        object2 = instance.execute("{sumx(SCCC,SCCC!=xyz)}", new ListDataSet<>(data));
+        Assert.assertEquals(((Long) object).longValue(), ((Long) object1).longValue() + ((Long) object2).longValue());
+
+
+        object = instance.execute("{sum(SCCC),SCCC,SCCC=1 || SCCC=2}", new ListDataSet<>(data));
+        object1 = instance.execute("{sum(SCCC),SCCC,SCCC=1}", new ListDataSet<>(data));
+        object2 = instance.execute("{sum(SCCC),SCCC,SCCC=2}", new ListDataSet<>(data));
+        Object object3 = instance.execute("{sum(SCCC),SCCC,SCCC=1} union {sum(SCCC),SCCC,SCCC=2}", new ListDataSet<>(data));
+        Assert.assertTrue(object instanceof HashMap);
+        Assert.assertTrue(object1 instanceof HashMap);
+        Assert.assertTrue(object2 instanceof HashMap);
+        Assert.assertEquals(((HashMap) object).size(), 2);
+        Assert.assertEquals(((HashMap) object1).size(), 1);
+        Assert.assertEquals(((HashMap) object2).size(), 1);
+        Assert.assertEquals(object, MetricUtils.union(object1, object2));
+        Assert.assertEquals(object, object3);
+    }
+
+    @Test
+    public void testMinAndMinx() {
+
+        SoloscanExecutor instance = SoloscanExecutor.INSTANCE;
+        Object object1 = instance.execute("{min(SCCC)}", new ListDataSet<>(data));
+        Object object2 = instance.execute("{minx(SCCC,SCCC=xyz)}", new ListDataSet<>(data));
+        Object object3 = instance.execute("{minx(SCCC,SCCC!=xyz)}", new ListDataSet<>(data));
+        Assert.assertTrue(object1 instanceof Long);
+        Assert.assertTrue(object2 instanceof Long);
+        Assert.assertTrue(object3 instanceof Long);
+        Assert.assertTrue(((Long) object1).longValue() == ((Long) object2).longValue() || ((Long) object1).longValue() == ((Long) object3).longValue());
+    }
+
+    @Test
+    public void testAvgAndAvgx() {
+
+        SoloscanExecutor instance = SoloscanExecutor.INSTANCE;
+        Object object1 = instance.execute("{average(SCCC)}", new ListDataSet<>(data));
+        Assert.assertTrue(object1 instanceof Double);
+        Object object2 = instance.execute("{averageX(SCCC,SCCC>"+((Double)object1).doubleValue()+")}", new ListDataSet<>(data));
+        Assert.assertTrue(object2 instanceof Double);
+        if(Numbers.gt(object1,0)) {
+            Assert.assertTrue(((Double) object2).doubleValue() > ((Double) object1).doubleValue());
+        }
+    }
+
+    @Test
+    public void testMaxAndMaxx() {
+        SoloscanExecutor instance = SoloscanExecutor.INSTANCE;
+        Object object1 = instance.execute("{max(SCCC)}", new ListDataSet<>(data));
+        Object object2 = instance.execute("{maxx(SCCC,SCCC=xyz)}", new ListDataSet<>(data));
+        Object object3 = instance.execute("{maxx(SCCC,SCCC!=xyz)}", new ListDataSet<>(data));
+        Assert.assertTrue(object1 instanceof Long);
+        Assert.assertTrue(object2 instanceof Long);
+        Assert.assertTrue(object3 instanceof Long);
+        Assert.assertTrue(((Long) object1).longValue() == ((Long) object2).longValue() || ((Long) object1).longValue() == ((Long) object3).longValue());
+    }
+
+
+    @Test
+    public void testHaveGrouping() {
+        SoloscanExecutor instance = SoloscanExecutor.INSTANCE;
+        Map<String, String> map = new HashMap<>();
+        map.put("row1", "{count(SCCC),SCCC,SCCC=5||SCCC=11}");
+        map.put("row2", "{count(SCCC)/count(),SCCC,SCCC=5||SCCC=11||SCCC=20}");
+        Map<String, Object> result = instance.execute(map, new ListDataSet<>(data));
+        Assert.assertEquals(result.size(), 2);
+        Assert.assertEquals(result.get("row1").getClass(), HashMap.class);
+        Assert.assertEquals(result.get("row2").getClass(), HashMap.class);
+        Assert.assertEquals(((HashMap) result.get("row1")).size(), 2);
+        Assert.assertEquals(((HashMap) result.get("row2")).size(), 3);
+    }
+
+    @Test
+    public void testMultiExpression() {
+        SoloscanExecutor instance = SoloscanExecutor.INSTANCE;
+        Map<String, String> map = new HashMap<>();
+        Map<String, Object> result=null;
+        map.put("row1", "{count(SCCC),SCCC,SCCC=5||SCCC=11||SCCC=20}");
+        map.put("row2", "{count(SCCC),SCCC,SCCC=5;count(SCCC),SCCC,SCCC=5} union {count(SCCC),SCCC,SCCC=11;count(SCCC),SCCC,SCCC=5} union {count(SCCC),SCCC,SCCC=20}");
+        result = instance.execute(map, new ListDataSet<>(data));
+        Assert.assertEquals(result.size(), 2);
+        Assert.assertEquals(result.get("row1").getClass(), HashMap.class);
+        Assert.assertEquals(result.get("row2").getClass(), HashMap.class);
+        Assert.assertEquals(result.get("row1"), result.get("row2"));
+
+
+        map.put("row1", "{count(SCCC),SCCC}");
+        map.put("row2", "{count(SCCC),SCCC} union {count(SCCC),SCCC}");
+        map.put("row3", "{count(SCCC),SCCC} union {count(SCCC),SCCC}");
+        result = instance.execute(map, new ListDataSet<>(data));
+        Assert.assertEquals(result.size(), 3);
+        Assert.assertEquals(result.get("row1").getClass(), HashMap.class);
+        Assert.assertEquals(result.get("row2").getClass(), HashMap.class);
+        Assert.assertEquals(result.get("row3").getClass(), HashMap.class);
+        Assert.assertEquals(result.get("row1"), result.get("row2"));
+        Assert.assertEquals(result.get("row1"), result.get("row3"));
+
+
+        map.put("row1", "{count(SCCC)/count(S3),SCCC,SCCC=5||SCCC=11||SCCC=20}");
+        map.put("row2", "{count(SCCC),SCCC,SCCC=5||SCCC=11||SCCC=20} / {count(S3),SCCC,SCCC=5||SCCC=11||SCCC=20}");
+        result = instance.execute(map, new ListDataSet<>(data));
+        Assert.assertEquals(result.size(), 3);
+        Assert.assertEquals(result.get("row1").getClass(), HashMap.class);
+        Assert.assertEquals(result.get("row2").getClass(), HashMap.class);
+        Assert.assertEquals(result.get("row1"), result.get("row2"));
+    }
+
+    @Test
+    public void testSlide() {
+        SoloscanExecutor instance = SoloscanExecutor.INSTANCE;
+        Map<String, String> map = new HashMap<>();
+        map.put("row1", "{count(QD2f2_1 in [4,5])/count(QA1_2=1),week,week in range(500,520,1)}");
+        map.put("row2", "slide({count(QD2f2_1 in [4,5])/count(QA1_2=1),week,week in range(500,520,1)},4)");
+        Map<String, Object> result = instance.execute(map, new ListDataSet<>(data));
+        Assert.assertEquals(result.size(), 2);
+        Assert.assertEquals(result.get("row1").getClass(), HashMap.class);
+        Assert.assertEquals(result.get("row2").getClass(), HashMap.class);
+    }
+
+    @Test
+    public void testFilterHasMethod() {
+        SoloscanExecutor instance = SoloscanExecutor.INSTANCE;
+        Map<String, String> map = new HashMap<>();
+        Map<String, Object> result;
+        Object row1,row2;
+        map.put("row1", "{count(SCCC),SCCC,SCCC=5||SCCC=11}");
+        map.put("row2", "{count(SCCC),SCCC,SCCC in [5,11]}");
+        result = instance.execute(map, new ListDataSet<>(data));
+        Assert.assertEquals(result.size(), 2);
+        row1 = result.get("row1");
+        row2 = result.get("row2");
+        Assert.assertEquals(row1.getClass(), HashMap.class);
+        Assert.assertEquals(row2.getClass(), HashMap.class);
+        Assert.assertEquals(row1,row2);
+
+        map.put("row1", "{count(SCCC=5||SCCC=11),SCCC}");
+        map.put("row2", "{count(),SCCC,SCCC in [5,11]}");
+        result = instance.execute(map, new ListDataSet<>(data));
+        Assert.assertEquals(result.size(), 2);
+        row1 = result.get("row1");
+        row2 = result.get("row2");
+        Assert.assertEquals(row1.getClass(), HashMap.class);
+        Assert.assertEquals(row2.getClass(), HashMap.class);
+        assertEqualsAfterRemoveZero(row1,row2);
+
+        map.put("row1", "{count(SCCC in [5,11]),SCCC}");
+        map.put("row2", "{count(),SCCC,SCCC in [5,11]}");
+        result = instance.execute(map, new ListDataSet<>(data));
+        Assert.assertEquals(result.size(), 2);
+        row1 = result.get("row1");
+        row2 = result.get("row2");
+        Assert.assertEquals(row1.getClass(), HashMap.class);
+        Assert.assertEquals(row2.getClass(), HashMap.class);
+        assertEqualsAfterRemoveZero(row1,row2);
+
+    }
+
+    @Test
+    public void testAddCalcColumn() {
+        SoloscanExecutor instance = SoloscanExecutor.INSTANCE;
+        DataSet dataSet = new ListDataSet<>(data);
+        dataSet.addCalcColumn("newColumn", row -> {
+            Object obj = row.getValue("SCCC");
+            if (obj == null) {
+                return "x";
+            }
+            try {
+                int i = Integer.parseInt(obj.toString());
+                if (i < 20) {
+                    return "111";
+                } else {
+                    return "222";
+                }
+            } catch (Exception e) {
+                return "xxx";
+            }
+
+        });
+        Object result = instance.execute("{count(SCCC),newColumn}", dataSet);
+        Assert.assertEquals(result.getClass(), HashMap.class);
+        Assert.assertTrue(((HashMap) result).size() <= 3);
+    }
+
+    @Test
+    public void testCompileException() {
+        SoloscanExecutor instance = SoloscanExecutor.INSTANCE;
+        try {
+            instance.execute("{count(SCCC);SCCC=1}a", new ListDataSet<>(data));
+            Assert.fail();
+        } catch (ExpressionCompileException e) {
+        }
+
+        try {
+            instance.execute("{count(SCCC),SCCC=1", new ListDataSet<>(data));
+            Assert.fail();
+        } catch (ExpressionCompileException e) {
+        }
+
+
+        try {
+            instance.execute("count(SCCC)+SCCC=1;=", new ListDataSet<>(data));
+            Assert.fail();
+        } catch (ExpressionCompileException e) {
+        }
+    }
+
+    @Test
+    public void testExecuteException() {
+        SoloscanExecutor instance = SoloscanExecutor.INSTANCE;
+        try {
+            instance.execute("count(SCCC)+1", new ListDataSet<>(data));
+            Assert.fail();
+        } catch (ExpressionExecuteException eee) {
+        }
+        try {
+            instance.execute("{count(SCCC)-2}", new ListDataSet<>(data));
+            Assert.fail();
+        } catch (ExpressionExecuteException eee) {
+        }
+
+        try{
+            Map<String,String> map = new HashMap<>();
+            map.put("row1", "{count(QA2_8 =1)/count(QA2_8 in [0,1]),no_existed_group;count(QA2_8!=null),no_existed_group}");
+            map.put("row2", "{count(QA2_8 =1)/count(QA2_8 in [0,1]),no_existed_group,;count(QA2_8!=null),no_existed_group,}");
+            instance.execute(map, new ListDataSet<>(data));
+            Assert.fail();
+        }catch (ExpressionExecuteException eee){
+
+        }
+    }
+
+
+    @Test
+    public void testExecuteWithPlaceHold() {
+        SoloscanExecutor instance = SoloscanExecutor.INSTANCE;
+        Map<String, String> map = new HashMap<>();
+        Map<String, Object> result;
+        map.put("row1", "{count(SCCC),SCCC,SCCC=5} union {count(SCCC),SCCC,SCCC=11} union {count(SCCC),SCCC,SCCC=9 }");
+        map.put("row2", "{count(SCCC),SCCC,SCCC in [5,11,9]}");
+        result = instance.execute(map, new ListDataSet<>(data));
+        Object row1 = result.get("row1");
+        Object row2 = result.get("row2");
+
+        map.put("row3", "{count({{key1}}),SCCC,SCCC=5} union {count(SCCC),SCCC,SCCC=11} union {count(SCCC),SCCC,SCCC=9} ");
+        map.put("row4", "{count({{key1}}),SCCC,SCCC in [{{key2}}]}");
+        Map<String, String> replaceHoldMap = new HashMap<>();
+        replaceHoldMap.put("key1","SCCC");
+        replaceHoldMap.put("key2","5,11,9");
+
+        result = instance.executeWithPlaceHold(map,replaceHoldMap, new ListDataSet<>(data));
+        Object row3 = result.get("row3");
+        Object row4 = result.get("row4");
+
+        Assert.assertEquals(row1,row3);
+        Assert.assertEquals(row2,row4);
+    }
+
+
+    @Test
+    public void testExecuteWithExecuteTimeout() {
+        SoloscanOptions.set(SoloscanOptions.EXECUTE_TIMEOUT_MS.key(),10);
+        SoloscanExecutor instance = SoloscanExecutor.INSTANCE;
+        Map<String, String> map = new HashMap<>();
+        Map<String, Object> result;
+        int count = 10;
+        for(int i=0;i<count;i++)
+        map.put("row"+i, "{count(SCCC),SCCC,SCCC=5} union {count(SCCC),SCCC,SCCC=11} union {count(SCCC),SCCC,SCCC=9 }");
+        try{
+            // a slow data set, the inline scan of the few test rows may finish within the timeout
+            result = instance.execute(map, new ListDataSet<Map<String, Object>>(data) {
+                private boolean slept;
+
+                @Override
+                public org.soloquest.soloscan.dataset.Row next() {
+                    if (!slept) {
+                        slept = true;
+                        try {
+                            Thread.sleep(50);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    return super.next();
+                }
+            });
+            Assert.fail();
+        }catch (Exception e){
+            Assert.assertTrue(e instanceof ExpressionExecuteException);
+            Assert.assertTrue(e.getCause() instanceof TimeoutException);
+        }
+
+        SoloscanOptions.set(SoloscanOptions.EXECUTE_TIMEOUT_MS.key(),0);
+        result = instance.execute(map, new ListDataSet<>(data));
+        Assert.assertEquals(result.size(),count);
+    }
+
+    @Test
+    public void testExpressionCache() {
+        SoloscanExecutor instance = new SoloscanExecutor();
+        SoloscanCache<String, Expression> cache = instance.getExpressionCache();
+        Object object1 = instance.execute("{count(SCCC),SCCC,SCCC in [5,11]}", new ListDataSet<>(data));
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(0, cache.getHitCount());
+        Object object2 = instance.execute("  {count(SCCC),SCCC,SCCC   in [5,11]} ", new ListDataSet<>(data));
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(object1, object2);
+
+        Assert.assertTrue(instance.invalidateExpression("{count(SCCC),SCCC,SCCC in [5,11]}"));
+        Assert.assertEquals(0, cache.size());
+        Object object3 = instance.execute("{count(SCCC),SCCC,SCCC in [5,11]}", new ListDataSet<>(data));
+        Assert.assertEquals(2, cache.getMissCount());
+        Assert.assertEquals(object1, object3);
+
+        try {
+            instance.execute("{count(SCCC),SCCC=1", new ListDataSet<>(data));
+            Assert.fail();
+        } catch (ExpressionCompileException e) {
+        }
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testGeneratedClassBudget() {
+        SoloscanOptions.set(SoloscanOptions.GENERATE_CLASS_BUDGET.key(), 5);
+        SoloscanExecutor instance;
+        try {
+            instance = new SoloscanExecutor();
+        } finally {
+            SoloscanOptions.set(SoloscanOptions.GENERATE_CLASS_BUDGET.key(), 0);
+        }
+        long defined = ClassDefiner.getDefinedClassCount();
+        Expression expression1 = instance.compile("{count(SCCC),SCCC,SCCC=5}");
+        // solo expression and metric unit, the inner of count is shared by the executor
+        Assert.assertEquals(2, expression1.getGeneratedClassCount());
+        Assert.assertSame(expression1, instance.compile("{count(SCCC),SCCC,SCCC=5}"));
+        Expression expression2 = instance.compile("{count(SCCC),SCCC,SCCC=11}");
+        Assert.assertEquals(4, instance.getExpressionCache().getTotalWeight());
+        Assert.assertTrue(ClassDefiner.getDefinedClassCount() - defined >= 5);
+        Assert.assertEquals(1, instance.getAggInnerCache().size());
+
+        instance.compile("{count(SCCC),SCCC,SCCC=20}");
+        Assert.assertEquals(2, instance.getExpressionCache().size());
+        Assert.assertEquals(1, instance.getExpressionCache().getEvictionCount());
+        Assert.assertSame(expression2, instance.compile("{count(SCCC),SCCC,SCCC=11}"));
+        Assert.assertNotSame(expression1, instance.compile("{count(SCCC),SCCC,SCCC=5}"));
+    }
+
+    @Test
+    public void testExpressionCacheEviction() throws Exception {
+        SoloscanCache<String, String> cache = new SoloscanCache<>(true, 2, String::toUpperCase);
+        cache.getR("a");
+        cache.getR("b");
+        cache.getR("a");
+        cache.getR("c");
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(1, cache.getEvictionCount());
+        cache.getR("a");
+        Assert.assertEquals(2, cache.getHitCount());
+        cache.getR("b");
+        Assert.assertEquals(4, cache.getMissCount());
+    }
+
+    @Test
+    public void testConcurrentExecuteSameExpression() throws Exception {
+        SoloscanExecutor instance = SoloscanExecutor.INSTANCE;
+        String expressionString = "{count(SCCC)/count(),SCCC,SCCC in [5,11,20]}";
+        Expression expression = instance.compile(expressionString);
+        Assert.assertSame(expression, instance.compile(expressionString));
+        Object expected = instance.execute(expressionString, new ListDataSet<>(data));
+
+        int threads = 8;
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < threads * 4; i++) {
+                futures.add(executorService.submit(() -> {
+                    ExpressionInstance expressionInstance = expression.newInstance();
+                    DataProvider.work(new ListDataSet<>(data), expressionInstance);
+                    return expressionInstance.execute(null);
+                }));
+            }
+            for (Future<Object> future : futures) {
+                Assert.assertEquals(expected, future.get());
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testBytecodeCache() throws Exception {
+        java.nio.file.Path directory = java.nio.file.Files.createTempDirectory("soloscan_bytecode_test");
+        SoloscanOptions.set(SoloscanOptions.BYTECODE_CACHE.key(), true);
+        SoloscanOptions.set(SoloscanOptions.BYTECODE_CACHE_PATH.key(), directory.toString());
+        try {
+            String expressionString = "{count(SCCC),SCCC,SCCC=5||SCCC=11||SCCC=20} / {count(S3),SCCC,SCCC=5||SCCC=11||SCCC=20}";
+            SoloscanExecutor instance1 = new SoloscanExecutor();
+            Object expected = instance1.execute(expressionString, new ListDataSet<>(data));
+            Assert.assertEquals(1, instance1.getBytecodeCache().getStoreCount());
+
+            // a fresh executor behaves like a restarted process
+            SoloscanExecutor instance2 = new SoloscanExecutor();
+            Assert.assertEquals(expected, instance2.execute(expressionString, new ListDataSet<>(data)));
+            Assert.assertEquals(1, instance2.getBytecodeCache().getLoadCount());
+            Assert.assertEquals(0, instance2.getBytecodeCache().getStoreCount());
+
+            // a corrupted entry is dropped and compiled again
+            try (java.nio.file.DirectoryStream<java.nio.file.Path> files = java.nio.file.Files.newDirectoryStream(directory)) {
+                for (java.nio.file.Path file : files) {
+                    java.nio.file.Files.write(file, new byte[]{1, 2, 3});
+                }
+            }
+            SoloscanExecutor instance3 = new SoloscanExecutor();
+            Assert.assertEquals(expected, instance3.execute(expressionString, new ListDataSet<>(data)));
+            Assert.assertEquals(1, instance3.getBytecodeCache().getFailureCount());
+            Assert.assertEquals(1, instance3.getBytecodeCache().getStoreCount());
+        } finally {
+            SoloscanOptions.set(SoloscanOptions.BYTECODE_CACHE.key(), false);
+        }
+    }
+
+    @Test
+    public void testExpressionCatalog() throws Exception {
+        Map<String, String> catalog = new HashMap<>();
+        catalog.put("ratio", "{count(SCCC),SCCC,SCCC=5||SCCC=11} / {count(S3),SCCC,SCCC=5||SCCC=11}");
+        catalog.put("count", "{count(SCCC),SCCC,  SCCC in [5,11,20]}");
+        java.nio.file.Path jar = java.nio.file.Files.createTempFile("soloscan_catalog", ".jar");
+        try (java.io.OutputStream out = java.nio.file.Files.newOutputStream(jar)) {
+            new org.soloquest.soloscan.compiler.ExpressionCatalog(new SoloscanExecutor()).write(catalog, out);
+        }
+
+        SoloscanExecutor instance = new SoloscanExecutor();
+        try (java.net.URLClassLoader resourceLoader = new java.net.URLClassLoader(new java.net.URL[]{jar.toUri().toURL()}, null)) {
+            instance.loadCatalog(resourceLoader);
+        }
+        Assert.assertEquals(catalog.keySet(), instance.getCatalogExpressionIds());
+        for (Map.Entry<String, String> entry : catalog.entrySet()) {
+            Expression expression = instance.getCatalogExpression(entry.getKey());
+            ExpressionInstance expressionInstance = expression.newInstance();
+            DataProvider.work(new ListDataSet<>(data), expressionInstance);
+            Assert.assertEquals(SoloscanExecutor.INSTANCE.execute(entry.getValue(), new ListDataSet<>(data)), expressionInstance.execute(null));
+            // the text hits the preloaded expression too
+            Assert.assertSame(expression, instance.compile(entry.getValue()));
+        }
+        Assert.assertEquals(0, instance.getExpressionCache().getMissCount());
+    }
+
+    @Test
+    public void testParallelCompile() {
+        SoloscanExecutor instance = new SoloscanExecutor();
+        Map<String, String> expressionStringMap = new HashMap<>();
+        for (int i = 0; i < 24; i++) {
+            expressionStringMap.put("item" + i, "{count(SCCC),SCCC,SCCC=" + (i % 12) + "}");
+        }
+        Map<String, Expression> expressionMap = new org.soloquest.soloscan.compiler.SoloscanCompiler(instance,
+                instance.getSoloscanClassLoader(), expressionStringMap).compile();
+        Assert.assertEquals(new TreeSet<>(expressionStringMap.keySet()), new TreeSet<>(expressionMap.keySet()));
+        for (Map.Entry<String, Expression> entry : expressionMap.entrySet()) {
+            Assert.assertEquals(expressionStringMap.get(entry.getKey()), entry.getValue().getExpressionString());
+            Assert.assertEquals(2, entry.getValue().getGeneratedClassCount());
+            Assert.assertTrue(entry.getValue().getCompileTimeNanos() > 0);
+        }
+
+        Map<String, Object> result = instance.execute(expressionStringMap, new ListDataSet<>(data));
+        // identical texts of one request are compiled once
+        Assert.assertEquals(12, instance.getExpressionCache().getMissCount());
+        for (Map.Entry<String, String> entry : expressionStringMap.entrySet()) {
+            Assert.assertEquals(SoloscanExecutor.INSTANCE.execute(entry.getValue(), new ListDataSet<>(data)), result.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void testSharedAggInner() {
+        SoloscanExecutor instance = new SoloscanExecutor();
+        BaseSoloExpression expression1 = (BaseSoloExpression) instance.compile("{sumx(SCCC,SCCC=5),SCCC} / {count(SCCC),SCCC}");
+        BaseSoloExpression expression2 = (BaseSoloExpression) instance.compile("{maxx(SCCC, SCCC=5),SCCC} - {count(SCCC),SCCC,SCCC!=3}");
+        Assert.assertEquals(2, instance.getAggInnerCache().getMissCount());
+        Set<Object> aggInners1 = aggInners(expression1);
+        Assert.assertEquals(2, aggInners1.size());
+        Assert.assertEquals(aggInners1, aggInners(expression2));
+        Assert.assertEquals(instance.execute("{sumx(SCCC,SCCC=5),SCCC} / {count(SCCC),SCCC}", new ListDataSet<>(data)),
+                SoloscanExecutor.INSTANCE.execute("{sumx(SCCC,SCCC=5),SCCC} / {count(SCCC),SCCC}", new ListDataSet<>(data)));
+    }
+
+    private Set<Object> aggInners(BaseSoloExpression expression) {
+        Set<Object> aggInners = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (MetricUnitExpression metricUnitExpression : expression.getMetricUnitExpressions()) {
+            for (AggFunctionUnit aggFunctionUnit : metricUnitExpression.getAggFunctionUnits()) {
+                aggInners.add(aggFunctionUnit.getAggInner());
+            }
+        }
+        return aggInners;
+    }
+
+    @Test
+    public void testSharedMetricUnit() {
+        SoloscanExecutor instance = new SoloscanExecutor();
+        Map<String, String> expressionStringMap = new HashMap<>();
+        expressionStringMap.put("row1", "{count(SCCC),SCCC,SCCC=5||SCCC=11} / {count(S3),SCCC,SCCC=5||SCCC=11}");
+        expressionStringMap.put("row2", "{count(S3),SCCC,SCCC=5||SCCC=11} / {count(SCCC),SCCC,SCCC=5||SCCC=11}");
+        expressionStringMap.put("row3", "{count(SCCC),SCCC,SCCC=5||SCCC=11} union {count(SCCC),SCCC,SCCC=20}");
+        expressionStringMap.put("row4", "{count(S3),SCCC, SCCC=5||SCCC=11}");
+        Map<String, Object> shared = instance.execute(expressionStringMap, new ListDataSet<>(data));
+
+        Map<String, MetricUnitInstance> sharedInstances = new HashMap<>();
+        SoloExpressionInstance instance1 = ((BaseSoloExpression) instance.compile(expressionStringMap.get("row1"))).newInstance(sharedInstances);
+        SoloExpressionInstance instance4 = ((BaseSoloExpression) instance.compile(expressionStringMap.get("row4"))).newInstance(sharedInstances);
+        Assert.assertSame(instance1.getMetricUnitInstances().get(1), instance4.getMetricUnitInstances().get(0));
+        Assert.assertTrue(instance4.getMetricUnitInstances().get(0).isShared());
+
+        SoloscanOptions.set(SoloscanOptions.METRIC_UNIT_SHARING.key(), false);
+        try {
+            Assert.assertEquals(instance.execute(expressionStringMap, new ListDataSet<>(data)), shared);
+        } finally {
+            SoloscanOptions.set(SoloscanOptions.METRIC_UNIT_SHARING.key(), true);
+        }
+    }
+
+    @Test
+    public void testScanMode() {
+        SoloscanExecutor instance = new SoloscanExecutor();
+        Map<String, String> expressionStringMap = new HashMap<>();
+        expressionStringMap.put("row1", "{count(SCCC),SCCC,SCCC=5||SCCC=11} / {count(S3),SCCC,SCCC=5||SCCC=11}");
+        expressionStringMap.put("row2", "{count(S3),SCCC,SCCC=5||SCCC=11} union {sum(SCCC),SCCC,SCCC=20}");
+        expressionStringMap.put("row3", "{sum(SCCC)}");
+        Set<Thread> scanThreads = Collections.synchronizedSet(new HashSet<>());
+        Map<String, Object> inline = instance.execute(expressionStringMap, new ListDataSet<Map<String, Object>>(data) {
+            @Override
+            public org.soloquest.soloscan.dataset.Row next() {
+                scanThreads.add(Thread.currentThread());
+                return super.next();
+            }
+        });
+        Assert.assertEquals(Collections.singleton(Thread.currentThread()), scanThreads);
+
+        SoloscanOptions.set(SoloscanOptions.SCAN_MODE.key(), ScanMode.THREADED);
+        try {
+            Assert.assertEquals(inline, instance.execute(expressionStringMap, new ListDataSet<>(data)));
+            // a ring of two small batches, the data provider waits for the slowest expression
+            SoloscanOptions.set(SoloscanOptions.SCAN_BATCH_SIZE.key(), 7);
+            SoloscanOptions.set(SoloscanOptions.SCAN_RING_BUFFER_BATCHES.key(), 2);
+            for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+                SoloscanOptions.set(SoloscanOptions.SCAN_WAIT_STRATEGY.key(), waitStrategy);
+                Assert.assertEquals(inline, instance.execute(expressionStringMap, new ListDataSet<>(data)));
+            }
+
+            // a consumer per expression, the ones after the first are drained on the evaluation pool, the first
+            // holds its first row until another one has consumed a row
+            Set<String> consumerThreads = Collections.synchronizedSet(new HashSet<>());
+            CountDownLatch fannedOut = new CountDownLatch(1);
+            ExpressionInstance[] consumers = new ExpressionInstance[3];
+            for (int i = 0; i < consumers.length; i++) {
+                boolean first = i == 0;
+                consumers[i] = new ExpressionInstance() {
+                    @Override
+                    public Object execute(Map<String, Object> map) {
+                        return null;
+                    }
+
+                    @Override
+                    public boolean consumeRow(org.soloquest.soloscan.dataset.Row row) {
+                        consumerThreads.add(Thread.currentThread().getName());
+                        if (!first) {
+                            fannedOut.countDown();
+                        } else if (row != TerminalRow.INSTANCE) {
+                            try {
+                                fannedOut.await(10, TimeUnit.SECONDS);
+                            } catch (InterruptedException e) {
+                                throw new AssertionError(e);
+                            }
+                        }
+                        return true;
+                    }
+                };
+            }
+            DataProvider.work(new ListDataSet<>(data), null, consumers);
+            Assert.assertTrue(consumerThreads.contains(Thread.currentThread().getName()));
+            Assert.assertTrue(consumerThreads.toString(), consumerThreads.stream().anyMatch(name -> name.startsWith("soloscan-evaluation")));
+        } finally {
+            SoloscanOptions.set(SoloscanOptions.SCAN_MODE.key(), ScanMode.INLINE);
+            SoloscanOptions.set(SoloscanOptions.SCAN_BATCH_SIZE.key(), 1024);
+            SoloscanOptions.set(SoloscanOptions.SCAN_RING_BUFFER_BATCHES.key(), 16);
+            SoloscanOptions.set(SoloscanOptions.SCAN_WAIT_STRATEGY.key(), WaitStrategy.BLOCKING);
+        }
+    }
+
+    @Test
+    public void testConcurrentProcess() {
+        SoloscanExecutor instance = new SoloscanExecutor();
+        Map<String, String> expressionStringMap = new HashMap<>();
+        expressionStringMap.put("row1", "{count(SCCC),SCCC,SCCC=5||SCCC=11} / {count(S3),SCCC,SCCC=5||SCCC=11}");
+        expressionStringMap.put("row2", "{max(S3)-min(S3)+countblank(S3),SCCC} union {sum(SCCC),SCCC,SCCC=20}");
+        expressionStringMap.put("row3", "{average(SCCC)+sumx(SCCC,SCCC>5)}");
+        Map<String, Object> serial = instance.execute(expressionStringMap, new ListDataSet<>(data));
+
+        SoloscanOptions.set(SoloscanOptions.CONCURRENT_PROCESSS.key(), true);
+        SoloscanOptions.set(SoloscanOptions.SCAN_MORSEL_SIZE.key(), 7);
+        SoloscanOptions.set(SoloscanOptions.SCAN_PARALLELISM.key(), 4);
+        try {
+            for (int i = 0; i < 10; i++) {
+                Assert.assertEquals(serial, instance.execute(expressionStringMap, new ListDataSet<>(data)));
+            }
+        } finally {
+            SoloscanOptions.set(SoloscanOptions.CONCURRENT_PROCESSS.key(), false);
+            SoloscanOptions.set(SoloscanOptions.SCAN_MORSEL_SIZE.key(), 4096);
+            SoloscanOptions.set(SoloscanOptions.SCAN_PARALLELISM.key(), Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    @Test
+    public void testAggFunctionState() throws IOException {
+        SoloscanExecutor instance = new SoloscanExecutor();
+        long[][] partitions = {{3, -7, 12}, {}, {Integer.MIN_VALUE - 5L, 4}};
+        for (String name : new String[]{"count", "sum", "average", "max", "min"}) {
+            Assert.assertTrue(instance.isMergeableAggFunction(name));
+            AggFunction all = instance.getAggFunction(name).apply(new AggFunctionText(name));
+            AggFunction merged = instance.getAggFunction(name).apply(new AggFunctionText(name));
+            Assert.assertTrue(merged.isIdentity());
+            for (long[] partition : partitions) {
+                AggFunction partial = instance.getAggFunction(name).apply(new AggFunctionText(name));
+                for (long value : partition) {
+                    all.accumulate(null, value);
+                    partial.accumulate(null, value);
+                }
+                Assert.assertEquals(partition.length == 0, partial.isIdentity());
+                // the partial travels in its binary form
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                partial.writeState(new DataOutputStream(bytes));
+                AggFunction copy = instance.getAggFunction(name).apply(new AggFunctionText(name));
+                copy.readState(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+                Assert.assertEquals(partial.getValue(), copy.getValue());
+                merged.merge(copy);
+            }
+            Assert.assertEquals(name, all.getValue(), merged.getValue());
+            merged.reset();
+            Assert.assertTrue(merged.isIdentity());
+            Assert.assertEquals(instance.getAggFunction(name).apply(new AggFunctionText(name)).getValue(), merged.getValue());
+        }
+
+        // a user function which is not declared mergeable is aggregated by one thread
+        instance.addAggFunction("cnt", CountAggFunction::new);
+        Assert.assertFalse(instance.isMergeableAggFunction("cnt"));
+        Object expected = instance.execute("{count(SCCC),SCCC}", new ListDataSet<>(data));
+        SoloscanOptions.set(SoloscanOptions.CONCURRENT_PROCESSS.key(), true);
+        SoloscanOptions.set(SoloscanOptions.SCAN_MORSEL_SIZE.key(), 7);
+        try {
+            Assert.assertEquals(expected, instance.execute("{cnt(SCCC),SCCC}", new ListDataSet<>(data)));
+        } finally {
+            SoloscanOptions.set(SoloscanOptions.CONCURRENT_PROCESSS.key(), false);
+            SoloscanOptions.set(SoloscanOptions.SCAN_MORSEL_SIZE.key(), 4096);
+        }
+    }
+
+    @Test
+    public void testSharedPools() throws Exception {
+        SoloscanExecutor instance = new SoloscanExecutor();
+        Map<String, String> expressionStringMap = new HashMap<>();
+        expressionStringMap.put("row1", "{count(SCCC),SCCC,SCCC=5||SCCC=11}");
+        expressionStringMap.put("row2", "{sum(SCCC)}");
+        Set<String> threadNames = Collections.synchronizedSet(new HashSet<>());
+        instance.addFunction(new AbstractFunction() {
+            @Override
+            public String getName() {
+                return "threadName";
+            }
+
+            @Override
+            public SObject call(Map<String, Object> env) {
+                threadNames.add(Thread.currentThread().getName());
+                return SLong.valueOf(0);
+            }
+        });
+        expressionStringMap.put("row3", "threadName() + 1");
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(3, instance.execute(expressionStringMap, new ListDataSet<>(data)).size());
+        }
+        WorkerPool evaluation = SoloscanPools.evaluation();
+        Assert.assertTrue(evaluation.getLargestPoolSize() > 0);
+        Assert.assertTrue(evaluation.getLargestPoolSize() <= SoloscanOptions.getOption(SoloscanOptions.EVALUATION_POOL_SIZE));
+        Assert.assertFalse(threadNames.isEmpty());
+        Assert.assertTrue(threadNames.stream().allMatch(name -> name.startsWith("soloscan-evaluation")));
+        Assert.assertTrue(SoloscanPools.getPools().contains(evaluation));
+
+        // a bounded pool rejects the tasks beyond its threads and queue
+        WorkerPool pool = new WorkerPool("test", 1, 1);
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            pool.submit(() -> {
+                latch.await();
+                return null;
+            });
+            pool.submit(() -> null);
+            try {
+                pool.submit(() -> null);
+                Assert.fail();
+            } catch (java.util.concurrent.RejectedExecutionException e) {
+                Assert.assertEquals(1, pool.getRejectedCount());
+                Assert.assertEquals(1, pool.getQueueSize());
+            }
+        } finally {
+            latch.countDown();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testVirtualThreads() {
+        Map<String, String> expressionStringMap = new HashMap<>();
+        expressionStringMap.put("row1", "{count(SCCC),SCCC,SCCC=5||SCCC=11}");
+        expressionStringMap.put("row2", "{sum(SCCC)}");
+        Map<String, Object> expected = new SoloscanExecutor().execute(expressionStringMap, new ListDataSet<>(data));
+        SoloscanOptions.set(SoloscanOptions.POOL_VIRTUAL_THREADS.key(), true);
+        SoloscanOptions.set(SoloscanOptions.SCAN_MODE.key(), ScanMode.THREADED);
+        SoloscanPools.shutdown();
+        try {
+            Assert.assertEquals(expected, new SoloscanExecutor().execute(expressionStringMap, new ListDataSet<>(data)));
+            Assert.assertEquals(VirtualThreads.isSupported(), SoloscanPools.scan().isVirtual());
+            Assert.assertEquals(VirtualThreads.isSupported(), SoloscanPools.evaluation().isVirtual());
+            Assert.assertFalse(SoloscanPools.aggregation().isVirtual());
+            if (VirtualThreads.isSupported()) {
+                Assert.assertEquals(SoloscanOptions.getOption(SoloscanOptions.POOL_VIRTUAL_THREADS_MAX).intValue(),
+                        SoloscanPools.evaluation().getMaxThreads());
+            }
+        } finally {
+            SoloscanOptions.set(SoloscanOptions.POOL_VIRTUAL_THREADS.key(), false);
+            SoloscanOptions.set(SoloscanOptions.SCAN_MODE.key(), ScanMode.INLINE);
+            SoloscanPools.shutdown();
+        }
+    }
+
+    @Test
+    public void testSaturatedPools() throws Exception {
+        Map<String, String> expressionStringMap = new HashMap<>();
+        expressionStringMap.put("row1", "{count(SCCC),SCCC,SCCC=5||SCCC=11}");
+        expressionStringMap.put("row2", "{sum(SCCC)}");
+        Map<String, Object> expected = new SoloscanExecutor().execute(expressionStringMap, new ListDataSet<>(data));
+        SoloscanOptions.set(SoloscanOptions.SCAN_POOL_SIZE.key(), 1);
+        SoloscanOptions.set(SoloscanOptions.EVALUATION_POOL_SIZE.key(), 1);
+        SoloscanOptions.set(SoloscanOptions.POOL_QUEUE_CAPACITY.key(), 1);
+        SoloscanPools.shutdown();
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            // the thread and the queue slot of each pool are taken
+            for (WorkerPool pool : new WorkerPool[]{SoloscanPools.scan(), SoloscanPools.evaluation()}) {
+                pool.submit(() -> {
+                    latch.await();
+                    return null;
+                });
+                pool.submit(() -> null);
+            }
+            // the expressions rejected by the evaluation pool are evaluated by the calling thread
+            Assert.assertEquals(expected, new SoloscanExecutor().execute(expressionStringMap, new ListDataSet<>(data)));
+            Assert.assertTrue(SoloscanPools.evaluation().getRejectedCount() > 0);
+
+            // a data provider rejected by the scan pool fails the scan at once
+            SoloscanOptions.set(SoloscanOptions.SCAN_MODE.key(), ScanMode.THREADED);
+            try {
+                new SoloscanExecutor().execute(expressionStringMap, new ListDataSet<>(data));
+                Assert.fail();
+            } catch (ExpressionExecuteException e) {
+                Assert.assertTrue(e.getCause() instanceof java.util.concurrent.RejectedExecutionException);
+            }
+        } finally {
+            latch.countDown();
+            SoloscanOptions.set(SoloscanOptions.SCAN_MODE.key(), ScanMode.INLINE);
+            SoloscanOptions.set(SoloscanOptions.SCAN_POOL_SIZE.key(), SoloscanOptions.SCAN_POOL_SIZE.defaultValue());
+            SoloscanOptions.set(SoloscanOptions.EVALUATION_POOL_SIZE.key(), SoloscanOptions.EVALUATION_POOL_SIZE.defaultValue());
+            SoloscanOptions.set(SoloscanOptions.POOL_QUEUE_CAPACITY.key(), SoloscanOptions.POOL_QUEUE_CAPACITY.defaultValue());
+            SoloscanPools.shutdown();
+        }
+    }
+
+    @Test
+    public void testExecuteAsync() throws Exception {
+        SoloscanExecutor instance = new SoloscanExecutor();
+        Map<String, String> expressionStringMap = new HashMap<>();
+        expressionStringMap.put("row1", "{count(SCCC),SCCC,SCCC=5||SCCC=11}");
+        expressionStringMap.put("row2", "{sum(SCCC)}");
+        Assert.assertEquals(instance.execute(expressionStringMap, new ListDataSet<>(data)),
+                instance.executeAsync(expressionStringMap, new ListDataSet<>(data)).get(5, TimeUnit.SECONDS));
+
+        // a data set blocked in next() until it is closed, like a slow JDBC result set
+        AtomicBoolean closed = new AtomicBoolean();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch stopped = new CountDownLatch(1);
+        CompletableFuture<Map<String, Object>> future = instance.executeAsync(expressionStringMap, new ListDataSet<Map<String, Object>>(data) {
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public org.soloquest.soloscan.dataset.Row next() {
+                started.countDown();
+                try {
+                    while (!closed.get()) {
+                        Thread.sleep(1);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                stopped.countDown();
+                throw new IllegalStateException("the data set is closed");
+            }
+
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        });
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(future.cancel(true));
+        Assert.assertTrue(closed.get());
+        Assert.assertTrue(stopped.await(5, TimeUnit.SECONDS));
+
+        // cancelling a scan over an ArrayDataSet ends its iteration and keeps the rows of the caller
+        List<Object[]> arrayRows = new ArrayList<>(Collections.nCopies(5000, new Object[]{5}));
+        CountDownLatch arrayStarted = new CountDownLatch(1);
+        CompletableFuture<Map<String, Object>> arrayFuture = instance.executeAsync(expressionStringMap,
+                new ArrayDataSet(Collections.singletonList("SCCC"), arrayRows) {
+                    @Override
+                    public org.soloquest.soloscan.dataset.Row next() {
+                        arrayStarted.countDown();
+                        try {
+                            Thread.sleep(1);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return super.next();
+                    }
+                });
+        Assert.assertTrue(arrayStarted.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(arrayFuture.cancel(true));
+        Assert.assertEquals(5000, arrayRows.size());
+        try {
+            arrayFuture.get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (CancellationException e) {
+        }
+
+        // an endless data set stops at the timeout
+        SoloscanOptions.set(SoloscanOptions.EXECUTE_TIMEOUT_MS.key(), 50);
+        AtomicBoolean timedOutClosed = new AtomicBoolean();
+        try {
+            instance.executeAsync(expressionStringMap, new ListDataSet<Map<String, Object>>(data) {
+                private int index;
+
+                @Override
+                public boolean hasNext() {
+                    return true;
+                }
+
+                @Override
+                public org.soloquest.soloscan.dataset.Row next() {
+                    return new org.soloquest.soloscan.dataset.MapRow(data.get(index++ % data.size()));
+                }
+
+                @Override
+                public void close() {
+                    timedOutClosed.set(true);
+                }
+            }).get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof ExpressionExecuteException);
+            Assert.assertTrue(e.getCause().getCause() instanceof TimeoutException);
+            Assert.assertTrue(timedOutClosed.get());
+        } finally {
+            SoloscanOptions.set(SoloscanOptions.EXECUTE_TIMEOUT_MS.key(), 0);
+        }
+    }
+
+    @Test
+    public void testSharedScan() throws Exception {
+        SoloscanExecutor instance = new SoloscanExecutor();
+        List<Map<String, String>> requests = new ArrayList<>();
+        for (String expression : new String[]{"{count(SCCC),SCCC,SCCC=5||SCCC=11}", "{sum(SCCC)}", "{count(SCCC),SCCC}", "{count()}"}) {
+            requests.add(Collections.singletonMap("row1", expression));
+        }
+        AtomicInteger scans = new AtomicInteger();
+        Supplier<DataSet> source = () -> {
+            scans.incrementAndGet();
+            return new ListDataSet<>(data);
+        };
+        SoloscanOptions.set(SoloscanOptions.SCAN_SHARE_WINDOW_MS.key(), 500);
+        ExecutorService executorService = Executors.newFixedThreadPool(requests.size());
+        try {
+            CountDownLatch ready = new CountDownLatch(1);
+            List<Future<Map<String, Object>>> futures = new ArrayList<>();
+            for (Map<String, String> request : requests) {
+                futures.add(executorService.submit(() -> {
+                    ready.await();
+                    return instance.executeShared("widgets", request, null, source);
+                }));
+            }
+            ready.countDown();
+            for (int i = 0; i < requests.size(); i++) {
+                Assert.assertEquals(instance.execute(requests.get(i), new ListDataSet<>(data)), futures.get(i).get(5, TimeUnit.SECONDS));
+            }
+            Assert.assertEquals(1, scans.get());
+
+            // a request after the window starts the next scan
+            Assert.assertEquals(instance.execute(requests.get(1), new ListDataSet<>(data)),
+                    instance.executeShared("widgets", requests.get(1), null, source));
+            Assert.assertEquals(2, scans.get());
+
+            // a leader whose expression fails to open ends its scan, the next request over the source starts another
+            SharedScans sharedScans = new SharedScans();
+            ExpressionInstance failing = new ExpressionInstance() {
+                @Override
+                public void open(Map<String, Object> map) {
+                    throw new ExpressionExecuteException("can not open");
+                }
+
+                @Override
+                public Object execute(Map<String, Object> map) {
+                    return null;
+                }
+
+                @Override
+                public boolean consumeRow(org.soloquest.soloscan.dataset.Row row) {
+                    return true;
+                }
+            };
+            try {
+                sharedScans.feed("gadgets", source, null, Cancellation.of(null), failing);
+                Assert.fail();
+            } catch (ExpressionExecuteException e) {
+                Assert.assertEquals("can not open", e.getMessage());
+            }
+            AtomicInteger rows = new AtomicInteger();
+            sharedScans.feed("gadgets", source, null, Cancellation.of(null), new ExpressionInstance() {
+                @Override
+                public Object execute(Map<String, Object> map) {
+                    return null;
+                }
+
+                @Override
+                public boolean consumeRow(org.soloquest.soloscan.dataset.Row row) {
+                    if (row != TerminalRow.INSTANCE) {
+                        rows.incrementAndGet();
+                    }
+                    return true;
+                }
+            });
+            Assert.assertEquals(data.size(), rows.get());
+        } finally {
+            executorService.shutdown();
+            SoloscanOptions.set(SoloscanOptions.SCAN_SHARE_WINDOW_MS.key(), 10);
+        }
+    }
+
+    @Test
+    public void testContinuousAggregation() {
+        SoloscanExecutor instance = new SoloscanExecutor();
+        Map<String, String> expressionStringMap = new HashMap<>();
+        expressionStringMap.put("row1", "{count(SCCC),SCCC,SCCC=5||SCCC=11}");
+        expressionStringMap.put("row2", "{sum(SCCC)}/{count(SCCC)}");
+        expressionStringMap.put("row3", "{count(SCCC),SCCC}");
+        expressionStringMap.put("row4", "{sum(SCCC)}");
+        List<Map<String, Object>> head = data.subList(0, data.size() / 2);
+        for (boolean concurrent : new boolean[]{false, true}) {
+            SoloscanOptions.set(SoloscanOptions.CONCURRENT_PROCESSS.key(), concurrent);
+            try {
+                ContinuousAggregation aggregation = instance.openContinuous(expressionStringMap);
+                Assert.assertEquals(instance.execute(expressionStringMap, new ListDataSet<>(head)),
+                        aggregation.append(new ListDataSet<>(head)).refresh());
+                Assert.assertEquals(instance.execute(expressionStringMap, new ListDataSet<>(head)), aggregation.refresh());
+                Assert.assertEquals(instance.execute(expressionStringMap, new ListDataSet<>(data)),
+                        aggregation.append(new ListDataSet<>(data.subList(head.size(), data.size()))).refresh());
+            } finally {
+                SoloscanOptions.set(SoloscanOptions.CONCURRENT_PROCESSS.key(), false);
+            }
+        }
+    }
+
+    @Test
+    public void testConstantFolding() {
+        Map<String, String> expressionStringMap = new HashMap<>();
+        expressionStringMap.put("row1", "{count(SCCC in [5,11,20])}");
+        expressionStringMap.put("row2", "{count(SCCC in [0,3,11,1000000])/count(SCCC in range(1,20,2))}");
+        expressionStringMap.put("row3", "{count(),SCCC,SCCC in [5,11]}");
+        expressionStringMap.put("row4", "{sumx(SCCC,SCCC in range(20,1)),SCCC}");
+        Map<String, Object> folded = new SoloscanExecutor().execute(expressionStringMap, new ListDataSet<>(data));
+
+        SoloscanOptions.set(SoloscanOptions.CONSTANT_FOLDING.key(), false);
+        try {
+            Assert.assertEquals(new SoloscanExecutor().execute(expressionStringMap, new ListDataSet<>(data)), folded);
+        } finally {
+            SoloscanOptions.set(SoloscanOptions.CONSTANT_FOLDING.key(), true);
+        }
+
+        ConstantList sparse = new ConstantList(0, -3, 11, 1000000);
+        Assert.assertTrue(sparse.contains(0) && sparse.contains(-3) && sparse.contains(1000000));
+        Assert.assertFalse(sparse.contains(5));
+        Assert.assertEquals(Arrays.asList(0L, -3L, 11L, 1000000L), sparse);
+    }
+
+    @Test
+    public void testSchemaTypedExpression() {
+        Map<String, String> expressionStringMap = new HashMap<>();
+        expressionStringMap.put("row1", "{count(SCCC>=5 && S3!=1)}");
+        expressionStringMap.put("row2", "{sumx(SCCC*2+1,SCCC%2=0 || S3<2)}");
+        expressionStringMap.put("row3", "{averagex(SCCC/2.0-S3,SCCC>3 && S3>=1)}");
+        expressionStringMap.put("row4", "{count(S3),SCCC,SCCC>=5 && SCCC<=11}");
+        expressionStringMap.put("row5", "{maxx(QA1_2*1.5,QA1_2>0 && QA1_2<3)}");
+        Map<String, Object> untyped = new SoloscanExecutor().execute(expressionStringMap, new ListDataSet<>(data));
+
+        Map<String, Class<?>> columnTypes = new HashMap<>();
+        columnTypes.put("SCCC", long.class);
+        columnTypes.put("S3", Integer.class);
+        // the values are integers, a double column falls back to the generic evaluation
+        columnTypes.put("QA1_2", double.class);
+        Schema schema = Schema.of(columnTypes);
+        SoloscanExecutor instance = new SoloscanExecutor();
+        Assert.assertEquals(instance.execute(expressionStringMap, new ListDataSet<>(data, schema)), untyped);
+        Assert.assertNotSame(instance.compile(expressionStringMap.get("row1"), schema), instance.compile(expressionStringMap.get("row1")));
+        Assert.assertEquals(schema, Schema.fromSignature(schema.getSignature()));
+
+        // the typed plans of an expression are invalidated with it
+        Expression typed = instance.compile(expressionStringMap.get("row1"), schema);
+        Assert.assertTrue(instance.invalidateExpression(expressionStringMap.get("row1")));
+        Assert.assertNotSame(typed, instance.compile(expressionStringMap.get("row1"), schema));
+    }
+
+    @Test
+    public void testEscapedQuoteLiteral() {
+        SoloscanExecutor instance = new SoloscanExecutor();
+        Assert.assertEquals("it's   a  ( test )",
+                instance.execute(Collections.singletonMap("s", "'it\\'s   a  ( test )'"), DataSet.EMPTY).get("s"));
+        // the text after an escaped quote is still inside the literal, it is not normalized into the key of another one
+        Assert.assertEquals("it's a(test)", instance.execute(Collections.singletonMap("s", "'it\\'s a(test)'"), DataSet.EMPTY).get("s"));
+        Assert.assertNotSame(instance.compile("'it\\'s   a  ( test )'"), instance.compile("'it\\'s a(test)'"));
+    }
+
+    @Test
+    public void testCompositeGroupKey() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        Object[][] values = {{1, "x"}, {1L, "x"}, {1, null}, {2, "x"}, {(short) 2, "x"}, {3.5, "y"}};
+        for (Object[] value : values) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("A", value[0]);
+            row.put("B", value[1]);
+            rows.add(row);
+        }
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("1__x", 2L);
+        expected.put("1__NO_ANSWER", 1L);
+        expected.put("2__x", 2L);
+        expected.put("3.5__y", 1L);
+        Assert.assertEquals(new SoloscanExecutor().execute("{count(),grouping(A,B)}", new ListDataSet<>(rows)), expected);
+
+        // the groups are keyed by the string form of the values, as the results are
+        List<Map<String, Object>> mixedRows = new ArrayList<>();
+        for (Object value : new Object[]{5, "5", 5L, "5", 7, "05"}) {
+            mixedRows.add(Collections.singletonMap("G", value));
+        }
+        Map<String, Object> mixedExpected = new HashMap<>();
+        mixedExpected.put("5", 4L);
+        mixedExpected.put("7", 1L);
+        mixedExpected.put("05", 1L);
+        Assert.assertEquals(mixedExpected, new SoloscanExecutor().execute("{count(),G}", new ListDataSet<>(mixedRows)));
+
+        // doubles and decimals are keyed by value where their string forms are equal
+        List<Map<String, Object>> decimalRows = new ArrayList<>();
+        for (Object value : new Object[]{5.0, "5.0", 3.5, "3.5", 5, new BigDecimal("5"), new BigDecimal("3.50"), Double.NaN, "NaN", -0.0, 0.0}) {
+            decimalRows.add(Collections.singletonMap("G", value));
+        }
+        Map<String, Object> decimalExpected = new HashMap<>();
+        decimalExpected.put("5.0", 2L);
+        decimalExpected.put("3.5", 2L);
+        decimalExpected.put("5", 2L);
+        decimalExpected.put("3.50", 1L);
+        decimalExpected.put("NaN", 2L);
+        decimalExpected.put("-0.0", 1L);
+        decimalExpected.put("0.0", 1L);
+        Assert.assertEquals(decimalExpected, new SoloscanExecutor().execute("{count(),G}", new ListDataSet<>(decimalRows)));
+
+        GroupKey key = new GroupKey(1);
+        key.add(7);
+        key.add("z");
+        GroupKey copy = key.copy();
+        key.clear();
+        key.add(7L);
+        key.add("z");
+        Assert.assertEquals(copy, key);
+        Assert.assertEquals(copy.hashCode(), key.hashCode());
+        Assert.assertEquals("7__z", copy.toString());
+        key.clear();
+        key.add("7");
+        key.add("z");
+        Assert.assertEquals(copy, key);
+    }
+
+    @Test
+    public void testFusedScan() {
+        Map<String, String> expressionStringMap = new HashMap<>();
+        expressionStringMap.put("row1", "{sumx(SCCC,SCCC>1)+count(),SCCC,S3<5}");
+        expressionStringMap.put("row2", "{average(SCCC),grouping(SCCC,RQ)}");
+        expressionStringMap.put("row3", "{max(SCCC)-min(SCCC)+countblank(S3)}");
+        expressionStringMap.put("row4", "{count(SCCC=xyz)/count(),SCCC,SCCC=5||SCCC=11}");
+        Map<String, Object> fused = new SoloscanExecutor().execute(expressionStringMap, new ListDataSet<>(data));
+
+        SoloscanOptions.set(SoloscanOptions.FUSED_SCAN.key(), false);
+        try {
+            Assert.assertEquals(new SoloscanExecutor().execute(expressionStringMap, new ListDataSet<>(data)), fused);
+        } finally {
+            SoloscanOptions.set(SoloscanOptions.FUSED_SCAN.key(), true);
+        }
+    }
+
+    @Test
+    public void testColumnSlots() throws Exception {
+        List<String> columns = new ArrayList<>(new TreeSet<>(data.stream().flatMap(row -> row.keySet().stream()).collect(Collectors.toSet())));
+        List<Object[]> rows = new ArrayList<>();
+        for (Map<String, Object> row : data) {
+            rows.add(columns.stream().map(row::get).toArray());
+        }
+        Map<String, String> expressionStringMap = new HashMap<>();
+        expressionStringMap.put("row1", "{sumx(SCCC,SCCC>1)+count(),SCCC,S3<limit}");
+        expressionStringMap.put("row2", "{average(SCCC),grouping(SCCC,RQ)}");
+        expressionStringMap.put("row3", "{max(SCCC)-min(SCCC)+countblank(S3)}");
+        expressionStringMap.put("row4", "{count(SCCC=limit)/count(),SCCC,SCCC=5||SCCC=11}");
+        Map<String, Object> env = new HashMap<>();
+        env.put("limit", 5);
+        Map<String, Object> byName = new SoloscanExecutor().execute(expressionStringMap, env, new ListDataSet<>(data));
+
+        SoloscanExecutor instance = new SoloscanExecutor();
+        Assert.assertEquals(byName, instance.execute(expressionStringMap, env, new ArrayDataSet(columns, rows)));
+        // concurrent scans of the same plan over rows of different layouts resolve the columns each on its own
+        List<String> reversed = new ArrayList<>(columns);
+        Collections.reverse(reversed);
+        List<Object[]> reversedRows = new ArrayList<>();
+        for (Map<String, Object> row : data) {
+            reversedRows.add(reversed.stream().map(row::get).toArray());
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Map<String, Object>>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                ArrayDataSet dataSet = i % 2 == 0 ? new ArrayDataSet(columns, rows) : new ArrayDataSet(reversed, reversedRows);
+                futures.add(executorService.submit(() -> instance.execute(expressionStringMap, env, dataSet)));
+            }
+            for (Future<Map<String, Object>> future : futures) {
+                Assert.assertEquals(byName, future.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        env.put("limit", 11);
+        Assert.assertNotEquals(byName, instance.execute(expressionStringMap, env, new ArrayDataSet(columns, rows)));
+
+        // a column given twice resolves to the last one, a calculated column added while reading rebuilds the layout
+        Assert.assertEquals(2, ColumnSlots.of("A", "B", "A").slot("A"));
+        ArrayDataSet dataSet = new ArrayDataSet(columns, rows);
+        Assert.assertFalse(dataSet.next().containsColumn("CALC"));
+        Assert.assertTrue(dataSet.addCalcColumn("CALC", row -> row.getValue("SCCC")));
+        Assert.assertEquals(rows.get(1)[columns.indexOf("SCCC")], dataSet.next().getValue("CALC"));
+    }
+
+    @Test
+    public void testInvokedynamicOperators() throws Throwable {
+        Map<String, String> expressionStringMap = new HashMap<>();
+        expressionStringMap.put("row1", "{sumx(SCCC*2-1,SCCC>1)+count(),SCCC,S3<limit}");
+        expressionStringMap.put("row2", "{sumx(SCCC/ratio,SCCC>0),grouping(SCCC,RQ)}");
+        expressionStringMap.put("row3", "{max(SCCC%3)-min(SCCC*2)+countblank(S3)}");
+        expressionStringMap.put("row4", "{count(SCCC>=ratio)/count(),SCCC,SCCC=5||SCCC=11}");
+        Map<String, Object> env = new HashMap<>();
+        env.put("limit", 5);
+        env.put("ratio", 2.5);
+        Map<String, Object> virtual = new SoloscanExecutor().execute(expressionStringMap, env, new ListDataSet<>(data));
+
+        SoloscanOptions.set(SoloscanOptions.INVOKEDYNAMIC_OPERATORS.key(), true);
+        try {
+            Assert.assertEquals(virtual, new SoloscanExecutor().execute(expressionStringMap, env, new ListDataSet<>(data)));
+        } finally {
+            SoloscanOptions.set(SoloscanOptions.INVOKEDYNAMIC_OPERATORS.key(), false);
+        }
+
+        OperatorCallSite site = (OperatorCallSite) OperatorCallSite.bootstrap(MethodHandles.lookup(), "SUB", OperatorCallSite.TYPE);
+        MethodHandle sub = site.dynamicInvoker();
+        Assert.assertEquals(OperatorCallSite.Kind.UNLINKED, site.getKind());
+        Assert.assertEquals(3L, ((SObject) sub.invoke((SObject) SLong.valueOf(5), (SObject) SLong.valueOf(2), env)).getValue(env));
+        Assert.assertEquals(OperatorCallSite.Kind.LONGS, site.getKind());
+        Assert.assertEquals(2.5, ((SObject) sub.invoke((SObject) SLong.valueOf(5), (SObject) new SDouble(2.5), env)).getValue(env));
+        Assert.assertEquals(OperatorCallSite.Kind.DOUBLES, site.getKind());
+        Assert.assertEquals(0.0, ((SObject) sub.invoke((SObject) new SJavaType("ratio"), (SObject) new SDouble(2.5), env)).getValue(env));
+        Assert.assertEquals(OperatorCallSite.Kind.DOUBLES, site.getKind());
+        for (int i = 0; i < 10; i++) {
+            sub.invoke((SObject) SLong.valueOf(i), (SObject) SLong.valueOf(i % 2 == 0 ? 1 : i), env);
+            sub.invoke((SObject) SLong.valueOf(i), (SObject) new SDouble(i), env);
+        }
+        Assert.assertEquals(OperatorCallSite.Kind.GENERIC, site.getKind());
+
+        // the quotient of Long.MIN_VALUE / -1 does not fit a long, the generic division promotes it
+        OperatorCallSite divSite = (OperatorCallSite) OperatorCallSite.bootstrap(MethodHandles.lookup(), "DIV", OperatorCallSite.TYPE);
+        MethodHandle div = divSite.dynamicInvoker();
+        Assert.assertEquals(3L, ((SObject) div.invoke((SObject) SLong.valueOf(6), (SObject) SLong.valueOf(2), env)).getValue(env));
+        Assert.assertEquals(OperatorCallSite.Kind.LONGS, divSite.getKind());
+        Object quotient = ((SObject) div.invoke((SObject) SLong.valueOf(Long.MIN_VALUE), (SObject) SLong.valueOf(-1), env)).getValue(env);
+        Assert.assertEquals(BigInteger.valueOf(Long.MIN_VALUE).negate(), quotient);
+        Assert.assertEquals(quotient, SLong.valueOf(Long.MIN_VALUE).div(SLong.valueOf(-1), env).getValue(env));
+    }
+
+    @Test
+    public void testMethodSplitting() {
+        StringBuilder sb = new StringBuilder("a-b");
+        for (int i = 1; i < 60; i++) {
+            sb.append("+a*").append(i).append("-b");
+        }
+        Map<String, String> expressionStringMap = Collections.singletonMap("row1", sb.toString());
+        Map<String, Object> env = new HashMap<>();
+        env.put("a", 3);
+        env.put("b", 2.5);
+        Map<String, Object> unsplit = new SoloscanExecutor().execute(expressionStringMap, env, new ListDataSet<>(data));
+        Assert.assertEquals(0, CodeSizeMetrics.of(new SoloscanExecutor().compile(sb.toString())).getOutlinedMethodCount());
+
+        SoloscanOptions.set(SoloscanOptions.METHOD_SPLIT_THRESHOLD.key(), 200);
+        try {
+            SoloscanExecutor instance = new SoloscanExecutor();
+            CodeSizeMetrics metrics = CodeSizeMetrics.of(instance.compile(sb.toString()));
+            Assert.assertTrue(metrics.getOutlinedMethodCount() > 0);
+            Assert.assertTrue(metrics.getMethodSizes().get("execute0") <= 200);
+            Assert.assertEquals(unsplit, instance.execute(expressionStringMap, env, new ListDataSet<>(data)));
+        } finally {
+            SoloscanOptions.set(SoloscanOptions.METHOD_SPLIT_THRESHOLD.key(), 6000);
+        }
+    }
+
+    @Test
+    public void testAdaptiveFilter() {
+        Map<String, String> expressionStringMap = new HashMap<>();
+        expressionStringMap.put("row1", "{count(),SCCC,SCCC>=0 && SCCC=5}");
+        expressionStringMap.put("row2", "{count(SCCC>=0 && SCCC in [5,11] && SCCC!=11)}");
+        expressionStringMap.put("row3", "{sumx(SCCC,SCCC=5 || SCCC>=0),SCCC,SCCC=20 || SCCC=11 || SCCC=5}");
+        SoloscanOptions.set(SoloscanOptions.ADAPTIVE_FILTER.key(), false);
+        Map<String, Object> sourceOrder;
+        try {
+            sourceOrder = new SoloscanExecutor().execute(expressionStringMap, new ListDataSet<>(data));
+        } finally {
+            SoloscanOptions.set(SoloscanOptions.ADAPTIVE_FILTER.key(), true);
+        }
+
+        SoloscanOptions.set(SoloscanOptions.ADAPTIVE_FILTER_SAMPLE_ROWS.key(), 10);
+        try {
+            SoloscanExecutor instance = new SoloscanExecutor();
+            Assert.assertEquals(instance.execute(expressionStringMap, new ListDataSet<>(data)), sourceOrder);
+            Assert.assertEquals(instance.execute(expressionStringMap, new ListDataSet<>(data)), sourceOrder);
+
+            BaseSoloExpression expression = (BaseSoloExpression) instance.compile(expressionStringMap.get("row1"));
+            AdaptivePredicate predicate = ((AdaptivePredicate.Terms) expression.getMetricUnitExpressions().get(0)).getAdaptivePredicate();
+            Assert.assertArrayEquals(new String[]{"SCCC>=0", "SCCC=5"}, predicate.getTerms());
+            Assert.assertNotNull(predicate.order());
+            Assert.assertEquals("SCCC=5 && SCCC>=0", predicate.getOrderDescription());
+
+            // a filter which is not split has no terms
+            AdaptivePredicate.Terms single = (AdaptivePredicate.Terms) ((BaseSoloExpression) instance.compile("{count(),SCCC,SCCC=5}"))
+                    .getMetricUnitExpressions().get(0);
+            Assert.assertNull(single.getAdaptivePredicate());
+            try {
+                single.filterTerm(0, null);
+                Assert.fail();
+            } catch (IndexOutOfBoundsException e) {
+            }
+
+            // every scan samples its own rows, the order of a former scan is not reused
+            Map<String, String> disjunction = Collections.singletonMap("row3", expressionStringMap.get("row3"));
+            AdaptivePredicate disjunctionPredicate = ((AdaptivePredicate.Terms) ((BaseSoloExpression) instance.compile(disjunction.get("row3")))
+                    .getMetricUnitExpressions().get(0)).getAdaptivePredicate();
+            instance.execute(disjunction, new ListDataSet<>(Collections.nCopies(20, Collections.singletonMap("SCCC", 20))));
+            Assert.assertTrue(disjunctionPredicate.getOrderDescription().startsWith("SCCC=20 || "));
+            instance.execute(disjunction, new ListDataSet<>(Collections.nCopies(20, Collections.singletonMap("SCCC", 5))));
+            Assert.assertTrue(disjunctionPredicate.getOrderDescription().startsWith("SCCC=5 || "));
+        } finally {
+            SoloscanOptions.set(SoloscanOptions.ADAPTIVE_FILTER_SAMPLE_ROWS.key(), 1000);
+        }
+    }
+
+    private void assertEqualsAfterRemoveZero(Object inAggFilterPart,Object inFilterPart){
+        if(inAggFilterPart instanceof HashMap){
+            HashMap<String,Number> aggFilterPart = (HashMap<String,Number>)inAggFilterPart;
+            Iterator<String> iterator = aggFilterPart.keySet().iterator();
+            while(iterator.hasNext()){
+                String key = iterator.next();
+                if(Numbers.equiv(aggFilterPart.get(key),0)){
+                    iterator.remove();
+                }
+            }
+        }
+        Assert.assertEquals(inAggFilterPart,inFilterPart);
+    }
+
+}
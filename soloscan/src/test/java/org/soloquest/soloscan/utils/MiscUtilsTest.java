@@ -73,4 +73,11 @@ public class MiscUtilsTest {
         MiscUtils.applyPlaceHolder(expressionMap, null);
         assertEquals("Hello, {{name}}!", expressionMap.get("key1"));
     }
+
+    @Test
+    public void testNormalizeExpressionKeepsStringLiterals() {
+        assertEquals("{count(A),B,C in['x  y',\"( z )\"]}", MiscUtils.normalizeExpression("  {count( A ) , B ,  C  in [ 'x  y' , \"( z )\" ] }"));
+        assertEquals("{count(),B='it\\'s   a  ( test )'}", MiscUtils.normalizeExpression("{count() , B='it\\'s   a  ( test )'}"));
+        assertEquals("{count(),B=\"say \\\"hi  there\\\"  ,x\"}", MiscUtils.normalizeExpression("{count() , B=\"say \\\"hi  there\\\"  ,x\"}"));
+    }
 }
@@ -1,10 +0,0 @@
-package org.soloquest.soloscan.dataset;
-
-public interface Row {
-
-    Object getValue(String column);
-
-    public boolean putValue(String column, Object value);
-
-    boolean containsColumn(String column);
-}